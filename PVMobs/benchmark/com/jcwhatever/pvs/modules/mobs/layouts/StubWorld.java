@@ -0,0 +1,74 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.layouts;
+
+import org.bukkit.World;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates stub worlds so locations and spawnpoints can be used
+ * without a server.
+ *
+ * <p>A stub world only supports its name, max height and identity. Any
+ * other method throws {@link UnsupportedOperationException}.</p>
+ */
+public class StubWorld {
+
+    private StubWorld() {}
+
+    /**
+     * Create a new stub world.
+     *
+     * @param name  The name of the world.
+     */
+    public static World create(final String name) {
+
+        return (World)Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] { World.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+                        switch (method.getName()) {
+                            case "getName":
+                                return name;
+                            case "getMaxHeight":
+                                return 256;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "StubWorld{" + name + '}';
+                            default:
+                                throw new UnsupportedOperationException(
+                                        "Stub world does not support " + method.getName());
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.layouts;
+
+import com.jcwhatever.pvs.api.arena.ArenaTeam;
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.paths.IBlockAccessor;
+import com.jcwhatever.pvs.modules.mobs.paths.PathFlood;
+import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.ZombieSpawn;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A generated arena used by benchmarks in place of a server world.
+ *
+ * <p>The arena is centered on X and Z 0 with a floor at Y 63. Blocks outside
+ * of the arena are air. Layouts are generated from a fixed seed so every run
+ * benchmarks the same blocks.</p>
+ */
+public class SyntheticArena implements IBlockAccessor {
+
+    /**
+     * The Y coordinates of the top of the arena floor.
+     */
+    public static final int FLOOR_Y = 63;
+
+    private static final int SIZE = 96;
+    private static final int HEIGHT = 96;
+    private static final int ORIGIN = -SIZE / 2;
+    private static final int MAZE_CELL = 4;
+    private static final int LEVEL_HEIGHT = 7;
+    private static final int LEVEL_SIZE = 16;
+
+    private final Layout _layout;
+    private final BitSet _solid = new BitSet(SIZE * SIZE * HEIGHT);
+    private final World _world;
+
+    /**
+     * Arena layouts.
+     */
+    public enum Layout {
+        /**
+         * An open floor.
+         */
+        FLAT,
+        /**
+         * A floor divided into corridors 3 blocks wide by walls.
+         */
+        MAZE,
+        /**
+         * A floor with raised platforms on two levels connected by stairs.
+         */
+        MULTI_LEVEL
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param layout  The layout to generate.
+     */
+    public SyntheticArena(Layout layout) {
+        _layout = layout;
+        _world = StubWorld.create("benchmark-" + layout.name().toLowerCase());
+
+        fill(0, 0, 0, SIZE - 1, FLOOR_Y, SIZE - 1);
+
+        switch (layout) {
+            case FLAT:
+                break;
+            case MAZE:
+                generateMaze(new Random(1));
+                break;
+            case MULTI_LEVEL:
+                generateLevels();
+                break;
+        }
+    }
+
+    /**
+     * Get the layout of the arena.
+     */
+    public Layout getLayout() {
+        return _layout;
+    }
+
+    /**
+     * Get the stub world the arena is in.
+     */
+    public World getWorld() {
+        return _world;
+    }
+
+    @Override
+    public Material getType(int x, int y, int z) {
+
+        int lx = x - ORIGIN;
+        int lz = z - ORIGIN;
+
+        if (lx < 0 || y < 0 || lz < 0 || lx >= SIZE || y >= HEIGHT || lz >= SIZE)
+            return Material.AIR;
+
+        return _solid.get(getIndex(lx, y, lz)) ? Material.STONE : Material.AIR;
+    }
+
+    /**
+     * Get locations a mob or player can stand in, spaced evenly
+     * across the arena.
+     *
+     * @param spacing  The distance between locations on the X and Z axis.
+     */
+    public List<Location> getStandingLocations(int spacing) {
+
+        PathFlood flood = new PathFlood(this, DistanceUtils.MAX_DROP_HEIGHT);
+        List<Location> result = new ArrayList<>((SIZE / spacing) * (SIZE / spacing) * 2);
+
+        for (int x = ORIGIN + spacing / 2; x < ORIGIN + SIZE; x += spacing) {
+            for (int z = ORIGIN + spacing / 2; z < ORIGIN + SIZE; z += spacing) {
+
+                // every surface in the column
+                for (int y = HEIGHT - 1; y >= 0; y--) {
+                    if (flood.isSurface(x, y, z))
+                        result.add(new Location(_world, x, y + 1, z));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Create zombie spawnpoints spaced evenly across the arena.
+     *
+     * @param spacing  The distance between spawns on the X and Z axis.
+     */
+    public List<Spawnpoint> createSpawns(int spacing) {
+
+        ZombieSpawn type = new ZombieSpawn();
+        List<Location> locations = getStandingLocations(spacing);
+        List<Spawnpoint> spawns = new ArrayList<>(locations.size());
+
+        for (Location location : locations) {
+            spawns.add(new Spawnpoint("spawn" + spawns.size(), type, ArenaTeam.NONE, _world,
+                    location.getX(), location.getY(), location.getZ(), 0, 0));
+        }
+
+        return spawns;
+    }
+
+    /*
+     * Generate walls around maze cells and carve passages with a
+     * randomized depth first search.
+     */
+    private void generateMaze(Random random) {
+
+        int cells = SIZE / MAZE_CELL;
+
+        // walls on every cell border
+        for (int i = 0; i <= cells; i++) {
+            int line = Math.min(i * MAZE_CELL, SIZE - 1);
+            fill(line, FLOOR_Y + 1, 0, line, FLOOR_Y + 3, SIZE - 1);
+            fill(0, FLOOR_Y + 1, line, SIZE - 1, FLOOR_Y + 3, line);
+        }
+
+        boolean[] visited = new boolean[cells * cells];
+        int[] stack = new int[cells * cells];
+        int top = 0;
+
+        stack[top++] = 0;
+        visited[0] = true;
+
+        int[] neighbors = new int[4];
+
+        while (top > 0) {
+
+            int cell = stack[top - 1];
+            int cx = cell % cells;
+            int cz = cell / cells;
+            int total = 0;
+
+            if (cx > 0 && !visited[cell - 1])
+                neighbors[total++] = cell - 1;
+            if (cx < cells - 1 && !visited[cell + 1])
+                neighbors[total++] = cell + 1;
+            if (cz > 0 && !visited[cell - cells])
+                neighbors[total++] = cell - cells;
+            if (cz < cells - 1 && !visited[cell + cells])
+                neighbors[total++] = cell + cells;
+
+            if (total == 0) {
+                top--;
+                continue;
+            }
+
+            int next = neighbors[random.nextInt(total)];
+            int nx = next % cells;
+            int nz = next / cells;
+
+            // remove the wall between the cells
+            if (nx != cx) {
+                int wall = Math.max(cx, nx) * MAZE_CELL;
+                clear(wall, FLOOR_Y + 1, cz * MAZE_CELL + 1, wall, FLOOR_Y + 3, cz * MAZE_CELL + MAZE_CELL - 1);
+            }
+            else {
+                int wall = Math.max(cz, nz) * MAZE_CELL;
+                clear(cx * MAZE_CELL + 1, FLOOR_Y + 1, wall, cx * MAZE_CELL + MAZE_CELL - 1, FLOOR_Y + 3, wall);
+            }
+
+            visited[next] = true;
+            stack[top++] = next;
+        }
+    }
+
+    /*
+     * Generate raised platforms in a checkerboard with stairs up
+     * from the floor and between levels.
+     */
+    private void generateLevels() {
+
+        int squares = SIZE / LEVEL_SIZE;
+
+        for (int sx = 0; sx < squares; sx++) {
+            for (int sz = 0; sz < squares; sz++) {
+
+                int level = (sx + sz) % 3;
+                if (level == 0)
+                    continue;
+
+                int top = FLOOR_Y + level * LEVEL_HEIGHT;
+                int xStart = sx * LEVEL_SIZE;
+                int zStart = sz * LEVEL_SIZE;
+
+                // platform, open underneath except for the supports
+                fill(xStart + 1, top, zStart + 1, xStart + LEVEL_SIZE - 1, top, zStart + LEVEL_SIZE - 1);
+                fill(xStart + 1, FLOOR_Y + 1, zStart + 1, xStart + 1, top - 1, zStart + 1);
+
+                // stairs along the edge of the square, one block up per step
+                for (int step = 1; step <= level * LEVEL_HEIGHT; step++) {
+                    int z = zStart + LEVEL_SIZE - 1 - Math.min(step, LEVEL_SIZE - 2);
+                    fill(xStart, FLOOR_Y + step, z, xStart, FLOOR_Y + step, z);
+                }
+            }
+        }
+    }
+
+    private void fill(int x1, int y1, int z1, int x2, int y2, int z2) {
+        set(x1, y1, z1, x2, y2, z2, true);
+    }
+
+    private void clear(int x1, int y1, int z1, int x2, int y2, int z2) {
+        set(x1, y1, z1, x2, y2, z2, false);
+    }
+
+    private void set(int x1, int y1, int z1, int x2, int y2, int z2, boolean isSolid) {
+        for (int y = y1; y <= y2; y++) {
+            for (int z = z1; z <= z2; z++) {
+                for (int x = x1; x <= x2; x++) {
+                    _solid.set(getIndex(x, y, z), isSolid);
+                }
+            }
+        }
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y * SIZE + z) * SIZE + x;
+    }
+}
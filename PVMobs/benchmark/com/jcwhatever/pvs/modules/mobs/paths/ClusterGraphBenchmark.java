@@ -0,0 +1,323 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.pvs.modules.mobs.layouts.SyntheticArena;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building, repairing and querying the {@link ClusterGraph} used by
+ * {@link HierarchicalPathfinder} on synthetic arena layouts.
+ *
+ * <p>Setup first checks that the graph is correct and fails the run if it is
+ * not. A graph repaired after random block changes must match a graph built
+ * from scratch, and a position must be reachable in the graph exactly when
+ * it is reached by a {@link PathFlood} search. Graph path distances may be
+ * longer than the flood distances but never shorter.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClusterGraphBenchmark {
+
+    private static final int X_START = -48;
+    private static final int Z_START = -48;
+    private static final int X_END = 47;
+    private static final int Z_END = 47;
+    private static final int Y_START = SyntheticArena.FLOOR_Y;
+    private static final int Y_END = SyntheticArena.FLOOR_Y + 16;
+
+    private static final int MAX_PATH_DISTANCE = 200;
+    private static final int FLOOD_RANGE = 96;
+    private static final int UNLIMITED_DISTANCE = 4096;
+
+    private static final int REPAIR_ROUNDS = 30;
+    private static final int REPAIR_QUERIES = 100;
+    private static final int FLOOD_QUERIES = 200;
+
+    @Param({ "FLAT", "MAZE", "MULTI_LEVEL" })
+    public SyntheticArena.Layout layout;
+
+    private SyntheticArena _arena;
+    private EditedBlocks _blocks;
+    private RegionBlocks _regionBlocks;
+    private ClusterGraph _graph;
+    private int[] _queries;
+    private int _next;
+
+    @Setup
+    public void setup() {
+        _arena = new SyntheticArena(layout);
+        _blocks = new EditedBlocks(_arena);
+
+        Random random = new Random(1);
+
+        checkRepair(random);
+        checkFlood(random);
+
+        _regionBlocks = readRegion(_blocks);
+        _graph = buildGraph(_regionBlocks);
+        _queries = createQueries(new PathFlood(_regionBlocks, DistanceUtils.MAX_DROP_HEIGHT), random, 256);
+    }
+
+    /**
+     * Build the graph of the arena, the work done when an arena is loaded.
+     */
+    @Benchmark
+    public ClusterGraph build() {
+        return buildGraph(readRegion(_blocks));
+    }
+
+    /**
+     * Repair the graph after a block change in one chunk, the work done
+     * when blocks change during a game.
+     */
+    @Benchmark
+    public ClusterGraph repair() {
+        int[] chunks = new int[] { 0, 0 };
+        return new ClusterGraph(_graph, _regionBlocks.update(_blocks, chunks), chunks);
+    }
+
+    /**
+     * Get the path distance between two positions in the graph.
+     */
+    @Benchmark
+    public int pathDistance() {
+        int i = _next;
+        _next = (_next + 6) % _queries.length;
+
+        return _graph.getPathDistance(_queries[i], _queries[i + 1], _queries[i + 2],
+                _queries[i + 3], _queries[i + 4], _queries[i + 5], MAX_PATH_DISTANCE);
+    }
+
+    /*
+     * Change random blocks and check that repairing the graph gives the same
+     * graph and path distances as building it from scratch.
+     */
+    private void checkRepair(Random random) {
+
+        RegionBlocks regionBlocks = readRegion(_blocks);
+        ClusterGraph graph = buildGraph(regionBlocks);
+
+        for (int round = 0; round < REPAIR_ROUNDS; round++) {
+
+            int[] chunks = editBlocks(random, 1 + random.nextInt(4));
+
+            regionBlocks = regionBlocks.update(_blocks, chunks);
+            graph = new ClusterGraph(graph, regionBlocks, chunks);
+
+            ClusterGraph built = buildGraph(readRegion(_blocks));
+
+            if (graph.getNodeCount() != built.getNodeCount() ||
+                    graph.getEdgeCount() != built.getEdgeCount()) {
+                throw new IllegalStateException("Repaired graph has " + graph.getNodeCount() + " nodes and " +
+                        graph.getEdgeCount() + " edges, built graph has " + built.getNodeCount() + " nodes and " +
+                        built.getEdgeCount() + " edges after round " + round + '.');
+            }
+
+            int[] queries = createQueries(new PathFlood(regionBlocks, DistanceUtils.MAX_DROP_HEIGHT),
+                    random, REPAIR_QUERIES);
+
+            for (int i = 0; i < queries.length; i += 6) {
+
+                int repaired = graph.getPathDistance(queries[i], queries[i + 1], queries[i + 2],
+                        queries[i + 3], queries[i + 4], queries[i + 5], MAX_PATH_DISTANCE);
+
+                int rebuilt = built.getPathDistance(queries[i], queries[i + 1], queries[i + 2],
+                        queries[i + 3], queries[i + 4], queries[i + 5], MAX_PATH_DISTANCE);
+
+                if (repaired != rebuilt) {
+                    throw new IllegalStateException("Repaired graph distance " + repaired +
+                            " does not match built graph distance " + rebuilt + " after round " + round + '.');
+                }
+            }
+        }
+    }
+
+    /*
+     * Check that graph path distances reach the same positions as
+     * a flood search and are never shorter.
+     */
+    private void checkFlood(Random random) {
+
+        RegionBlocks regionBlocks = readRegion(_blocks);
+        ClusterGraph graph = buildGraph(regionBlocks);
+        PathFlood flood = new PathFlood(regionBlocks, DistanceUtils.MAX_DROP_HEIGHT);
+
+        int[] queries = createQueries(flood, random, FLOOD_QUERIES);
+
+        for (int i = 0; i < queries.length; i += 6) {
+
+            // graph paths may be longer than the flood limit
+            int distance = graph.getPathDistance(queries[i], queries[i + 1], queries[i + 2],
+                    queries[i + 3], queries[i + 4], queries[i + 5], UNLIMITED_DISTANCE);
+
+            PathVolume volume = flood.search(
+                    new Location(_arena.getWorld(), queries[i], queries[i + 1] + 1, queries[i + 2]),
+                    FLOOD_RANGE, PathVolume.MAX_DISTANCE);
+
+            int floodDistance = volume.getDistance(queries[i + 3], queries[i + 4], queries[i + 5]);
+
+            if (floodDistance < 0) {
+
+                if (distance >= 0 && distance <= PathVolume.MAX_DISTANCE) {
+                    throw new IllegalStateException("Graph distance " + distance +
+                            " to a position the flood did not reach.");
+                }
+            }
+            else if (distance < 0) {
+                throw new IllegalStateException("Graph did not reach a position at flood distance " +
+                        floodDistance + '.');
+            }
+            else if (distance < floodDistance) {
+                throw new IllegalStateException("Graph distance " + distance +
+                        " is shorter than flood distance " + floodDistance + '.');
+            }
+        }
+    }
+
+    /*
+     * Toggle random blocks at and above the floor. Returns the X and Z
+     * coordinates of each changed chunk, in pairs.
+     */
+    private int[] editBlocks(Random random, int total) {
+
+        Set<Long> changed = new LinkedHashSet<>(total);
+
+        for (int i = 0; i < total; i++) {
+
+            int x = X_START + random.nextInt(X_END - X_START + 1);
+            int y = SyntheticArena.FLOOR_Y + random.nextInt(4);
+            int z = Z_START + random.nextInt(Z_END - Z_START + 1);
+
+            _blocks.toggle(x, y, z);
+            changed.add(((long)(x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL));
+        }
+
+        int[] chunks = new int[changed.size() * 2];
+        int index = 0;
+
+        for (long chunk : changed) {
+            chunks[index++] = (int)(chunk >> 32);
+            chunks[index++] = (int)chunk;
+        }
+
+        return chunks;
+    }
+
+    /*
+     * Create random pairs of start and goal surface positions. Returns the
+     * X, Y and Z coordinates of the start and goal of each pair.
+     */
+    private static int[] createQueries(PathFlood flood, Random random, int total) {
+
+        int[] queries = new int[total * 6];
+        int index = 0;
+
+        while (index < queries.length) {
+
+            int x = X_START + random.nextInt(X_END - X_START + 1);
+            int z = Z_START + random.nextInt(Z_END - Z_START + 1);
+            int y = flood.findSurfaceBelow(x, Y_END, z);
+
+            if (y < Y_START)
+                continue;
+
+            queries[index++] = x;
+            queries[index++] = y;
+            queries[index++] = z;
+        }
+
+        return queries;
+    }
+
+    private static RegionBlocks readRegion(IBlockAccessor blocks) {
+        return new RegionBlocks(blocks,
+                X_START, Y_START - DistanceUtils.MAX_DROP_HEIGHT, Z_START,
+                X_END, Y_END + 3, Z_END);
+    }
+
+    private static ClusterGraph buildGraph(RegionBlocks blocks) {
+        return new ClusterGraph(blocks, DistanceUtils.MAX_DROP_HEIGHT, HierarchicalPathfinder.CLUSTER_SIZE,
+                X_START, Y_START, Z_START, X_END, Y_END, Z_END);
+    }
+
+    /*
+     * Arena blocks with some blocks toggled between solid and air.
+     */
+    private static class EditedBlocks implements IBlockAccessor {
+
+        private final IBlockAccessor _blocks;
+        private final Set<Long> _toggled = new HashSet<>(64);
+
+        EditedBlocks(IBlockAccessor blocks) {
+            _blocks = blocks;
+        }
+
+        void toggle(int x, int y, int z) {
+            long key = getKey(x, y, z);
+
+            if (!_toggled.remove(key))
+                _toggled.add(key);
+        }
+
+        @Override
+        public Material getType(int x, int y, int z) {
+
+            Material material = _blocks.getType(x, y, z);
+
+            if (!_toggled.contains(getKey(x, y, z)))
+                return material;
+
+            return material == Material.AIR ? Material.STONE : Material.AIR;
+        }
+
+        private static long getKey(int x, int y, int z) {
+            return ((x & 0x1FFFFFL) << 42) | ((y & 0x1FFFFFL) << 21) | (z & 0x1FFFFFL);
+        }
+    }
+}
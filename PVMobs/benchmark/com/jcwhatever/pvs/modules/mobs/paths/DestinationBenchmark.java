@@ -0,0 +1,146 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.pvs.modules.mobs.layouts.SyntheticArena;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cached destination checks, the work done by
+ * {@link PathCacheEntry#isValidDestination} for each player near a spawn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DestinationBenchmark {
+
+    private static final int SPAWN_SPACING = 12;
+    private static final int QUERIES = 1024;
+    private static final int MAX_PATH_DISTANCE = 18;
+
+    @Param({ "FLAT", "MAZE", "MULTI_LEVEL" })
+    public SyntheticArena.Layout layout;
+
+    private PathFlood _flood;
+    private PathVolume[] _paths;
+    private int[] _queryPaths;
+    private int[] _queryX;
+    private int[] _queryY;
+    private int[] _queryZ;
+    private int[] _querySurfaceY;
+
+    @Setup
+    public void setup() {
+
+        SyntheticArena arena = new SyntheticArena(layout);
+        Random random = new Random(1);
+
+        _flood = new PathFlood(arena, DistanceUtils.MAX_DROP_HEIGHT);
+
+        List<Location> spawns = arena.getStandingLocations(SPAWN_SPACING);
+        _paths = new PathVolume[spawns.size()];
+
+        for (int i = 0; i < spawns.size(); i++) {
+            _paths[i] = _flood.search(spawns.get(i),
+                    PathCache.DEFAULT_SEARCH_RADIUS, PathCache.DEFAULT_MAX_PATH_DISTANCE);
+        }
+
+        // destinations are standing locations near the spawn, reachable or not
+        List<Location> destinations = arena.getStandingLocations(3);
+
+        _queryPaths = new int[QUERIES];
+        _queryX = new int[QUERIES];
+        _queryY = new int[QUERIES];
+        _queryZ = new int[QUERIES];
+        _querySurfaceY = new int[QUERIES];
+
+        for (int i = 0; i < QUERIES; i++) {
+
+            int spawnIndex = random.nextInt(spawns.size());
+            Location spawn = spawns.get(spawnIndex);
+            Location destination;
+
+            do {
+                destination = destinations.get(random.nextInt(destinations.size()));
+            } while (destination.distanceSquared(spawn) >
+                    DistanceUtils.SEARCH_RADIUS * DistanceUtils.SEARCH_RADIUS);
+
+            _queryPaths[i] = spawnIndex;
+            _queryX[i] = destination.getBlockX();
+            _queryY[i] = destination.getBlockY();
+            _queryZ[i] = destination.getBlockZ();
+            _querySurfaceY[i] = _flood.findSurfaceBelow(_queryX[i], _queryY[i], _queryZ[i]);
+        }
+    }
+
+    /**
+     * Check destinations given as player locations, the surface
+     * below each destination is found first.
+     */
+    @Benchmark
+    public int locationCheck() {
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+
+            int y = _flood.findSurfaceBelow(_queryX[i], _queryY[i], _queryZ[i]);
+
+            if (y != -1 && _paths[_queryPaths[i]].contains(_queryX[i], y, _queryZ[i], MAX_PATH_DISTANCE))
+                found++;
+        }
+        return found;
+    }
+
+    /**
+     * Check destinations given as surface blocks.
+     */
+    @Benchmark
+    public int surfaceCheck() {
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            if (_paths[_queryPaths[i]].contains(_queryX[i], _querySurfaceY[i], _queryZ[i], MAX_PATH_DISTANCE))
+                found++;
+        }
+        return found;
+    }
+}
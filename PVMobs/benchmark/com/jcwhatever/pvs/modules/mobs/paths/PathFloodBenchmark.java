@@ -0,0 +1,111 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.pvs.modules.mobs.layouts.SyntheticArena;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the path searches used to generate path caches, spawn groups
+ * and player flow fields on synthetic arena layouts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathFloodBenchmark {
+
+    private static final int SPAWN_SPACING = 12;
+    private static final int PLAYER_SPACING = 32;
+    private static final int FLOW_FIELD_DISTANCE = 24;
+
+    @Param({ "FLAT", "MAZE", "MULTI_LEVEL" })
+    public SyntheticArena.Layout layout;
+
+    private SyntheticArena _arena;
+    private PathFlood _flood;
+    private List<Location> _spawns;
+    private List<Location> _players;
+    private int _next;
+
+    @Setup
+    public void setup() {
+        _arena = new SyntheticArena(layout);
+        _flood = new PathFlood(_arena, DistanceUtils.MAX_DROP_HEIGHT);
+        _spawns = _arena.getStandingLocations(SPAWN_SPACING);
+        _players = _arena.getStandingLocations(PLAYER_SPACING);
+    }
+
+    /**
+     * Search from a spawn, the work done for each spawn when caching paths.
+     */
+    @Benchmark
+    public PathVolume search() {
+        Location spawn = nextSpawn();
+        return _flood.search(spawn, PathCache.DEFAULT_SEARCH_RADIUS, PathCache.DEFAULT_MAX_PATH_DISTANCE);
+    }
+
+    /**
+     * Hash the search volume of a spawn, the work done for each spawn
+     * to find shared paths before searching.
+     */
+    @Benchmark
+    public String sharedKey() {
+        Location spawn = nextSpawn();
+        return SharedPathCache.getKey(_flood, spawn,
+                PathCache.DEFAULT_SEARCH_RADIUS, PathCache.DEFAULT_MAX_PATH_DISTANCE);
+    }
+
+    /**
+     * Search from all players at once, the work done to build a flow field.
+     */
+    @Benchmark
+    public PathVolume searchToPlayers() {
+        return _flood.searchTo(_players, -48, 0, -48, 47, 95, 47, FLOW_FIELD_DISTANCE);
+    }
+
+    private Location nextSpawn() {
+        Location spawn = _spawns.get(_next);
+        _next = (_next + 1) % _spawns.size();
+        return spawn;
+    }
+}
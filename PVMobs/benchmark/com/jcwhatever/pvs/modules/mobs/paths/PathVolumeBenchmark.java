@@ -0,0 +1,143 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.coords.Coords3Di;
+import com.jcwhatever.nucleus.utils.coords.ICoords3Di;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PathVolume} lookups to the boxed coordinate set
+ * previously used by {@link PathCacheEntry}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathVolumeBenchmark {
+
+    private static final int RANGE = 16;
+    private static final int SIZE = RANGE * 2 + 1;
+    private static final int QUERIES = 1024;
+    private static final int Y_ORIGIN = 56;
+    private static final int MAX_PATH_DISTANCE = 18;
+
+    private Set<ICoords3Di> _set;
+    private PathVolume _volume;
+
+    private ICoords3Di[] _queryCoords;
+    private int[] _queryX;
+    private int[] _queryY;
+    private int[] _queryZ;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(1);
+
+        _set = new HashSet<>(SIZE * SIZE * 2);
+
+        byte[] distances = new byte[SIZE * SIZE * SIZE];
+
+        // ground floor and a partial upper floor, similar to a flood result
+        for (int x = -RANGE; x <= RANGE; x++) {
+            for (int z = -RANGE; z <= RANGE; z++) {
+
+                int distance = Math.abs(x) + Math.abs(z);
+
+                _set.add(new Coords3Di(x, 63, z));
+                distances[getIndex(x, 63, z)] = (byte)(distance + 1);
+
+                if (x > 0 && random.nextInt(3) != 0) {
+                    _set.add(new Coords3Di(x, 70, z));
+                    distances[getIndex(x, 70, z)] = (byte)(distance + 8);
+                }
+            }
+        }
+
+        _volume = PathVolume.fromDistances(-RANGE, Y_ORIGIN, -RANGE, SIZE, SIZE, SIZE,
+                PathVolume.MAX_DISTANCE, distances);
+
+        _queryCoords = new ICoords3Di[QUERIES];
+        _queryX = new int[QUERIES];
+        _queryY = new int[QUERIES];
+        _queryZ = new int[QUERIES];
+
+        for (int i = 0; i < QUERIES; i++) {
+            _queryX[i] = random.nextInt(SIZE) - RANGE;
+            _queryY[i] = random.nextBoolean() ? 63 : Y_ORIGIN + random.nextInt(SIZE);
+            _queryZ[i] = random.nextInt(SIZE) - RANGE;
+            _queryCoords[i] = new Coords3Di(_queryX[i], _queryY[i], _queryZ[i]);
+        }
+    }
+
+    @Benchmark
+    public int hashSetLookup() {
+        int found = 0;
+        for (ICoords3Di coords : _queryCoords) {
+            if (_set.contains(coords))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int volumeLookup() {
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            if (_volume.contains(_queryX[i], _queryY[i], _queryZ[i], MAX_PATH_DISTANCE))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int volumeLookupConcurrent() {
+        return volumeLookup();
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return ((y - Y_ORIGIN) * SIZE + (z + RANGE)) * SIZE + (x + RANGE);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.spawners.base;
+
+import org.bukkit.entity.LivingEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures removing and adding mobs, the bookkeeping done by
+ * {@link Spawner#removeMob} and when mobs are spawned.
+ *
+ * <p>The registry is compared to the list the spawner used before.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MobRegistryBenchmark {
+
+    @Param({ "50", "500" })
+    public int mobs;
+
+    private LivingEntity[] _entities;
+    private int[] _order;
+    private MobRegistry _registry;
+    private List<LivingEntity> _list;
+    private int _next;
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(1);
+
+        _entities = new LivingEntity[mobs];
+        _order = new int[mobs * 4];
+        _registry = new MobRegistry(mobs);
+        _list = new ArrayList<>(mobs);
+
+        for (int i = 0; i < mobs; i++) {
+            _entities[i] = createEntity(new UUID(random.nextLong(), random.nextLong()));
+            _registry.register(_entities[i]);
+            _list.add(_entities[i]);
+        }
+
+        for (int i = 0; i < _order.length; i++) {
+            _order[i] = random.nextInt(mobs);
+        }
+    }
+
+    @Benchmark
+    public boolean registry() {
+        LivingEntity entity = _entities[next()];
+        _registry.unregister(entity);
+        return _registry.register(entity);
+    }
+
+    @Benchmark
+    public boolean list() {
+        LivingEntity entity = _entities[next()];
+        _list.remove(entity);
+        return _list.add(entity);
+    }
+
+    private int next() {
+        int index = _order[_next];
+        _next = (_next + 1) % _order.length;
+        return index;
+    }
+
+    /*
+     * Create a stub entity that only supports its unique ID and identity.
+     */
+    private static LivingEntity createEntity(final UUID id) {
+
+        return (LivingEntity)Proxy.newProxyInstance(LivingEntity.class.getClassLoader(),
+                new Class<?>[] { LivingEntity.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+                        switch (method.getName()) {
+                            case "getUniqueId":
+                                return id;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return id.hashCode();
+                            case "toString":
+                                return "StubEntity{" + id + '}';
+                            default:
+                                throw new UnsupportedOperationException(
+                                        "Stub entity does not support " + method.getName());
+                        }
+                    }
+                });
+    }
+}
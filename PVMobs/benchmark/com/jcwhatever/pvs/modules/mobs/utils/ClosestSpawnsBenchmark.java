@@ -0,0 +1,158 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.layouts.SyntheticArena;
+import com.jcwhatever.pvs.modules.mobs.paths.PathCache;
+import com.jcwhatever.pvs.modules.mobs.paths.PathFlood;
+import com.jcwhatever.pvs.modules.mobs.paths.PathVolume;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the spawns with cached paths to players, the work done by
+ * {@link DistanceUtils#getClosestSpawns} when all spawns have cached paths.
+ *
+ * <p>The grid lookup used by the spawners is compared to a scan of all spawns.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClosestSpawnsBenchmark {
+
+    private static final int PLAYER_SPACING = 24;
+    private static final int MAX_PATH_DISTANCE = 18;
+
+    @Param({ "FLAT", "MAZE", "MULTI_LEVEL" })
+    public SyntheticArena.Layout layout;
+
+    @Param({ "4", "8" })
+    public int spawnSpacing;
+
+    private List<Spawnpoint> _spawns;
+    private SpawnpointGrid<Spawnpoint> _grid;
+    private Map<Spawnpoint, PathVolume> _paths;
+    private List<Location> _players;
+    private int[] _playerSurfaceY;
+
+    @Setup
+    public void setup() {
+
+        SyntheticArena arena = new SyntheticArena(layout);
+        PathFlood flood = new PathFlood(arena, DistanceUtils.MAX_DROP_HEIGHT);
+
+        _spawns = arena.createSpawns(spawnSpacing);
+        _grid = new SpawnpointGrid<>(_spawns);
+        _paths = new IdentityHashMap<>(_spawns.size());
+
+        for (Spawnpoint spawn : _spawns) {
+            _paths.put(spawn, flood.search(spawn,
+                    PathCache.DEFAULT_SEARCH_RADIUS, PathCache.DEFAULT_MAX_PATH_DISTANCE));
+        }
+
+        _players = arena.getStandingLocations(PLAYER_SPACING);
+        _playerSurfaceY = new int[_players.size()];
+
+        for (int i = 0; i < _players.size(); i++) {
+            Location player = _players.get(i);
+            _playerSurfaceY[i] = flood.findSurfaceBelow(player.getBlockX(), player.getBlockY(), player.getBlockZ());
+        }
+    }
+
+    @Benchmark
+    public List<Spawnpoint> grid() {
+
+        List<Spawnpoint> result = new ArrayList<>(10);
+        Set<Spawnpoint> found = Collections.newSetFromMap(new IdentityHashMap<Spawnpoint, Boolean>(_spawns.size()));
+        List<Spawnpoint> nearby = new ArrayList<>(10);
+
+        for (int i = 0; i < _players.size(); i++) {
+
+            Location player = _players.get(i);
+
+            nearby.clear();
+            _grid.getNearby(player, DistanceUtils.SEARCH_RADIUS, nearby);
+
+            for (Spawnpoint spawn : nearby) {
+                if (!found.contains(spawn) && isValid(spawn, player, _playerSurfaceY[i])) {
+                    result.add(spawn);
+                    found.add(spawn);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public List<Spawnpoint> linearScan() {
+
+        List<Spawnpoint> result = new ArrayList<>(10);
+        Set<Spawnpoint> found = Collections.newSetFromMap(new IdentityHashMap<Spawnpoint, Boolean>(_spawns.size()));
+        int radiusSquared = DistanceUtils.SEARCH_RADIUS * DistanceUtils.SEARCH_RADIUS;
+
+        for (int i = 0; i < _players.size(); i++) {
+
+            Location player = _players.get(i);
+
+            for (Spawnpoint spawn : _spawns) {
+                if (!found.contains(spawn) && spawn.distanceSquared(player) <= radiusSquared &&
+                        isValid(spawn, player, _playerSurfaceY[i])) {
+                    result.add(spawn);
+                    found.add(spawn);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private boolean isValid(Spawnpoint spawn, Location player, int surfaceY) {
+        return surfaceY != -1 &&
+                _paths.get(spawn).contains(player.getBlockX(), surfaceY, player.getBlockZ(), MAX_PATH_DISTANCE);
+    }
+}
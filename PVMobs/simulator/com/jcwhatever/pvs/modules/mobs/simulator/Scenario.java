@@ -0,0 +1,441 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.simulator;
+
+import com.jcwhatever.pvs.modules.mobs.paths.PathCacheEntry;
+import com.jcwhatever.pvs.modules.mobs.paths.PathVolume;
+import com.jcwhatever.pvs.modules.mobs.paths.SharedPathCache;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A simulator scenario loaded from a YAML file.
+ *
+ * <p>See example-scenario.yml in the simulator folder for the format.</p>
+ */
+public class Scenario {
+
+    private final String _spawnerName;
+    private final long _seed;
+    private final int _ticks;
+    private final Map<String, Object> _settings;
+    private final Map<String, Long> _costs;
+    private final double _mobSpeed;
+    private final int _mobLifetime;
+    private final List<Spawn> _spawns;
+    private final List<PlayerTrace> _players;
+
+    /**
+     * Load a scenario.
+     *
+     * @param file  The scenario file.
+     *
+     * @throws IOException if the scenario or a file it refers to cannot be read.
+     */
+    public static Scenario load(File file) throws IOException {
+
+        YamlConfiguration config = new YamlConfiguration();
+
+        try {
+            config.load(file);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Invalid scenario file: " + file.getName(), e);
+        }
+
+        return new Scenario(config, file.getAbsoluteFile().getParentFile());
+    }
+
+    private Scenario(YamlConfiguration config, File baseDir) throws IOException {
+
+        _spawnerName = config.getString("spawner", "proximity").toLowerCase();
+        if (!_spawnerName.equals("proximity") && !_spawnerName.equals("wave"))
+            throw new IOException("Unknown spawner: " + _spawnerName);
+
+        _seed = config.getLong("seed", 0L);
+        _ticks = config.getInt("ticks", 20 * 60 * 5);
+        _mobSpeed = config.getDouble("mobs.speed", 0.23D);
+        _mobLifetime = config.getInt("mobs.lifetime", 300);
+
+        _settings = loadSettings(config, baseDir);
+
+        _costs = new HashMap<>(10);
+        ConfigurationSection costs = config.getConfigurationSection("costs");
+        if (costs != null) {
+            for (String key : costs.getKeys(false)) {
+                _costs.put(key, costs.getLong(key));
+            }
+        }
+
+        File cacheDir = null;
+        String arenaFolder = config.getString("arena-folder", "");
+        if (!arenaFolder.isEmpty())
+            cacheDir = new File(resolve(baseDir, arenaFolder), PathCacheEntry.CACHE_FOLDER_NAME);
+
+        SharedPathCache sharedCache = null;
+        String sharedFolder = config.getString("shared-cache-folder", "");
+        if (!sharedFolder.isEmpty())
+            sharedCache = new SharedPathCache(resolve(baseDir, sharedFolder));
+
+        _spawns = loadSpawns(config, cacheDir != null ? sharedCache : null, cacheDir);
+        _players = loadPlayers(config);
+    }
+
+    /**
+     * Get the name of the simulated spawner, "proximity" or "wave".
+     */
+    public String getSpawnerName() {
+        return _spawnerName;
+    }
+
+    /**
+     * Get the random seed.
+     */
+    public long getSeed() {
+        return _seed;
+    }
+
+    /**
+     * Get the number of ticks to simulate.
+     */
+    public int getTicks() {
+        return _ticks;
+    }
+
+    /**
+     * Get the blocks per tick that mobs move toward players.
+     */
+    public double getMobSpeed() {
+        return _mobSpeed;
+    }
+
+    /**
+     * Get the ticks a mob lives before it is killed by players.
+     */
+    public int getMobLifetime() {
+        return _mobLifetime;
+    }
+
+    /**
+     * Get an integer spawner setting.
+     *
+     * @param name          The setting name.
+     * @param defaultValue  The value if the setting is not set.
+     */
+    public int getSetting(String name, int defaultValue) {
+        Object value = _settings.get(name);
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    /**
+     * Get an estimated operation cost in nanoseconds.
+     *
+     * @param name          The operation name.
+     * @param defaultValue  The cost if not set in the scenario.
+     */
+    public long getCost(String name, long defaultValue) {
+        Long value = _costs.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Get the spawns sorted by name.
+     */
+    public List<Spawn> getSpawns() {
+        return _spawns;
+    }
+
+    /**
+     * Get the player movement traces.
+     */
+    public List<PlayerTrace> getPlayers() {
+        return _players;
+    }
+
+    /*
+     * Load spawner settings from the optional extension settings file
+     * and override them with settings from the scenario.
+     */
+    private Map<String, Object> loadSettings(YamlConfiguration config, File baseDir) throws IOException {
+
+        Map<String, Object> settings = new HashMap<>(20);
+
+        String settingsFile = config.getString("settings-file", "");
+        if (!settingsFile.isEmpty()) {
+
+            YamlConfiguration extensionConfig = new YamlConfiguration();
+
+            try {
+                extensionConfig.load(resolve(baseDir, settingsFile));
+            } catch (InvalidConfigurationException e) {
+                throw new IOException("Invalid settings file: " + settingsFile, e);
+            }
+
+            String node = config.getString("settings-node", "");
+            String path = (node.isEmpty() ? "" : node + '.') + "spawners." + _spawnerName;
+
+            ConfigurationSection section = extensionConfig.getConfigurationSection(path);
+            if (section != null)
+                settings.putAll(section.getValues(false));
+        }
+
+        ConfigurationSection section = config.getConfigurationSection("settings");
+        if (section != null)
+            settings.putAll(section.getValues(false));
+
+        return settings;
+    }
+
+    /*
+     * Load spawns and their cached paths.
+     */
+    private List<Spawn> loadSpawns(YamlConfiguration config, @Nullable SharedPathCache sharedCache,
+                                   @Nullable File cacheDir) throws IOException {
+
+        ConfigurationSection section = config.getConfigurationSection("spawns");
+        if (section == null)
+            throw new IOException("Scenario has no spawns.");
+
+        List<String> names = new ArrayList<>(section.getKeys(false));
+        Collections.sort(names);
+
+        List<Spawn> spawns = new ArrayList<>(names.size());
+
+        for (String name : names) {
+
+            int[] coords = parseInts(section.getString(name), 3, "spawn " + name);
+
+            PathVolume paths = sharedCache != null
+                    ? loadPathCache(sharedCache, new File(cacheDir, name + ".bin"), coords)
+                    : null;
+
+            spawns.add(new Spawn(spawns.size(), name, coords[0], coords[1], coords[2], paths));
+        }
+
+        return spawns;
+    }
+
+    /*
+     * Load player traces.
+     */
+    private List<PlayerTrace> loadPlayers(YamlConfiguration config) throws IOException {
+
+        ConfigurationSection section = config.getConfigurationSection("players");
+        if (section == null)
+            throw new IOException("Scenario has no players.");
+
+        List<String> names = new ArrayList<>(section.getKeys(false));
+        Collections.sort(names);
+
+        List<PlayerTrace> players = new ArrayList<>(names.size());
+
+        for (String name : names) {
+
+            List<String> frames = section.getStringList(name);
+            if (frames.isEmpty())
+                throw new IOException("Player " + name + " has no trace.");
+
+            int[] ticks = new int[frames.size()];
+            double[][] positions = new double[frames.size()][];
+
+            for (int i = 0; i < frames.size(); i++) {
+
+                String[] parts = frames.get(i).split(",");
+                if (parts.length != 4)
+                    throw new IOException("Invalid trace frame for player " + name + ": " + frames.get(i));
+
+                try {
+                    ticks[i] = Integer.parseInt(parts[0].trim());
+                    positions[i] = new double[] {
+                            Double.parseDouble(parts[1].trim()),
+                            Double.parseDouble(parts[2].trim()),
+                            Double.parseDouble(parts[3].trim())
+                    };
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid trace frame for player " + name + ": " + frames.get(i), e);
+                }
+
+                if (i > 0 && ticks[i] <= ticks[i - 1])
+                    throw new IOException("Trace frames for player " + name + " are not in tick order.");
+            }
+
+            players.add(new PlayerTrace(name, ticks, positions));
+        }
+
+        return players;
+    }
+
+    /*
+     * Load the shared paths referenced by a cached paths file written by PathCacheEntry.
+     */
+    @Nullable
+    private static PathVolume loadPathCache(SharedPathCache sharedCache, File file, int[] coords)
+            throws IOException {
+
+        if (!file.exists() || file.length() < PathCacheEntry.FILE_HEADER_SIZE)
+            return null;
+
+        String key;
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+
+            if (input.readInt() != PathCacheEntry.CACHE_FILE_VERSION)
+                return null;
+
+            input.readInt(); // flags
+
+            if (input.readInt() != coords[0] ||
+                    input.readInt() != coords[1] ||
+                    input.readInt() != coords[2]) {
+                return null;
+            }
+
+            key = input.readUTF();
+        }
+
+        return sharedCache.load(key, coords[0], coords[1], coords[2]);
+    }
+
+    private static File resolve(File baseDir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(baseDir, path);
+    }
+
+    private static int[] parseInts(@Nullable String value, int count, String name) throws IOException {
+
+        if (value == null)
+            throw new IOException("Missing coordinates for " + name);
+
+        String[] parts = value.split(",");
+        if (parts.length != count)
+            throw new IOException("Invalid coordinates for " + name + ": " + value);
+
+        int[] result = new int[count];
+
+        try {
+            for (int i = 0; i < count; i++) {
+                result[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid coordinates for " + name + ": " + value, e);
+        }
+
+        return result;
+    }
+
+    /**
+     * A simulated spawnpoint.
+     */
+    public static class Spawn {
+
+        final int index;
+        final String name;
+        final int x;
+        final int y;
+        final int z;
+        final PathVolume paths;
+
+        Spawn(int index, String name, int x, int y, int z, @Nullable PathVolume paths) {
+            this.index = index;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.paths = paths;
+        }
+
+        /**
+         * Get the spawn name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Determine if the spawn has cached paths.
+         */
+        public boolean hasPathCache() {
+            return paths != null;
+        }
+    }
+
+    /**
+     * Scripted player movement. Positions between frames are interpolated,
+     * the player stays at the first position before the first frame and
+     * at the last position after the last frame.
+     */
+    public static class PlayerTrace {
+
+        final String name;
+        private final int[] _ticks;
+        private final double[][] _positions;
+
+        PlayerTrace(String name, int[] ticks, double[][] positions) {
+            this.name = name;
+            _ticks = ticks;
+            _positions = positions;
+        }
+
+        /**
+         * Get the player position at a tick.
+         *
+         * @param tick    The tick.
+         * @param output  The array to put the x, y, z position into.
+         */
+        void getPosition(int tick, double[] output) {
+
+            int next = 1;
+            while (next < _ticks.length - 1 && _ticks[next] < tick)
+                next++;
+
+            if (_ticks.length == 1 || tick <= _ticks[0]) {
+                System.arraycopy(_positions[0], 0, output, 0, 3);
+                return;
+            }
+
+            int previous = next - 1;
+            double delta = Math.min(1.0D,
+                    (tick - _ticks[previous]) / (double)(_ticks[next] - _ticks[previous]));
+
+            for (int i = 0; i < 3; i++) {
+                output[i] = _positions[previous][i] +
+                        (_positions[next][i] - _positions[previous][i]) * delta;
+            }
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.simulator;
+
+import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+import com.jcwhatever.pvs.modules.mobs.simulator.Scenario.PlayerTrace;
+import com.jcwhatever.pvs.modules.mobs.simulator.Scenario.Spawn;
+import com.jcwhatever.pvs.modules.mobs.spawners.proximity.ProximitySettings;
+import com.jcwhatever.pvs.modules.mobs.spawners.proximity.ProximitySpawner;
+import com.jcwhatever.pvs.modules.mobs.spawners.wave.WaveSettings;
+import com.jcwhatever.pvs.modules.mobs.spawners.wave.WaveSpawner;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a scenario against a model of the proximity or wave spawner.
+ *
+ * <p>The model follows the spawn cycle, spawn queue and despawn sweep of the
+ * spawners tick by tick without entities or a world. Mobs walk straight toward
+ * the closest player and are killed after the scenario mob lifetime.</p>
+ *
+ * <p>Spawns with cached paths are checked against the cache. Other spawns use
+ * the manhattan distance to a player in place of a real time path search, the
+ * results are memoized the same way real time searches are.</p>
+ *
+ * <p>The cost of each tick is estimated from the number of operations and the
+ * scenario operation costs.</p>
+ *
+ * <p>Despawning only removes mobs out of range of every player. The behaviours
+ * listed in {@link SimulationReport#EXCLUDED_BEHAVIOURS} need a world and are
+ * not modelled.</p>
+ */
+public class Simulation {
+
+    // default estimated operation costs in nanoseconds
+    private static final long DEFAULT_PATH_CACHE_COST = 150;
+    private static final long DEFAULT_PATH_MEMO_COST = 100;
+    private static final long DEFAULT_REALTIME_PATH_COST = 250000;
+    private static final long DEFAULT_SPAWN_COST = 60000;
+    private static final long DEFAULT_DESPAWN_CHECK_COST = 2500;
+
+    private final Scenario _scenario;
+    private final boolean _isWave;
+    private final Random _random;
+    private final SimulationReport _report;
+
+    private final List<Spawn> _spawns;
+    private final List<PlayerTrace> _players;
+    private final double[][] _playerPositions;
+
+    private final List<Mob> _mobs = new ArrayList<>(100);
+    private final int[] _alivePerSpawn;
+    private final int[] _pendingPerSpawn;
+    private final Deque<int[]> _queue = new ArrayDeque<>(25);
+    private final Map<Long, int[]> _memo;
+
+    private final int _maxMobs;
+    private final int _maxPerSpawn;
+    private final int _maxPerChunk;
+    private final int _maxPathDistance;
+    private final int _maxDistanceSquared;
+    private final int _despawnBudget;
+    private final int _spawnsPerTick;
+    private final int _spawnBudget;
+    private final int _spawnInterval;
+    private final int _waveMultiplier;
+    private final int _ticksBetweenWaves;
+
+    private final long _pathCacheCost;
+    private final long _pathMemoCost;
+    private final long _realtimePathCost;
+    private final long _spawnCost;
+    private final long _despawnCheckCost;
+
+    private int _tick;
+    private long _tickCost;
+    private int _pendingMobs;
+    private int _despawnCursor;
+    private int _elapsed = Integer.MAX_VALUE / 2; // spawn on first cycle
+    private int _wave = 1;
+    private int _totalSpawned;
+    private int _totalKilled;
+    private int _waveAdvanceTick = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param scenario  The scenario to simulate.
+     */
+    public Simulation(Scenario scenario) {
+        _scenario = scenario;
+        _isWave = scenario.getSpawnerName().equals("wave");
+        _random = new Random(scenario.getSeed());
+        _spawns = scenario.getSpawns();
+        _players = scenario.getPlayers();
+        _playerPositions = new double[_players.size()][3];
+        _alivePerSpawn = new int[_spawns.size()];
+        _pendingPerSpawn = new int[_spawns.size()];
+        _report = new SimulationReport(scenario);
+
+        _memo = new LinkedHashMap<Long, int[]>(MobArenaExtension.PATH_MEMO_CAPACITY, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > MobArenaExtension.PATH_MEMO_CAPACITY;
+            }
+        };
+
+        int totalPlayers = _players.size();
+
+        if (_isWave) {
+            int maxDistance = scenario.getSetting("max-distance", WaveSettings.DEFAULT_MAX_DISTANCE);
+
+            _maxMobs = scenario.getSetting("max-mobs", WaveSettings.DEFAULT_MAX_MOBS);
+            _maxPerSpawn = scenario.getSetting("max-per-spawn", WaveSettings.DEFAULT_MAX_PER_SPAWN);
+            _maxPerChunk = scenario.getSetting("max-per-chunk", WaveSettings.DEFAULT_MAX_PER_CHUNK);
+            _maxDistanceSquared = maxDistance * maxDistance;
+            _despawnBudget = scenario.getSetting("despawn-budget", WaveSettings.DEFAULT_DESPAWN_BUDGET);
+            _spawnsPerTick = scenario.getSetting("spawns-per-tick", WaveSettings.DEFAULT_SPAWNS_PER_TICK);
+            _spawnBudget = scenario.getSetting("spawn-budget", WaveSettings.DEFAULT_SPAWN_BUDGET);
+            _waveMultiplier = scenario.getSetting("wave-multiplier", WaveSettings.DEFAULT_WAVE_MULTIPLIER);
+            _ticksBetweenWaves = scenario.getSetting("seconds-between-waves",
+                    WaveSettings.DEFAULT_SECONDS_BETWEEN_WAVES) * 20;
+            _maxPathDistance = WaveSpawner.MAX_PATH_DISTANCE;
+            _spawnInterval = WaveSpawner.SPAWN_INTERVAL;
+        }
+        else {
+            int maxDistance = scenario.getSetting("max-distance", ProximitySettings.DEFAULT_MAX_DISTANCE);
+
+            // the server is assumed to keep up, so TPS scaling is not applied
+            _maxMobs = Math.min(scenario.getSetting("max-mobs", ProximitySettings.DEFAULT_MAX_MOBS),
+                    scenario.getSetting("max-mobs-per-player",
+                            ProximitySettings.DEFAULT_MAX_MOBS_PER_PLAYER) * totalPlayers);
+            _maxPerSpawn = scenario.getSetting("max-per-spawn", ProximitySettings.DEFAULT_MAX_PER_SPAWN);
+            _maxPerChunk = scenario.getSetting("max-per-chunk", ProximitySettings.DEFAULT_MAX_PER_CHUNK);
+            _maxDistanceSquared = maxDistance * maxDistance;
+            _despawnBudget = scenario.getSetting("despawn-budget", ProximitySettings.DEFAULT_DESPAWN_BUDGET);
+            _spawnsPerTick = scenario.getSetting("spawns-per-tick", ProximitySettings.DEFAULT_SPAWNS_PER_TICK);
+            _spawnBudget = scenario.getSetting("spawn-budget", ProximitySettings.DEFAULT_SPAWN_BUDGET);
+            _waveMultiplier = 0;
+            _ticksBetweenWaves = 0;
+            _maxPathDistance = scenario.getSetting("max-path-distance",
+                    ProximitySettings.DEFAULT_MAX_PATH_DISTANCE);
+            _spawnInterval = Math.max(scenario.getSetting("min-spawn-interval",
+                    ProximitySettings.DEFAULT_MIN_SPAWN_INTERVAL), 20 + (3 * totalPlayers));
+        }
+
+        _pathCacheCost = scenario.getCost("path-cache", DEFAULT_PATH_CACHE_COST);
+        _pathMemoCost = scenario.getCost("path-memo", DEFAULT_PATH_MEMO_COST);
+        _realtimePathCost = scenario.getCost("realtime-path", DEFAULT_REALTIME_PATH_COST);
+        _spawnCost = scenario.getCost("spawn", DEFAULT_SPAWN_COST);
+        _despawnCheckCost = scenario.getCost("despawn-check", DEFAULT_DESPAWN_CHECK_COST);
+    }
+
+    /**
+     * Run the simulation.
+     *
+     * @return  The simulation report.
+     */
+    public SimulationReport run() {
+
+        int firstSpawnTick = _isWave ? _random.nextInt(WaveSpawner.SPAWN_INTERVAL) : 5;
+
+        for (_tick = 0; _tick < _scenario.getTicks(); _tick++) {
+
+            _tickCost = 0;
+
+            for (int i = 0; i < _players.size(); i++) {
+                _players.get(i).getPosition(_tick, _playerPositions[i]);
+            }
+
+            if (_isWave && _waveAdvanceTick == _tick) {
+                _wave++;
+                _totalSpawned = 0;
+                _totalKilled = 0;
+                _waveAdvanceTick = -1;
+            }
+
+            if (_isWave) {
+                if (_tick >= firstSpawnTick && (_tick - firstSpawnTick) % WaveSpawner.SPAWN_INTERVAL == 0)
+                    spawnCycle();
+            }
+            else if (_tick >= firstSpawnTick && (_tick - firstSpawnTick) % ProximitySpawner.SPAWN_CHECK_INTERVAL == 0) {
+                _elapsed += ProximitySpawner.SPAWN_CHECK_INTERVAL;
+                if (_elapsed >= _spawnInterval) {
+                    _elapsed = 0;
+                    spawnCycle();
+                }
+            }
+
+            releaseQueue();
+            updateMobs();
+            despawnSweep();
+
+            _report.recordTick(_tick, _tickCost, _mobs.size(), _wave);
+        }
+
+        return _report;
+    }
+
+    /*
+     * Same as SpawnMobsTask#run. Selects spawns near players and queues spawns.
+     */
+    private void spawnCycle() {
+
+        _report.cycles++;
+
+        if (!canAddMobs())
+            return;
+
+        List<Spawn> spawns = getClosestSpawns();
+
+        while (!spawns.isEmpty() && canAddMobs()) {
+
+            Spawn spawn = spawns.remove(_random.nextInt(spawns.size()));
+
+            if (_maxPerSpawn > -1 &&
+                    _alivePerSpawn[spawn.index] + _pendingPerSpawn[spawn.index] >= _maxPerSpawn) {
+                continue;
+            }
+
+            if (getChunkCapacity(spawn) == 0) {
+                _report.chunkFullSkips++;
+                continue;
+            }
+
+            int count = getSpawnCount(spawn);
+            if (count < 1)
+                break;
+
+            _queue.add(new int[] { spawn.index, count });
+            _pendingMobs += count;
+            _pendingPerSpawn[spawn.index] += count;
+        }
+    }
+
+    /*
+     * Same as SpawnQueue#run.
+     */
+    private void releaseQueue() {
+
+        if (_queue.isEmpty())
+            return;
+
+        long spawnCost = 0;
+        int totalSpawned = 0;
+
+        do {
+
+            int[] request = _queue.remove();
+            Spawn spawn = _spawns.get(request[0]);
+
+            _pendingMobs -= request[1];
+            _pendingPerSpawn[spawn.index] -= request[1];
+
+            int count = Math.min(request[1], getSpawnLimit());
+            if (_maxPerSpawn > -1)
+                count = Math.min(count, _maxPerSpawn - _alivePerSpawn[spawn.index]);
+
+            int chunkCapacity = getChunkCapacity(spawn);
+            if (chunkCapacity > -1)
+                count = Math.min(count, chunkCapacity);
+
+            if (count < 1) {
+                _report.dropped++;
+                continue;
+            }
+
+            for (int i = 0; i < count; i++) {
+                spawnMob(spawn);
+            }
+
+            spawnCost += count * _spawnCost;
+            totalSpawned += count;
+
+        } while (!_queue.isEmpty() && totalSpawned < _spawnsPerTick && spawnCost < _spawnBudget);
+
+        _tickCost += spawnCost;
+    }
+
+    /*
+     * Spawn a mob and target the closest player.
+     */
+    private void spawnMob(Spawn spawn) {
+
+        _report.spawned++;
+        _report.spawnedPerSpawn[spawn.index]++;
+
+        if (_isWave)
+            _totalSpawned++;
+
+        // no player to target
+        if (getClosestPlayer(spawn.x + 0.5D, spawn.y, spawn.z + 0.5D) == -1) {
+            _report.despawned++;
+            onMobRemove(false);
+            return;
+        }
+
+        _mobs.add(new Mob(spawn.index, spawn.x + 0.5D, spawn.y, spawn.z + 0.5D, _tick));
+        _alivePerSpawn[spawn.index]++;
+        _report.peakMobs = Math.max(_report.peakMobs, _mobs.size());
+    }
+
+    /*
+     * Move mobs toward players and kill mobs at the end of their lifetime.
+     */
+    private void updateMobs() {
+
+        double speed = _scenario.getMobSpeed();
+
+        for (int i = _mobs.size() - 1; i >= 0; i--) {
+
+            Mob mob = _mobs.get(i);
+
+            if (_tick - mob.spawnTick >= _scenario.getMobLifetime()) {
+                removeMob(i);
+                _report.killed++;
+                onMobRemove(true);
+                continue;
+            }
+
+            int player = getClosestPlayer(mob.x, mob.y, mob.z);
+            if (player == -1)
+                continue;
+
+            double dx = _playerPositions[player][0] - mob.x;
+            double dz = _playerPositions[player][2] - mob.z;
+            double distance = Math.sqrt(dx * dx + dz * dz);
+
+            if (distance <= speed) {
+                mob.x += dx;
+                mob.z += dz;
+            }
+            else if (distance > 0) {
+                mob.x += dx / distance * speed;
+                mob.z += dz / distance * speed;
+            }
+
+            mob.y = _playerPositions[player][1];
+        }
+    }
+
+    /*
+     * Same as the round robin sweep in DespawnMobsTask.
+     */
+    private void despawnSweep() {
+
+        if (_mobs.isEmpty()) {
+            _despawnCursor = 0;
+            return;
+        }
+
+        int maxChecks = _mobs.size();
+        int checks = 0;
+        long cost = 0;
+
+        do {
+
+            if (_despawnCursor >= _mobs.size())
+                _despawnCursor = 0;
+
+            int size = _mobs.size();
+            Mob mob = _mobs.get(_despawnCursor);
+
+            checks++;
+            cost += _despawnCheckCost;
+
+            if (getClosestPlayer(mob.x, mob.y, mob.z) == -1) {
+                removeMob(_despawnCursor);
+                _report.despawned++;
+                onMobRemove(false);
+            }
+
+            if (_mobs.size() == size)
+                _despawnCursor++;
+
+        } while (checks < maxChecks && !_mobs.isEmpty() && cost < _despawnBudget);
+
+        _report.despawnChecks += checks;
+        _tickCost += cost;
+    }
+
+    /*
+     * Same as DistanceUtils#getClosestSpawns.
+     */
+    private List<Spawn> getClosestSpawns() {
+
+        List<Spawn> result = new ArrayList<>(10);
+        boolean[] found = new boolean[_spawns.size()];
+        int radius = DistanceUtils.SEARCH_RADIUS;
+        int radiusSquared = radius * radius;
+
+        for (double[] position : _playerPositions) {
+
+            if (result.size() == _spawns.size())
+                break;
+
+            int x = (int) Math.floor(position[0]);
+            int y = (int) Math.floor(position[1]);
+            int z = (int) Math.floor(position[2]);
+
+            for (Spawn spawn : _spawns) {
+
+                if (found[spawn.index])
+                    continue;
+
+                int dx = spawn.x - x;
+                int dy = spawn.y - y;
+                int dz = spawn.z - z;
+
+                if (dx * dx + dy * dy + dz * dz > radiusSquared)
+                    continue;
+
+                if (isValidDestination(spawn, x, y, z, dx, dy, dz)) {
+                    result.add(spawn);
+                    found[spawn.index] = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Same as DistanceUtils#isValidMobDestination.
+     */
+    private boolean isValidDestination(Spawn spawn, int x, int y, int z, int dx, int dy, int dz) {
+
+        if (spawn.paths != null && spawn.paths.getMaxDistance() >= _maxPathDistance) {
+            _report.pathCacheChecks++;
+            _tickCost += _pathCacheCost;
+
+            // the player stands on the block below
+            return spawn.paths.contains(x, y - 1, z, _maxPathDistance);
+        }
+
+        long key = ((long) spawn.index << 48) ^ ((long) (x & 0xFFFF) << 32) ^ ((long) (y & 0xFFFF) << 16) ^ (z & 0xFFFF);
+
+        int[] memo = _memo.get(key);
+        int distance;
+
+        if (memo != null && memo[0] > _tick) {
+            _report.pathMemoHits++;
+            _tickCost += _pathMemoCost;
+            distance = memo[1];
+        }
+        else {
+            _report.realtimePathChecks++;
+            _tickCost += _realtimePathCost;
+            distance = Math.abs(dx) + Math.abs(dy) + Math.abs(dz);
+            _memo.put(key, new int[] { _tick + MobArenaExtension.PATH_MEMO_TTL, distance });
+        }
+
+        return distance <= _maxPathDistance;
+    }
+
+    /*
+     * Get the index of the closest player within the max despawn distance
+     * of a position or -1 if none.
+     */
+    private int getClosestPlayer(double x, double y, double z) {
+
+        double current = _maxDistanceSquared;
+        int result = -1;
+
+        for (int i = 0; i < _playerPositions.length; i++) {
+
+            double dx = _playerPositions[i][0] - x;
+            double dy = _playerPositions[i][1] - y;
+            double dz = _playerPositions[i][2] - z;
+            double distance = dx * dx + dy * dy + dz * dz;
+
+            if (distance >= current)
+                continue;
+
+            current = distance;
+            result = i;
+        }
+
+        return result;
+    }
+
+    /*
+     * Remove a mob the same way as MobRegistry.
+     */
+    private void removeMob(int index) {
+
+        Mob mob = _mobs.get(index);
+        int last = _mobs.size() - 1;
+
+        if (index != last)
+            _mobs.set(index, _mobs.get(last));
+
+        _mobs.remove(last);
+        _alivePerSpawn[mob.spawnIndex]--;
+    }
+
+    /*
+     * Same as Spawner#getChunkCapacity. Mobs are counted in the chunk
+     * they are currently in.
+     */
+    private int getChunkCapacity(Spawn spawn) {
+
+        if (_maxPerChunk < 0)
+            return -1;
+
+        int chunkX = spawn.x >> 4;
+        int chunkZ = spawn.z >> 4;
+        int count = 0;
+
+        for (Mob mob : _mobs) {
+            if (((int) Math.floor(mob.x) >> 4) == chunkX && ((int) Math.floor(mob.z) >> 4) == chunkZ)
+                count++;
+        }
+
+        return Math.max(0, _maxPerChunk - count);
+    }
+
+    /*
+     * Same as WaveSpawner#onMobRemove.
+     */
+    private void onMobRemove(boolean isKilled) {
+
+        if (!_isWave)
+            return;
+
+        if (isKilled)
+            _totalKilled++;
+        else
+            _totalSpawned--;
+
+        if (_totalKilled >= getWaveMobCount() && _waveAdvanceTick == -1)
+            _waveAdvanceTick = _tick + Math.max(1, _ticksBetweenWaves);
+    }
+
+    /*
+     * Same as the spawner getSpawnLimit methods.
+     */
+    private int getSpawnLimit() {
+        return _isWave
+                ? Math.min(_maxMobs, Math.max(0, getWaveMobCount() - _totalSpawned))
+                : _maxMobs - _mobs.size();
+    }
+
+    private boolean canAddMobs() {
+        return _mobs.size() + _pendingMobs < getSpawnLimit();
+    }
+
+    private int getSpawnCount(Spawn spawn) {
+
+        int count = getSpawnLimit() - _pendingMobs;
+
+        if (_maxPerSpawn > -1) {
+            count = Math.min(count,
+                    _maxPerSpawn - _alivePerSpawn[spawn.index] - _pendingPerSpawn[spawn.index]);
+        }
+
+        return _isWave ? Math.min(1, count) : count;
+    }
+
+    private int getWaveMobCount() {
+        return _wave * _waveMultiplier * _players.size();
+    }
+
+    private static class Mob {
+        final int spawnIndex;
+        final int spawnTick;
+        double x;
+        double y;
+        double z;
+
+        Mob(int spawnIndex, double x, double y, double z, int spawnTick) {
+            this.spawnIndex = spawnIndex;
+            this.spawnTick = spawnTick;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.simulator;
+
+import com.jcwhatever.pvs.modules.mobs.simulator.Scenario.Spawn;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a {@link Simulation}.
+ */
+public class SimulationReport {
+
+    /**
+     * Spawner behaviours that are not modelled by the simulation and are
+     * not reflected in the report.
+     */
+    public static final List<String> EXCLUDED_BEHAVIOURS = Collections.unmodifiableList(Arrays.asList(
+            "TPS scaling of the mob limit and spawn interval",
+            "path distance and line of sight despawn checks",
+            "line of sight cache",
+            "stuck mob despawning",
+            "retargeting from the player grid, mobs always chase the closest player"
+    ));
+
+    private final Scenario _scenario;
+    private final long[] _tickCosts;
+
+    int cycles;
+    int spawned;
+    int killed;
+    int despawned;
+    int dropped;
+    int chunkFullSkips;
+    int peakMobs;
+    int lastWave = 1;
+    long despawnChecks;
+    long pathCacheChecks;
+    long pathMemoHits;
+    long realtimePathChecks;
+    final int[] spawnedPerSpawn;
+
+    private long _totalMobTicks;
+
+    SimulationReport(Scenario scenario) {
+        _scenario = scenario;
+        _tickCosts = new long[scenario.getTicks()];
+        spawnedPerSpawn = new int[scenario.getSpawns().size()];
+    }
+
+    /*
+     * Record the end of a tick.
+     */
+    void recordTick(int tick, long cost, int mobs, int wave) {
+        _tickCosts[tick] = cost;
+        _totalMobTicks += mobs;
+        lastWave = wave;
+    }
+
+    /**
+     * Get the estimated cost of a tick in nanoseconds.
+     *
+     * @param tick  The tick.
+     */
+    public long getTickCost(int tick) {
+        return _tickCosts[tick];
+    }
+
+    /**
+     * Get the average estimated cost per tick in nanoseconds.
+     */
+    public long getAverageTickCost() {
+
+        if (_tickCosts.length == 0)
+            return 0;
+
+        long total = 0;
+        for (long cost : _tickCosts) {
+            total += cost;
+        }
+
+        return total / _tickCosts.length;
+    }
+
+    /**
+     * Get an estimated tick cost percentile in nanoseconds.
+     *
+     * @param percentile  The percentile, 0 to 100.
+     */
+    public long getTickCostPercentile(double percentile) {
+
+        if (_tickCosts.length == 0)
+            return 0;
+
+        long[] sorted = Arrays.copyOf(_tickCosts, _tickCosts.length);
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile / 100.0D * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Print a summary.
+     *
+     * @param out  The stream to print to.
+     */
+    public void print(PrintStream out) {
+
+        int ticks = _tickCosts.length;
+
+        out.println("Spawner: " + _scenario.getSpawnerName() + ", seed: " + _scenario.getSeed() +
+                ", ticks: " + ticks + ", players: " + _scenario.getPlayers().size());
+        out.println();
+        out.println("Not modelled");
+
+        for (String behaviour : EXCLUDED_BEHAVIOURS) {
+            out.println("  " + behaviour);
+        }
+
+        out.println();
+        printValue(out, "Spawn cycles", cycles);
+        printValue(out, "Mobs spawned", spawned);
+        printValue(out, "Mobs killed", killed);
+        printValue(out, "Mobs despawned", despawned);
+        printValue(out, "Queued spawns dropped", dropped);
+        printValue(out, "Spawns skipped, chunk full", chunkFullSkips);
+        printValue(out, "Peak mobs", peakMobs);
+        printValue(out, "Average mobs", (ticks == 0 ? 0 : _totalMobTicks / ticks));
+
+        if (_scenario.getSpawnerName().equals("wave"))
+            printValue(out, "Waves reached", lastWave);
+
+        out.println();
+        printValue(out, "Despawn checks", despawnChecks);
+        printValue(out, "Cached path checks", pathCacheChecks);
+        printValue(out, "Memoized path checks", pathMemoHits);
+        printValue(out, "Real time path checks", realtimePathChecks);
+        out.println();
+        out.println("Estimated tick cost (ns)");
+        out.println("  average: " + getAverageTickCost());
+        out.println("  p95:     " + getTickCostPercentile(95));
+        out.println("  p99:     " + getTickCostPercentile(99));
+        out.println("  max:     " + getTickCostPercentile(100));
+        out.println();
+        out.println("Mobs spawned per spawn");
+
+        List<Spawn> spawns = _scenario.getSpawns();
+
+        for (int i = 0; i < spawns.size(); i++) {
+            Spawn spawn = spawns.get(i);
+            out.println("  " + spawn.name + (spawn.hasPathCache() ? "" : " (no path cache)") +
+                    ": " + spawnedPerSpawn[i]);
+        }
+    }
+
+    /**
+     * Get the report as JSON.
+     */
+    public String toJson() {
+
+        StringBuilder json = new StringBuilder(1024);
+        int ticks = _tickCosts.length;
+
+        json.append("{\n");
+        appendValue(json, "spawner", _scenario.getSpawnerName());
+        appendValue(json, "seed", _scenario.getSeed());
+        appendValue(json, "ticks", ticks);
+        appendValue(json, "players", _scenario.getPlayers().size());
+
+        json.append("  \"excluded\": [");
+
+        for (int i = 0; i < EXCLUDED_BEHAVIOURS.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    ").append(quote(EXCLUDED_BEHAVIOURS.get(i)));
+        }
+
+        json.append("\n  ],\n");
+
+        appendValue(json, "cycles", cycles);
+        appendValue(json, "spawned", spawned);
+        appendValue(json, "killed", killed);
+        appendValue(json, "despawned", despawned);
+        appendValue(json, "dropped", dropped);
+        appendValue(json, "chunkFullSkips", chunkFullSkips);
+        appendValue(json, "peakMobs", peakMobs);
+        appendValue(json, "averageMobs", ticks == 0 ? 0 : _totalMobTicks / ticks);
+        appendValue(json, "waves", lastWave);
+        appendValue(json, "despawnChecks", despawnChecks);
+        appendValue(json, "pathCacheChecks", pathCacheChecks);
+        appendValue(json, "pathMemoHits", pathMemoHits);
+        appendValue(json, "realtimePathChecks", realtimePathChecks);
+
+        json.append("  \"tickCostNanos\": {\n");
+        json.append("    \"average\": ").append(getAverageTickCost()).append(",\n");
+        json.append("    \"p95\": ").append(getTickCostPercentile(95)).append(",\n");
+        json.append("    \"p99\": ").append(getTickCostPercentile(99)).append(",\n");
+        json.append("    \"max\": ").append(getTickCostPercentile(100)).append('\n');
+        json.append("  },\n");
+
+        json.append("  \"spawns\": {");
+
+        List<Spawn> spawns = _scenario.getSpawns();
+
+        for (int i = 0; i < spawns.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    ").append(quote(spawns.get(i).name)).append(": ").append(spawnedPerSpawn[i]);
+        }
+
+        json.append("\n  }\n");
+        json.append("}\n");
+
+        return json.toString();
+    }
+
+    private static void printValue(PrintStream out, String label, Object value) {
+        out.println(String.format("%-24s %s", label + ':', value));
+    }
+
+    private static void appendValue(StringBuilder json, String name, Object value) {
+        json.append("  ").append(quote(name)).append(": ");
+        json.append(value instanceof String ? quote((String) value) : String.valueOf(value));
+        json.append(",\n");
+    }
+
+    private static String quote(String value) {
+
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+
+            if (ch == '"' || ch == '\\') {
+                result.append('\\').append(ch);
+            }
+            else if (ch < 0x20) {
+                result.append(String.format("\\u%04x", (int) ch));
+            }
+            else {
+                result.append(ch);
+            }
+        }
+
+        result.append('"');
+        return result.toString();
+    }
+}
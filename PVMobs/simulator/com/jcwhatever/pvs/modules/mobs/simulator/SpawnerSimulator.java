@@ -0,0 +1,71 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.simulator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runs a spawner simulation from the command line without a server.
+ *
+ * <p>Usage: SpawnerSimulator &lt;scenario file&gt; [report file]</p>
+ *
+ * <p>A summary is printed to standard out. If a report file is specified,
+ * the report is also written to it as JSON.</p>
+ */
+public class SpawnerSimulator {
+
+    private SpawnerSimulator() {}
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            System.err.println("Usage: SpawnerSimulator <scenario file> [report file]");
+            System.exit(1);
+            return;
+        }
+
+        Scenario scenario = Scenario.load(new File(args[0]));
+        SimulationReport report = new Simulation(scenario).run();
+
+        report.print(System.out);
+
+        if (args.length > 1) {
+
+            File file = new File(args[1]);
+
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write(report.toJson());
+            }
+
+            System.out.println();
+            System.out.println("Report written to " + file.getPath());
+        }
+    }
+}
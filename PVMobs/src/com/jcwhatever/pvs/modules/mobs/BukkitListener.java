@@ -0,0 +1,98 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs;
+
+import com.jcwhatever.nucleus.Nucleus;
+import com.jcwhatever.pvs.api.PVStarAPI;
+import com.jcwhatever.pvs.api.arena.ArenaRegion;
+import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
+import com.jcwhatever.pvs.modules.mobs.spawners.MobRemoveReason;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.List;
+
+public class BukkitListener implements Listener {
+
+    /*
+     * Remove mobs in unloaded chunks from their spawners.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    private void onChunkUnload(ChunkUnloadEvent event) {
+
+        List<ArenaRegion> regions = Nucleus.getRegionManager()
+                .getRegionsInChunk(event.getChunk(), ArenaRegion.class);
+        if (regions.size() == 0)
+            return;
+
+        Entity[] entities = null;
+
+        for (ArenaRegion region : regions) {
+
+            IArena arena = region.getArena();
+
+            MobArenaExtension extension = arena.getExtensions().get(MobArenaExtension.class);
+            if (extension == null)
+                continue;
+
+            ISpawner spawner = extension.getSpawner();
+            if (spawner == null || spawner.getMobCount() == 0)
+                continue;
+
+            if (entities == null)
+                entities = event.getChunk().getEntities();
+
+            for (Entity entity : entities) {
+
+                if (!(entity instanceof LivingEntity))
+                    continue;
+
+                // the mob would be left behind in the saved chunk
+                if (spawner.unregisterMob(entity, MobRemoveReason.OUT_OF_RANGE))
+                    entity.remove();
+            }
+        }
+    }
+
+    /*
+     * Stop the module when PV-Star is disabled.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPluginDisable(PluginDisableEvent event) {
+
+        if (event.getPlugin() != PVStarAPI.getPlugin())
+            return;
+
+        MobsModule module = MobsModule.getModule();
+        if (module != null)
+            module.onDisable();
+    }
+}
@@ -27,7 +27,10 @@ package com.jcwhatever.pvs.modules.mobs;
 
 import com.jcwhatever.nucleus.events.manager.EventMethod;
 import com.jcwhatever.nucleus.events.manager.IEventListener;
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
 import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.observer.event.EventSubscriberPriority;
 import com.jcwhatever.pvs.api.PVStarAPI;
 import com.jcwhatever.pvs.api.arena.extensions.ArenaExtension;
 import com.jcwhatever.pvs.api.arena.extensions.ArenaExtensionInfo;
@@ -36,10 +39,18 @@ import com.jcwhatever.pvs.api.events.ArenaStartedEvent;
 import com.jcwhatever.pvs.api.events.spawns.SpawnAddedEvent;
 import com.jcwhatever.pvs.api.events.spawns.SpawnRemovedEvent;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.paths.HierarchicalPathfinder;
+import com.jcwhatever.pvs.modules.mobs.paths.PathDistanceMemo;
 import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
+import com.jcwhatever.pvs.modules.mobs.spawners.MobRemoveReason;
 import com.jcwhatever.pvs.modules.mobs.spawners.SpawnerManager;
 import com.jcwhatever.pvs.modules.mobs.spawners.proximity.ProximitySpawner;
 import com.jcwhatever.pvs.modules.mobs.spawngroups.SpawnGroupGenerator;
+import com.jcwhatever.pvs.modules.mobs.utils.LineOfSightCache;
+import org.bukkit.block.Block;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.plugin.Plugin;
 
 import javax.annotation.Nullable;
@@ -53,7 +64,31 @@ public class MobArenaExtension extends ArenaExtension implements IEventListener
 
     public static final String NAME = "PVMobs";
 
+    /**
+     * The max number of real time path distances memoized per arena.
+     */
+    public static final int PATH_MEMO_CAPACITY = 4096;
+
+    /**
+     * The ticks a memoized path distance is valid for.
+     */
+    public static final int PATH_MEMO_TTL = 100;
+
+    private static final int LINE_OF_SIGHT_CAPACITY = 512;
+    private static final int LINE_OF_SIGHT_TTL = 5; // ticks
+
+    // ticks to wait after the last spawn change before regenerating spawn groups
+    private static final int RELOAD_DELAY = 60;
+
+    private final PathDistanceMemo _pathMemo = new PathDistanceMemo(PATH_MEMO_CAPACITY, PATH_MEMO_TTL);
+    private final LineOfSightCache _lineOfSight =
+            new LineOfSightCache(LINE_OF_SIGHT_CAPACITY, LINE_OF_SIGHT_TTL);
+
+    private HierarchicalPathfinder _hierarchy;
+    private boolean _isHierarchyEnabled;
     private SpawnGroupGenerator _groups;
+    private SpawnGroupGenerator _pendingGroups;
+    private IScheduledTask _reloadTask;
     private ISpawner _spawner;
     private MobTypeLimiter _limiter;
 
@@ -66,10 +101,67 @@ public class MobArenaExtension extends ArenaExtension implements IEventListener
         return _limiter;
     }
 
+    /**
+     * Get the memo of realtime path distances used when
+     * spawns do not have cached paths.
+     */
+    public PathDistanceMemo getPathMemo() {
+        return _pathMemo;
+    }
+
+    /**
+     * Get the cache of mob to player line of sight results
+     * used when checking mobs for despawning.
+     */
+    public LineOfSightCache getLineOfSightCache() {
+        return _lineOfSight;
+    }
+
+    /**
+     * Determine if hierarchical path finding is used for realtime
+     * path searches.
+     */
+    public boolean isHierarchicalPathsEnabled() {
+        return _isHierarchyEnabled;
+    }
+
+    /**
+     * Set hierarchical path finding on or off.
+     *
+     * @param isEnabled  True to use hierarchical path finding for realtime
+     *                   path searches, false to use AStar.
+     */
+    public void setHierarchicalPathsEnabled(boolean isEnabled) {
+
+        _isHierarchyEnabled = isEnabled;
+
+        getDataNode().set("hierarchical-paths", isEnabled);
+        getDataNode().save();
+
+        if (!isEnabled) {
+            _hierarchy.clear();
+        }
+        else if (getArena().getGame().isRunning()) {
+            _hierarchy.build();
+        }
+    }
+
+    /**
+     * Get the hierarchical path finder.
+     *
+     * @return  The path finder or null if hierarchical path finding is off.
+     */
+    @Nullable
+    public HierarchicalPathfinder getHierarchicalPathfinder() {
+        return _isHierarchyEnabled ? _hierarchy : null;
+    }
+
     @Override
     protected void onEnable() {
 
         _limiter = new MobTypeLimiter(getDataNode().getNode("limits"));
+        _hierarchy = new HierarchicalPathfinder(getArena());
+        _isHierarchyEnabled = getDataNode().getBoolean("hierarchical-paths", false);
 
         String spawnerName = getDataNode().getString("spawner", "proximity");
 
@@ -83,11 +175,32 @@ public class MobArenaExtension extends ArenaExtension implements IEventListener
     @Override
     protected void onDisable() {
         getArena().getEventManager().unregister(this);
+
+        _hierarchy.clear();
+
+        if (_reloadTask != null) {
+            _reloadTask.cancel();
+            _reloadTask = null;
+        }
+
+        if (_pendingGroups != null) {
+            _pendingGroups.dispose();
+            _pendingGroups = null;
+        }
+
+        if (_groups != null)
+            _groups.dispose();
     }
 
     @EventMethod
     private void onArenaStart(@SuppressWarnings("UnusedParameters") ArenaStartedEvent event) {
 
+        // no effect if already loading or loaded
+        _groups.getPathCache().load();
+
+        if (_isHierarchyEnabled)
+            _hierarchy.build();
+
         // make sure there are spawns
         if (_groups.getSpawnGroups().isEmpty())
             return;
@@ -99,16 +212,54 @@ public class MobArenaExtension extends ArenaExtension implements IEventListener
     @EventMethod
     private void onArenaEnd(@SuppressWarnings("UnusedParameters") ArenaEndedEvent event) {
         _spawner.reset(DespawnMethod.REMOVE);
+        _pathMemo.clear();
+        _lineOfSight.clear();
+
+        // the region may be restored or edited before the next game
+        _hierarchy.clear();
     }
 
     @EventMethod
     private void onAddSpawn(@SuppressWarnings("UnusedParameters") SpawnAddedEvent event) {
-        loadSettings();
+        scheduleReload();
     }
 
     @EventMethod
     private void onRemoveSpawn(@SuppressWarnings("UnusedParameters") SpawnRemovedEvent event) {
-        loadSettings();
+        scheduleReload();
+    }
+
+    /*
+     * Remove killed mobs from the spawner.
+     */
+    @EventMethod(priority = EventSubscriberPriority.LAST)
+    private void onEntityDeath(EntityDeathEvent event) {
+        if (_spawner != null)
+            _spawner.unregisterMob(event.getEntity(), MobRemoveReason.KILLED);
+    }
+
+    /*
+     * Invalidate cached paths affected by placed blocks.
+     */
+    @EventMethod(priority = EventSubscriberPriority.LAST)
+    private void onBlockPlace(BlockPlaceEvent event) {
+
+        if (event.isCancelled())
+            return;
+
+        invalidatePaths(event.getBlock());
+    }
+
+    /*
+     * Invalidate cached paths affected by broken blocks.
+     */
+    @EventMethod(priority = EventSubscriberPriority.LAST)
+    private void onBlockBreak(BlockBreakEvent event) {
+
+        if (event.isCancelled())
+            return;
+
+        invalidatePaths(event.getBlock());
     }
 
     public SpawnGroupGenerator getGroupGenerator() {
@@ -177,7 +328,79 @@ public class MobArenaExtension extends ArenaExtension implements IEventListener
         return spawns;
     }
 
+    /*
+     * Invalidate paths that may pass through a changed block. Line of
+     * sight results are left to expire on their own.
+     */
+    private void invalidatePaths(Block block) {
+        _pathMemo.invalidate(block.getX(), block.getY(), block.getZ());
+        _hierarchy.invalidate(block.getX(), block.getY(), block.getZ());
+
+        if (_groups == null)
+            return;
+
+        _groups.getPathCache().invalidate(block.getX(), block.getY(), block.getZ());
+    }
+
+    /*
+     * Reload spawn groups after spawns stop changing so bulk
+     * changes only regenerate the groups once.
+     */
+    private void scheduleReload() {
+
+        if (_reloadTask != null)
+            _reloadTask.cancel();
+
+        _reloadTask = Scheduler.runTaskLater(getPlugin(), RELOAD_DELAY, new Runnable() {
+            @Override
+            public void run() {
+                _reloadTask = null;
+                loadSettings();
+            }
+        });
+    }
+
     private void loadSettings() {
-        _groups = new SpawnGroupGenerator(this, getGameMobSpawns());
+
+        final SpawnGroupGenerator groups = new SpawnGroupGenerator(this, getGameMobSpawns());
+
+        if (_pendingGroups != null) {
+            _pendingGroups.dispose();
+            _pendingGroups = null;
+        }
+
+        if (groups.isLoaded() || _groups == null) {
+            setGroups(groups);
+
+            if (groups.isLoaded())
+                return;
+        }
+        else {
+            // the current groups remain in use until the new groups are ready
+            _pendingGroups = groups;
+        }
+
+        groups.generateGroups(new Runnable() {
+            @Override
+            public void run() {
+                if (_pendingGroups != groups)
+                    return;
+
+                _pendingGroups = null;
+                setGroups(groups);
+            }
+        }, null);
+    }
+
+    private void setGroups(SpawnGroupGenerator groups) {
+
+        if (_groups != null && _groups != groups)
+            _groups.dispose();
+
+        _groups = groups;
+
+        // cached paths are read in the background, destination
+        // checks use realtime paths until they are loaded.
+        groups.getPathCache().load();
     }
 }
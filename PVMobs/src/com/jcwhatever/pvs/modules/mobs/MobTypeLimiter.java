@@ -24,29 +24,39 @@
 
 package com.jcwhatever.pvs.modules.mobs;
 
-import com.jcwhatever.nucleus.collections.ElementCounter;
 import com.jcwhatever.nucleus.storage.IDataNode;
 import com.jcwhatever.nucleus.utils.EnumUtils;
 import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.pvs.api.spawns.SpawnType;
 import org.bukkit.entity.EntityType;
 
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.Arrays;
+import javax.annotation.Nullable;
 
 /**
  * Mob type limit settings.
+ *
+ * <p>Limits and counts are stored in arrays indexed by entity type ordinal.</p>
+ *
+ * <p>Spawning should reserve slots before the entities are spawned so that
+ * several spawns in the same tick cannot exceed a limit. Each spawned entity
+ * is committed to the reservation and the remaining slots are rolled back.</p>
  */
 public class MobTypeLimiter {
 
-    // stores max spawn limit for an entity type
-    private final Map<EntityType, Integer> _mobLimits = new EnumMap<>(EntityType.class);
+    private static final int TOTAL_TYPES = EntityType.values().length;
+
+    // stores max spawn limit for an entity type, -1 for no limit
+    private final int[] _mobLimits = new int[TOTAL_TYPES];
 
     // count the number of entities of each type spawned
-    private final ElementCounter<EntityType> _mobCounter = new ElementCounter<EntityType>(
-            ElementCounter.RemovalPolicy.KEEP_COUNTING);
+    private final int[] _mobCounts = new int[TOTAL_TYPES];
+
+    // count the number of entities of each type reserved but not spawned
+    private final int[] _reserved = new int[TOTAL_TYPES];
 
     private final IDataNode _dataNode;
+    private int _totalLimits;
 
     /**
      * Constructor.
@@ -57,6 +67,8 @@ public class MobTypeLimiter {
         PreCon.notNull(dataNode);
 
         _dataNode = dataNode;
+
+        load();
     }
 
     /**
@@ -67,36 +79,37 @@ public class MobTypeLimiter {
     public boolean canSpawnType(SpawnType type) {
         PreCon.notNull(type);
 
-        // check to see if limits have been imposed
-        if (_mobLimits.size() == 0) {
-            return true; // no limits, can spawn
-        }
+        return getAvailable(type, 1) > 0;
+    }
+
+    /**
+     * Reserve slots for entities of a spawn type that are about to be spawned.
+     *
+     * <p>Fewer slots than requested are reserved if a limit would be exceeded.</p>
+     *
+     * @param type    The spawn type.
+     * @param amount  The number of slots to reserve.
+     *
+     * @return  The reservation or null if no slots are available.
+     */
+    @Nullable
+    public Reservation reserve(SpawnType type, int amount) {
+        PreCon.notNull(type);
+        PreCon.positiveNumber(amount);
 
-        // make sure the spawn type hasn't reached its spawn limit
         EntityType[] entityTypes = type.getEntityTypes();
         if (entityTypes == null)
-            return false;
+            return null;
 
-        // check each entity type to see if its limit is reached.
-        for (EntityType entityType : entityTypes) {
+        amount = getAvailable(type, amount);
+        if (amount == 0)
+            return null;
 
-            Integer limit = _mobLimits.get(entityType);
-            if (limit == null || limit < 0) {
-                continue;
-            }
-
-            if (limit == 0) {
-                return false;
-            }
-
-            int count = _mobCounter.count(entityType);
-
-            if (count >= limit) {
-                return false;
-            }
+        for (EntityType entityType : entityTypes) {
+            _reserved[entityType.ordinal()] += amount;
         }
 
-        return true;
+        return new Reservation(entityTypes, amount);
     }
 
     /**
@@ -106,8 +119,9 @@ public class MobTypeLimiter {
      * @param type  The entity type.
      */
     public int get(EntityType type) {
-        Integer value = _mobLimits.get(type);
-        return (value != null) ? value : -1;
+        PreCon.notNull(type);
+
+        return _mobLimits[type.ordinal()];
     }
 
     /**
@@ -119,7 +133,7 @@ public class MobTypeLimiter {
     public void set(EntityType type, int limit) {
         PreCon.notNull(type);
 
-        _mobLimits.put(type, limit);
+        setLimit(type, limit);
 
         if (limit >= 0)
             _dataNode.set(type.name(), limit);
@@ -137,10 +151,13 @@ public class MobTypeLimiter {
     public void remove(EntityType type) {
         PreCon.notNull(type);
 
-        if (_mobLimits.remove(type) != null) {
-            _dataNode.remove(type.name());
-            _dataNode.save();
-        }
+        if (_mobLimits[type.ordinal()] < 0)
+            return;
+
+        setLimit(type, -1);
+
+        _dataNode.remove(type.name());
+        _dataNode.save();
     }
 
     /**
@@ -153,7 +170,8 @@ public class MobTypeLimiter {
     public void increment(EntityType type, int amount) {
         PreCon.notNull(type);
 
-        _mobCounter.add(type, amount);
+        int index = type.ordinal();
+        _mobCounts[index] = Math.max(0, _mobCounts[index] + amount);
     }
 
     /**
@@ -164,19 +182,76 @@ public class MobTypeLimiter {
     public int getCount(EntityType type) {
         PreCon.notNull(type);
 
-        return _mobCounter.count(type);
+        return _mobCounts[type.ordinal()];
+    }
+
+    /**
+     * Get the number of reserved slots of an entity type.
+     *
+     * @param type  The entity type.
+     */
+    public int getReserved(EntityType type) {
+        PreCon.notNull(type);
+
+        return _reserved[type.ordinal()];
     }
 
     /**
      * Reset all mob type counts to 0.
      */
     public void resetCount() {
-        _mobCounter.reset();
+        Arrays.fill(_mobCounts, 0);
+    }
+
+    /*
+     * Get the number of entities of a spawn type that can be spawned
+     * without exceeding a limit, up to the specified amount.
+     */
+    private int getAvailable(SpawnType type, int amount) {
+
+        // make sure the spawn type hasn't reached its spawn limit
+        EntityType[] entityTypes = type.getEntityTypes();
+        if (entityTypes == null)
+            return 0;
+
+        // check to see if limits have been imposed
+        if (_totalLimits == 0)
+            return amount; // no limits, can spawn
+
+        // check each entity type to see if its limit is reached.
+        for (EntityType entityType : entityTypes) {
+
+            int index = entityType.ordinal();
+            int limit = _mobLimits[index];
+            if (limit < 0)
+                continue;
+
+            int available = limit - _mobCounts[index] - _reserved[index];
+            if (available <= 0)
+                return 0;
+
+            amount = Math.min(amount, available);
+        }
+
+        return amount;
+    }
+
+    private void setLimit(EntityType type, int limit) {
+
+        int index = type.ordinal();
+        boolean hadLimit = _mobLimits[index] >= 0;
+        boolean hasLimit = limit >= 0;
+
+        _mobLimits[index] = hasLimit ? limit : -1;
+
+        if (hadLimit != hasLimit)
+            _totalLimits += hasLimit ? 1 : -1;
     }
 
     private void load() {
         // entity type limits
-        _mobLimits.clear();
+        Arrays.fill(_mobLimits, -1);
+        _totalLimits = 0;
 
         for (IDataNode node : _dataNode) {
 
@@ -188,7 +263,66 @@ public class MobTypeLimiter {
             if (limit < 0)
                 continue;
 
-            _mobLimits.put(type, limit);
+            setLimit(type, limit);
+        }
+    }
+
+    /**
+     * Slots reserved for entities that are about to be spawned.
+     */
+    public class Reservation {
+
+        private final EntityType[] _entityTypes;
+        private final int[] _remaining;
+        private final int _amount;
+
+        Reservation(EntityType[] entityTypes, int amount) {
+            _entityTypes = entityTypes;
+            _amount = amount;
+            _remaining = new int[entityTypes.length];
+
+            Arrays.fill(_remaining, amount);
+        }
+
+        /**
+         * Get the number of entities of each entity type reserved.
+         */
+        public int getAmount() {
+            return _amount;
+        }
+
+        /**
+         * Commit a spawned entity to the reservation. The reserved slot becomes
+         * a counted entity. Entities of types that are not reserved are counted
+         * without using a slot.
+         *
+         * @param type  The type of the spawned entity.
+         */
+        public void commit(EntityType type) {
+            PreCon.notNull(type);
+
+            for (int i = 0; i < _entityTypes.length; i++) {
+
+                if (_entityTypes[i] != type || _remaining[i] == 0)
+                    continue;
+
+                _remaining[i]--;
+                _reserved[type.ordinal()]--;
+                break;
+            }
+
+            _mobCounts[type.ordinal()]++;
+        }
+
+        /**
+         * Release the slots that were not committed.
+         */
+        public void rollback() {
+
+            for (int i = 0; i < _entityTypes.length; i++) {
+                _reserved[_entityTypes[i].ordinal()] -= _remaining[i];
+                _remaining[i] = 0;
+            }
         }
     }
 }
@@ -25,9 +25,11 @@
 
 package com.jcwhatever.pvs.modules.mobs;
 
+import com.jcwhatever.nucleus.Nucleus;
 import com.jcwhatever.pvs.api.PVStarAPI;
 import com.jcwhatever.pvs.api.modules.PVStarModule;
 import com.jcwhatever.pvs.modules.mobs.commands.MobsCommand;
+import com.jcwhatever.pvs.modules.mobs.paths.WorkerThreadFactory;
 import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.AngryWolfSpawn;
 import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.BabyZombieSpawn;
 import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.BlazeSpawn;
@@ -50,21 +52,51 @@ import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.WitherSpawn;
 import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.ZombiePigSpawn;
 import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.ZombieSpawn;
 import com.jcwhatever.pvs.modules.mobs.spawntypes.hostile.ZombieVillagerSpawn;
+import com.jcwhatever.pvs.modules.mobs.utils.TickMonitor;
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class MobsModule extends PVStarModule {
 
+    private static final int WORKER_THREADS = 2;
+
+    // max seconds to wait for queued work, such as path cache files being written
+    private static final int WORKER_SHUTDOWN_SECONDS = 5;
+
     private static MobsModule _module;
 
     public static MobsModule getModule() {
         return _module;
     }
 
+    private ExecutorService _workers;
+
     public MobsModule() {
         super();
 
         _module = this;
     }
 
+    /**
+     * Get the worker threads used for background path searches and
+     * path cache file IO.
+     *
+     * <p>Shared by all arenas. Results must be applied on the main thread. Work
+     * submitted after the module is disabled is discarded.</p>
+     */
+    public synchronized ExecutorService getWorkers() {
+
+        // arenas may load before the module is enabled
+        if (_workers == null)
+            _workers = createWorkers();
+
+        return _workers;
+    }
+
     @Override
     protected void onRegisterTypes() {
 
@@ -98,6 +130,54 @@ public class MobsModule extends PVStarModule {
     protected void onEnable() {
 
         PVStarAPI.getCommandDispatcher().registerCommand(MobsCommand.class);
+        Bukkit.getPluginManager().registerEvents(new BukkitListener(), Nucleus.getPlugin());
+
+        synchronized (this) {
+            if (_workers == null || _workers.isShutdown())
+                _workers = createWorkers();
+        }
+
+        TickMonitor.start();
+    }
+
+    /*
+     * Invoked when PV-Star is disabled. Stops the tick monitor and
+     * the worker threads.
+     */
+    protected void onDisable() {
+
+        TickMonitor.stop();
+
+        ExecutorService workers;
+
+        synchronized (this) {
+            workers = _workers;
+        }
+
+        if (workers == null)
+            return;
+
+        // let queued work finish, such as path cache files being written
+        workers.shutdown();
+
+        try {
+            if (!workers.awaitTermination(WORKER_SHUTDOWN_SECONDS, TimeUnit.SECONDS))
+                workers.shutdownNow();
+        }
+        catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Create the worker pool. Work submitted after shutdown is discarded
+     * instead of throwing since arenas are still being disposed.
+     */
+    private static ExecutorService createWorkers() {
+        return new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory("PVMobs-Worker"),
+                new ThreadPoolExecutor.DiscardPolicy());
     }
 
 }
@@ -45,5 +45,6 @@ public class MobsCommand extends AbstractPVCommand {
         registerCommand(PathsCommand.class);
         registerCommand(SettingsCommand.class);
         registerCommand(SpawnerCommand.class);
+        registerCommand(StatsSubCommand.class);
     }
 }
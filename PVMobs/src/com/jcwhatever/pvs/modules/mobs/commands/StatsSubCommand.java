@@ -0,0 +1,212 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.commands;
+
+import com.jcwhatever.nucleus.managed.commands.CommandInfo;
+import com.jcwhatever.nucleus.managed.commands.arguments.ICommandArguments;
+import com.jcwhatever.nucleus.managed.commands.exceptions.CommandException;
+import com.jcwhatever.nucleus.managed.commands.mixins.IExecutableCommand;
+import com.jcwhatever.nucleus.managed.language.Localizable;
+import com.jcwhatever.nucleus.managed.messaging.ChatPaginator;
+import com.jcwhatever.nucleus.utils.text.TextUtils.FormatTemplate;
+import com.jcwhatever.nucleus.utils.text.components.IChatMessage;
+import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.api.commands.AbstractPVCommand;
+import com.jcwhatever.pvs.modules.mobs.Lang;
+import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+import com.jcwhatever.pvs.modules.mobs.paths.HierarchicalPathfinder;
+import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
+import com.jcwhatever.pvs.modules.mobs.utils.LineOfSightCache;
+import com.jcwhatever.pvs.modules.mobs.utils.PerformanceStats;
+import com.jcwhatever.pvs.modules.mobs.utils.RollingCounter;
+import com.jcwhatever.pvs.modules.mobs.utils.StuckMobTracker;
+import com.jcwhatever.pvs.modules.mobs.utils.TickMonitor;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+
+@CommandInfo(
+        parent="mobs",
+        command="stats",
+        staticParams = { "page=1" },
+        description="Show PVMobs performance stats and mob counts for the selected arena.",
+
+        paramDescriptions = {
+                "page= {PAGE}"})
+
+public class StatsSubCommand extends AbstractPVCommand implements IExecutableCommand {
+
+    @Localizable static final String _EXTENSION_NOT_INSTALLED =
+            "PVMobs extension is not installed in arena '{0: arena name}'.";
+
+    @Localizable static final String _PAGINATOR_TITLE =
+            "PVMobs Stats for arena '{0: arena name}'";
+
+    @Localizable static final String _LABEL_TPS = "Server TPS";
+    @Localizable static final String _LABEL_MOBS = "Mobs";
+    @Localizable static final String _LABEL_STUCK = "Stuck mobs despawned";
+    @Localizable static final String _LABEL_LOAD_FALLBACKS = "Path cache load fallbacks";
+    @Localizable static final String _LABEL_CACHE_HITS = "Path cache hits (all arenas)";
+    @Localizable static final String _LABEL_CACHE_MISSES = "Path cache misses (all arenas)";
+    @Localizable static final String _LABEL_MEMO_HITS = "Path memo hits (all arenas)";
+    @Localizable static final String _LABEL_LINE_OF_SIGHT = "Line of sight cache";
+    @Localizable static final String _LABEL_LINE_OF_SIGHT_HITS = "Line of sight hits (all arenas)";
+    @Localizable static final String _LABEL_LINE_OF_SIGHT_MISSES = "Line of sight misses (all arenas)";
+    @Localizable static final String _LABEL_REALTIME = "Realtime searches (all arenas)";
+    @Localizable static final String _LABEL_HIERARCHY = "Hierarchical paths";
+    @Localizable static final String _LABEL_HIERARCHICAL = "Hierarchical searches (all arenas)";
+    @Localizable static final String _HIERARCHY_OFF = "off";
+    @Localizable static final String _HIERARCHY_BUILDING = "building";
+    @Localizable static final String _HIERARCHY_NOT_BUILT = "not built";
+    @Localizable static final String _HIERARCHY_READY =
+            "{0: entrances} entrances in {1: clusters} clusters";
+    @Localizable static final String _LABEL_SPAWN_TASK = "Spawn task (all arenas)";
+    @Localizable static final String _LABEL_SPAWN_QUEUE = "Spawn queue (all arenas)";
+    @Localizable static final String _LABEL_DESPAWN_TASK = "Despawn task (all arenas)";
+
+    @Override
+    public void execute(CommandSender sender, ICommandArguments args) throws CommandException {
+
+        IArena arena = getSelectedArena(sender, ArenaReturned.ALWAYS);
+        if (arena == null)
+            return; // finish
+
+        MobArenaExtension extension = arena.getExtensions().get(MobArenaExtension.class);
+        if (extension == null)
+            throw new CommandException(Lang.get(_EXTENSION_NOT_INSTALLED, arena.getName()));
+
+        int page = args.getInteger("page");
+
+        ChatPaginator pagin = createPagin(args, 7, Lang.get(_PAGINATOR_TITLE, arena.getName()));
+
+        ISpawner spawner = extension.getSpawner();
+
+        pagin.add(Lang.get(_LABEL_TPS), String.format("%.1f", TickMonitor.getTps()));
+
+        if (spawner != null) {
+            pagin.add(Lang.get(_LABEL_MOBS), spawner.getMobCount() + " / " + spawner.getSpawnLimit());
+            pagin.add(Lang.get(_LABEL_STUCK), formatStuck(spawner.getStuckMobs()));
+        }
+
+        pagin.add(Lang.get(_LABEL_LOAD_FALLBACKS),
+                extension.getGroupGenerator().getPathCache().getLoadFallbacks());
+
+        LineOfSightCache lineOfSight = extension.getLineOfSightCache();
+        pagin.add(Lang.get(_LABEL_LINE_OF_SIGHT),
+                formatHitRate(lineOfSight.getHits(), lineOfSight.getMisses()) +
+                        ", " + lineOfSight.size() + " / " + lineOfSight.getCapacity());
+
+        pagin.add(Lang.get(_LABEL_CACHE_HITS), formatCount(PerformanceStats.getPathCacheHits()));
+        pagin.add(Lang.get(_LABEL_CACHE_MISSES), formatCount(PerformanceStats.getPathCacheMisses()));
+        pagin.add(Lang.get(_LABEL_MEMO_HITS), formatCount(PerformanceStats.getPathMemoHits()));
+        pagin.add(Lang.get(_LABEL_LINE_OF_SIGHT_HITS), formatCount(PerformanceStats.getLineOfSightHits()));
+        pagin.add(Lang.get(_LABEL_LINE_OF_SIGHT_MISSES), formatCount(PerformanceStats.getLineOfSightMisses()));
+        pagin.add(Lang.get(_LABEL_REALTIME), formatSearches(PerformanceStats.getRealtimeSearches()));
+        pagin.add(Lang.get(_LABEL_HIERARCHY), getHierarchyStatus(extension));
+        pagin.add(Lang.get(_LABEL_HIERARCHICAL), formatSearches(PerformanceStats.getHierarchicalSearches()));
+        pagin.add(Lang.get(_LABEL_SPAWN_TASK), formatTiming(PerformanceStats.getSpawnTask()));
+        pagin.add(Lang.get(_LABEL_SPAWN_QUEUE), formatTiming(PerformanceStats.getSpawnQueue()));
+        pagin.add(Lang.get(_LABEL_DESPAWN_TASK), formatTiming(PerformanceStats.getDespawnTask()));
+
+        pagin.show(sender, page, FormatTemplate.CONSTANT_DEFINITION);
+    }
+
+    /*
+     * Total events and events per second.
+     */
+    private static String formatCount(RollingCounter counter) {
+        return String.format("%d total, %.1f/s", counter.getTotalCount(), counter.getRate());
+    }
+
+    /*
+     * State of the hierarchical path finder of an arena.
+     */
+    private static IChatMessage getHierarchyStatus(MobArenaExtension extension) {
+
+        HierarchicalPathfinder pathfinder = extension.getHierarchicalPathfinder();
+
+        if (pathfinder == null)
+            return Lang.get(_HIERARCHY_OFF);
+
+        if (pathfinder.isReady()) {
+            return Lang.get(_HIERARCHY_READY,
+                    pathfinder.getEntranceCount(), pathfinder.getClusterCount());
+        }
+
+        return pathfinder.isBuilding()
+                ? Lang.get(_HIERARCHY_BUILDING)
+                : Lang.get(_HIERARCHY_NOT_BUILT);
+    }
+
+    /*
+     * Total stuck mobs and the spawnpoints with the most stuck mobs.
+     */
+    private static String formatStuck(StuckMobTracker stuckMobs) {
+
+        StringBuilder sb = new StringBuilder(50);
+        sb.append(stuckMobs.getTotalStuck());
+
+        List<String> spawns = stuckMobs.getWorstSpawns(3);
+
+        for (int i = 0; i < spawns.size(); i++) {
+            String spawnName = spawns.get(i);
+
+            sb.append(i == 0 ? " (" : ", ");
+            sb.append(spawnName);
+            sb.append(": ");
+            sb.append(stuckMobs.getStuckCount(spawnName));
+        }
+
+        if (!spawns.isEmpty())
+            sb.append(')');
+
+        return sb.toString();
+    }
+
+    /*
+     * Percentage of lookups that were hits.
+     */
+    private static String formatHitRate(long hits, long misses) {
+        long total = hits + misses;
+        double rate = total == 0 ? 0D : hits * 100D / total;
+
+        return String.format("%.1f%% hits", rate);
+    }
+
+    /*
+     * Events per second and average duration.
+     */
+    private static String formatSearches(RollingCounter counter) {
+        return String.format("%.1f/s, %.1f us avg", counter.getRate(), counter.getAverage() / 1000D);
+    }
+
+    /*
+     * Average duration and milliseconds spent per second.
+     */
+    private static String formatTiming(RollingCounter counter) {
+        return String.format("%.1f us avg, %.2f ms/s",
+                counter.getAverage() / 1000D, counter.getValueRate() / 1000000D);
+    }
+}
@@ -32,9 +32,10 @@ import com.jcwhatever.nucleus.managed.commands.mixins.IExecutableCommand;
 import com.jcwhatever.nucleus.managed.language.Localizable;
 import com.jcwhatever.pvs.api.arena.IArena;
 import com.jcwhatever.pvs.api.commands.AbstractPVCommand;
+import com.jcwhatever.pvs.api.utils.Msg;
 import com.jcwhatever.pvs.modules.mobs.Lang;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
-import com.jcwhatever.pvs.modules.mobs.paths.PathCache;
+import com.jcwhatever.pvs.modules.mobs.paths.PathCacheGenerator.IProgressHandler;
 import com.jcwhatever.pvs.modules.mobs.spawngroups.SpawnGroupGenerator;
 
 import org.bukkit.command.CommandSender;
@@ -49,6 +50,16 @@ public class CacheSubCommand extends AbstractPVCommand implements IExecutableCom
     @Localizable static final String _EXTENSION_NOT_INSTALLED =
             "PVMobs extension is not installed in arena '{0: arena name}'.";
 
+    @Localizable static final String _WORLD_NOT_LOADED =
+            "The world of arena '{0: arena name}' is not loaded.";
+
+    @Localizable static final String _STARTED = "Caching mob paths in arena '{0: arena name}'...";
+
+    @Localizable static final String _PROGRESS =
+            "Cached {0: completed} of {1: total} spawn groups in arena '{2: arena name}'.";
+
+    @Localizable static final String _CANCELLED = "Caching mob paths in arena '{0: arena name}' cancelled.";
+
     @Localizable static final String _SUCCESS = "Mob paths in arena '{0: arena name}' cached.";
 
     @Override
@@ -64,15 +75,50 @@ public class CacheSubCommand extends AbstractPVCommand implements IExecutableCom
 
         SpawnGroupGenerator generator = extension.getGroupGenerator();
 
-        generator.clearGroups();
+        ProgressHandler handler = new ProgressHandler(sender, arena);
 
-        generator.reloadSpawnGroups();
+        // paths are cached after the groups are regenerated
+        if (!generator.generateGroups(null, handler))
+            throw new CommandException(Lang.get(_WORLD_NOT_LOADED, arena.getName()));
 
-        PathCache pathCache = generator.getPathCache();
-
-        pathCache.cachePaths(16, 18);
+        tellSuccess(sender, Lang.get(_STARTED, arena.getName()));
+    }
 
-        tellSuccess(sender, Lang.get(_SUCCESS, arena.getName()));
+    /*
+     * Reports path cache progress to the command sender.
+     */
+    private static class ProgressHandler implements IProgressHandler {
+
+        final CommandSender sender;
+        final IArena arena;
+        int reportedPercent;
+
+        ProgressHandler(CommandSender sender, IArena arena) {
+            this.sender = sender;
+            this.arena = arena;
+        }
+
+        @Override
+        public void onProgress(int completed, int total) {
+
+            // report in 25 percent increments
+            int percent = (completed * 100 / total) / 25 * 25;
+            if (percent <= reportedPercent || completed == total)
+                return;
+
+            reportedPercent = percent;
+
+            Msg.tell(sender, Lang.get(_PROGRESS, completed, total, arena.getName()));
+        }
+
+        @Override
+        public void onFinish(boolean isCancelled) {
+            if (isCancelled) {
+                Msg.tell(sender, Lang.get(_CANCELLED, arena.getName()));
+            }
+            else {
+                Msg.tell(sender, Lang.get(_SUCCESS, arena.getName()));
+            }
+        }
     }
 }
-
@@ -0,0 +1,97 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.commands.paths;
+
+import com.jcwhatever.nucleus.managed.commands.CommandInfo;
+import com.jcwhatever.nucleus.managed.commands.arguments.ICommandArguments;
+import com.jcwhatever.nucleus.managed.commands.exceptions.CommandException;
+import com.jcwhatever.nucleus.managed.commands.mixins.IExecutableCommand;
+import com.jcwhatever.nucleus.managed.language.Localizable;
+import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.api.commands.AbstractPVCommand;
+import com.jcwhatever.pvs.modules.mobs.Lang;
+import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+
+import org.bukkit.command.CommandSender;
+
+@CommandInfo(
+        parent="paths",
+        command="hierarchy",
+        staticParams = { "on|off|info=info" },
+        description="View or set if realtime mob paths in the selected arena are found " +
+                "using hierarchical path finding.",
+
+        paramDescriptions = {
+                "on|off|info= Use 'on' to turn on, 'off' to turn off, " +
+                        "'info' or leave blank to see current setting."})
+
+public class HierarchySubCommand extends AbstractPVCommand implements IExecutableCommand {
+
+    @Localizable static final String _EXTENSION_NOT_INSTALLED =
+            "PVMobs extension is not installed in arena '{0: arena name}'.";
+
+    @Localizable static final String _INFO_ON =
+            "Realtime mob paths in arena '{0: arena name}' are found using hierarchical path finding.";
+
+    @Localizable static final String _INFO_OFF =
+            "Realtime mob paths in arena '{0: arena name}' are found using AStar path finding.";
+
+    @Localizable static final String _SET_ON =
+            "Realtime mob paths in arena '{0: arena name}' will now be found using hierarchical path finding.";
+
+    @Localizable static final String _SET_OFF =
+            "Realtime mob paths in arena '{0: arena name}' will now be found using AStar path finding.";
+
+    @Override
+    public void execute(CommandSender sender, ICommandArguments args) throws CommandException {
+
+        IArena arena = getSelectedArena(sender, ArenaReturned.getInfoToggled(args, "on|off|info"));
+        if (arena == null)
+            return; // finish
+
+        MobArenaExtension extension = arena.getExtensions().get(MobArenaExtension.class);
+        if (extension == null)
+            throw new CommandException(Lang.get(_EXTENSION_NOT_INSTALLED, arena.getName()));
+
+        if (args.getString("on|off|info").equals("info")) {
+
+            if (extension.isHierarchicalPathsEnabled())
+                tell(sender, Lang.get(_INFO_ON, arena.getName()));
+            else
+                tell(sender, Lang.get(_INFO_OFF, arena.getName()));
+        }
+        else {
+
+            boolean isEnabled = args.getBoolean("on|off|info");
+
+            extension.setHierarchicalPathsEnabled(isEnabled);
+
+            if (isEnabled)
+                tellSuccess(sender, Lang.get(_SET_ON, arena.getName()));
+            else
+                tellSuccess(sender, Lang.get(_SET_OFF, arena.getName()));
+        }
+    }
+}
@@ -39,5 +39,8 @@ public class PathsCommand extends AbstractPVCommand {
         super();
 
         registerCommand(CacheSubCommand.class);
+        registerCommand(CancelSubCommand.class);
+        registerCommand(HierarchySubCommand.class);
+        registerCommand(PruneSubCommand.class);
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.commands.paths;
+
+import com.jcwhatever.nucleus.managed.commands.CommandInfo;
+import com.jcwhatever.nucleus.managed.commands.arguments.ICommandArguments;
+import com.jcwhatever.nucleus.managed.commands.exceptions.CommandException;
+import com.jcwhatever.nucleus.managed.commands.mixins.IExecutableCommand;
+import com.jcwhatever.nucleus.managed.language.Localizable;
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.pvs.api.PVStarAPI;
+import com.jcwhatever.pvs.api.commands.AbstractPVCommand;
+import com.jcwhatever.pvs.api.utils.Msg;
+import com.jcwhatever.pvs.modules.mobs.Lang;
+import com.jcwhatever.pvs.modules.mobs.MobsModule;
+import com.jcwhatever.pvs.modules.mobs.paths.SharedPathCache;
+
+import org.bukkit.command.CommandSender;
+
+@CommandInfo(
+        parent="paths",
+        command="prune",
+        description="Delete shared mob path files that are not used by any arena.")
+
+public class PruneSubCommand extends AbstractPVCommand implements IExecutableCommand {
+
+    @Localizable static final String _STARTED = "Deleting unused shared mob paths...";
+
+    @Localizable static final String _SUCCESS = "Deleted {0: total} unused shared mob path file(s).";
+
+    @Override
+    public void execute(final CommandSender sender, ICommandArguments args) throws CommandException {
+
+        tellSuccess(sender, Lang.get(_STARTED));
+
+        // scans the cached path folders of all arenas
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
+            @Override
+            public void run() {
+
+                final int deleted = SharedPathCache.get().deleteUnreferenced();
+
+                Scheduler.runTaskLater(PVStarAPI.getPlugin(), 1, new Runnable() {
+                    @Override
+                    public void run() {
+                        Msg.tell(sender, Lang.get(_SUCCESS, deleted));
+                    }
+                });
+            }
+        });
+    }
+}
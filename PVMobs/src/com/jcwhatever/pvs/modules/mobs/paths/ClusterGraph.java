@@ -0,0 +1,975 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Abstract graph of a region divided into square clusters of columns, used
+ * for hierarchical path finding.
+ *
+ * <p>Nodes are entrances, surface positions on either side of a cluster border
+ * that a mob can move across. Each row of adjacent border crossings on the same
+ * levels is one entrance, or one at each end if the row is wide. Entrances of
+ * adjacent clusters are joined by a single move. Entrances of the same cluster
+ * are joined by the path distance between them inside the cluster.</p>
+ *
+ * <p>A query searches the cluster of its start and the cluster of its goal,
+ * then searches the entrance graph. A concrete path is only refined from the
+ * entrances of the abstract path when requested.</p>
+ *
+ * <p>The graph is built in the constructor and not changed afterwards. When
+ * blocks change, a new graph is built from the previous one that only searches
+ * the clusters containing the changed blocks and their borders again. The
+ * entrances of other borders and the path distances between the entrances of
+ * other clusters are reused. Queries reuse search buffers and must only be made
+ * from one thread at a time.</p>
+ */
+final class ClusterGraph {
+
+    // border crossings in a row wider than this get an entrance at each end
+    private static final int MAX_ENTRANCE_WIDTH = 6;
+
+    private static final int FORWARD = 1;
+    private static final int BACKWARD = 2;
+
+    // ints per entrance in the border entrance arrays:
+    // a x, y, z, b x, y, z and crossing flags
+    private static final int ENTRANCE_INTS = 7;
+
+    // best node values that are not entrances
+    private static final int NO_PATH = -2;
+    private static final int DIRECT_PATH = -1;
+
+    private static final int[] DIRECTIONS_X = new int[] { 1, -1, 0, 0 };
+    private static final int[] DIRECTIONS_Z = new int[] { 0, 0, 1, -1 };
+
+    private final PathFlood _flood;
+    private final int _clusterSize;
+    private final int _xStart;
+    private final int _yStart;
+    private final int _zStart;
+    private final int _xEnd;
+    private final int _yEnd;
+    private final int _zEnd;
+    private final int _xClusters;
+    private final int _zClusters;
+
+    // entrance positions and clusters
+    private final Map<Long, Integer> _nodeIndexes = new HashMap<>(256);
+    private int[] _nodeX = new int[64];
+    private int[] _nodeY = new int[64];
+    private int[] _nodeZ = new int[64];
+    private int[] _nodeClusters = new int[64];
+    private int _totalNodes;
+
+    // outgoing edges of each entrance
+    private int[][] _edgeTargets = new int[64][];
+    private int[][] _edgeCosts = new int[64][];
+    private int[] _edgeCounts = new int[64];
+    private int _totalEdges;
+
+    // entrances of each border, reused by graphs built from this graph
+    private final int[][] _borderEntrances;
+
+    // entrances in each cluster, the position keys of the entrances and the
+    // path distances between them, reused by graphs built from this graph
+    private final int[][] _clusterNodes;
+    private final long[][] _clusterNodeKeys;
+    private final int[][] _clusterCosts;
+
+    // query buffers
+    private final LocalSearch _startSearch;
+    private final LocalSearch _goalSearch;
+    private final LocalSearch _refineSearch;
+    private final int[] _scores;
+    private final int[] _parents;
+    private final int[] _visited;
+    private int _visitStamp;
+    private long[] _heap = new long[64];
+    private int _heapSize;
+    private int _bestNode;
+    private int _bestDistance;
+
+    /**
+     * Constructor. Builds the graph.
+     *
+     * @param blocks         The blocks of the region.
+     * @param maxDropHeight  The max height a mob can drop.
+     * @param clusterSize    The width and length of a cluster in blocks.
+     * @param xStart         The smallest X coordinates of the region.
+     * @param yStart         The smallest Y coordinates of a surface in the region.
+     * @param zStart         The smallest Z coordinates of the region.
+     * @param xEnd           The largest X coordinates of the region.
+     * @param yEnd           The largest Y coordinates of a surface in the region.
+     * @param zEnd           The largest Z coordinates of the region.
+     */
+    ClusterGraph(IBlockAccessor blocks, int maxDropHeight, int clusterSize,
+                 int xStart, int yStart, int zStart,
+                 int xEnd, int yEnd, int zEnd) {
+
+        this(blocks, maxDropHeight, clusterSize, xStart, yStart, zStart, xEnd, yEnd, zEnd, null, null);
+    }
+
+    /**
+     * Constructor. Builds a graph from a previous graph of the same region after
+     * blocks changed. Only the clusters that overlap the changed chunks and their
+     * borders are searched again.
+     *
+     * @param previous  The previous graph.
+     * @param blocks    The blocks of the region, including the changes.
+     * @param chunks    The X and Z coordinates of each changed chunk, in pairs.
+     */
+    ClusterGraph(ClusterGraph previous, IBlockAccessor blocks, int[] chunks) {
+
+        this(blocks, previous._flood.getMaxDropHeight(), previous._clusterSize,
+                previous._xStart, previous._yStart, previous._zStart,
+                previous._xEnd, previous._yEnd, previous._zEnd,
+                previous, previous.getChangedClusters(chunks));
+    }
+
+    private ClusterGraph(IBlockAccessor blocks, int maxDropHeight, int clusterSize,
+                         int xStart, int yStart, int zStart,
+                         int xEnd, int yEnd, int zEnd,
+                         @Nullable ClusterGraph previous, @Nullable boolean[] changed) {
+
+        _flood = new PathFlood(blocks, maxDropHeight);
+        _clusterSize = clusterSize;
+        _xStart = xStart;
+        _yStart = yStart;
+        _zStart = zStart;
+        _xEnd = xEnd;
+        _yEnd = yEnd;
+        _zEnd = zEnd;
+        _xClusters = (xEnd - xStart) / clusterSize + 1;
+        _zClusters = (zEnd - zStart) / clusterSize + 1;
+
+        int totalClusters = _xClusters * _zClusters;
+        List<List<Integer>> clusterNodes = new ArrayList<>(totalClusters);
+
+        for (int i = 0; i < totalClusters; i++) {
+            clusterNodes.add(new ArrayList<Integer>(8));
+        }
+
+        _borderEntrances = new int[(_xClusters - 1) * _zClusters + _xClusters * (_zClusters - 1)][];
+
+        int[] adjacent = new int[maxDropHeight + 2];
+        int border = 0;
+
+        // borders between clusters along the X axis
+        for (int cx = 0; cx < _xClusters - 1; cx++) {
+
+            int line = xStart + (cx + 1) * clusterSize;
+
+            for (int cz = 0; cz < _zClusters; cz++) {
+
+                int from = zStart + cz * clusterSize;
+                int to = Math.min(from + clusterSize - 1, zEnd);
+
+                int first = cz * _xClusters + cx;
+                int[] entrances = previous != null && !changed[first] && !changed[first + 1]
+                        ? previous._borderEntrances[border]
+                        : findEntrances(line - 1, line, from, to, true, adjacent);
+
+                _borderEntrances[border++] = entrances;
+                addEntrances(entrances, clusterNodes);
+            }
+        }
+
+        // borders between clusters along the Z axis
+        for (int cz = 0; cz < _zClusters - 1; cz++) {
+
+            int line = zStart + (cz + 1) * clusterSize;
+
+            for (int cx = 0; cx < _xClusters; cx++) {
+
+                int from = xStart + cx * clusterSize;
+                int to = Math.min(from + clusterSize - 1, xEnd);
+
+                int first = cz * _xClusters + cx;
+                int[] entrances = previous != null && !changed[first] && !changed[first + _xClusters]
+                        ? previous._borderEntrances[border]
+                        : findEntrances(line - 1, line, from, to, false, adjacent);
+
+                _borderEntrances[border++] = entrances;
+                addEntrances(entrances, clusterNodes);
+            }
+        }
+
+        _clusterNodes = new int[totalClusters][];
+        _clusterNodeKeys = new long[totalClusters][];
+        _clusterCosts = new int[totalClusters][];
+        _refineSearch = new LocalSearch(maxDropHeight);
+
+        // path distances between the entrances of each cluster
+        for (int cluster = 0; cluster < totalClusters; cluster++) {
+
+            List<Integer> nodes = clusterNodes.get(cluster);
+            int[] indexes = new int[nodes.size()];
+            long[] keys = new long[indexes.length];
+
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = nodes.get(i);
+                keys[i] = getPositionKey(_nodeX[indexes[i]], _nodeY[indexes[i]], _nodeZ[indexes[i]]);
+            }
+
+            // distances are only reused if the blocks and the entrances are unchanged
+            int[] costs = previous != null && !changed[cluster] &&
+                    Arrays.equals(keys, previous._clusterNodeKeys[cluster])
+                    ? previous._clusterCosts[cluster]
+                    : findCosts(cluster, indexes);
+
+            _clusterNodes[cluster] = indexes;
+            _clusterNodeKeys[cluster] = keys;
+            _clusterCosts[cluster] = costs;
+
+            for (int i = 0; i < indexes.length; i++) {
+                for (int j = 0; j < indexes.length; j++) {
+
+                    int distance = costs[i * indexes.length + j];
+                    if (distance > 0)
+                        addEdge(indexes[i], indexes[j], distance);
+                }
+            }
+        }
+
+        _startSearch = new LocalSearch(maxDropHeight);
+        _goalSearch = new LocalSearch(maxDropHeight);
+        _scores = new int[_totalNodes];
+        _parents = new int[_totalNodes];
+        _visited = new int[_totalNodes];
+    }
+
+    /**
+     * Get the number of clusters.
+     */
+    int getClusterCount() {
+        return _clusterNodes.length;
+    }
+
+    /**
+     * Get the number of entrances.
+     */
+    int getNodeCount() {
+        return _totalNodes;
+    }
+
+    /**
+     * Get the number of edges between entrances.
+     */
+    int getEdgeCount() {
+        return _totalEdges;
+    }
+
+    /**
+     * Determine if a surface position is in the region.
+     *
+     * @param x  The X coordinates of the surface block.
+     * @param y  The Y coordinates of the surface block.
+     * @param z  The Z coordinates of the surface block.
+     */
+    boolean contains(int x, int y, int z) {
+        return x >= _xStart && x <= _xEnd &&
+                y >= _yStart && y <= _yEnd &&
+                z >= _zStart && z <= _zEnd;
+    }
+
+    /**
+     * Find the Y coordinates of the first surface block below
+     * the specified block, inclusive.
+     *
+     * @return  The surface Y coordinates or -1 if not found.
+     */
+    int findSurfaceBelow(int x, int y, int z) {
+        return _flood.findSurfaceBelow(x, y, z);
+    }
+
+    /**
+     * Get the path distance between two surface positions in the region.
+     *
+     * @param maxDistance  The max path distance.
+     *
+     * @return  The path distance or -1 if there is no path within the max distance.
+     */
+    int getPathDistance(int startX, int startY, int startZ,
+                        int goalX, int goalY, int goalZ, int maxDistance) {
+
+        return search(startX, startY, startZ, goalX, goalY, goalZ, maxDistance)
+                ? _bestDistance
+                : -1;
+    }
+
+    /**
+     * Find a path between two surface positions in the region and refine
+     * it into the surface positions a mob moves across.
+     *
+     * @param maxDistance  The max path distance.
+     *
+     * @return  The X, Y and Z coordinates of each position in the path, including
+     * the start and goal, or null if there is no path within the max distance.
+     */
+    @Nullable
+    int[] findPath(int startX, int startY, int startZ,
+                   int goalX, int goalY, int goalZ, int maxDistance) {
+
+        if (!search(startX, startY, startZ, goalX, goalY, goalZ, maxDistance))
+            return null;
+
+        PathBuilder path = new PathBuilder(_bestDistance + 1);
+
+        if (_bestNode == DIRECT_PATH) {
+            path.addSegment(_startSearch, _startSearch.getIndex(goalX, goalY, goalZ), true);
+            return path.toArray();
+        }
+
+        // entrances of the abstract path, last to first
+        int[] entrances = new int[16];
+        int totalEntrances = 0;
+
+        for (int node = _bestNode; node != -1; node = _parents[node]) {
+
+            if (totalEntrances == entrances.length)
+                entrances = Arrays.copyOf(entrances, entrances.length * 2);
+
+            entrances[totalEntrances++] = node;
+        }
+
+        // start to the first entrance
+        int first = entrances[totalEntrances - 1];
+        path.addSegment(_startSearch, _startSearch.getIndex(_nodeX[first], _nodeY[first], _nodeZ[first]), true);
+
+        // entrance to entrance
+        for (int i = totalEntrances - 2; i >= 0; i--) {
+
+            int from = entrances[i + 1];
+            int to = entrances[i];
+
+            if (_nodeClusters[from] != _nodeClusters[to]) {
+                // a single move across the border
+                path.add(_nodeX[to], _nodeY[to], _nodeZ[to]);
+                continue;
+            }
+
+            _refineSearch.search(_nodeClusters[from], _nodeX[from], _nodeY[from], _nodeZ[from],
+                    Integer.MAX_VALUE, false);
+
+            path.addSegment(_refineSearch, _refineSearch.getIndex(_nodeX[to], _nodeY[to], _nodeZ[to]), false);
+        }
+
+        // last entrance to the goal, the reverse search leads toward the goal
+        int last = entrances[0];
+        int index = _goalSearch.getIndex(_nodeX[last], _nodeY[last], _nodeZ[last]);
+
+        for (index = _goalSearch.parents[index]; index != -1; index = _goalSearch.parents[index]) {
+            path.add(_goalSearch.getX(index), _goalSearch.getY(index), _goalSearch.getZ(index));
+        }
+
+        return path.toArray();
+    }
+
+    /*
+     * Search for the shortest path. Sets the best distance and the last entrance
+     * of the best path. Returns false if there is no path within the max distance.
+     */
+    private boolean search(int startX, int startY, int startZ,
+                           int goalX, int goalY, int goalZ, int maxDistance) {
+
+        int startCluster = getCluster(startX, startZ);
+        int goalCluster = getCluster(goalX, goalZ);
+
+        _bestNode = NO_PATH;
+        _bestDistance = Integer.MAX_VALUE;
+
+        _startSearch.search(startCluster, startX, startY, startZ, maxDistance, false);
+
+        // a path that stays in the cluster
+        if (startCluster == goalCluster) {
+
+            int distance = _startSearch.getDistance(goalX, goalY, goalZ);
+            if (distance != -1) {
+                _bestNode = DIRECT_PATH;
+                _bestDistance = distance;
+            }
+        }
+
+        _goalSearch.search(goalCluster, goalX, goalY, goalZ, maxDistance, true);
+
+        if (++_visitStamp == Integer.MAX_VALUE) {
+            Arrays.fill(_visited, 0);
+            _visitStamp = 1;
+        }
+
+        _heapSize = 0;
+
+        for (int node : _clusterNodes[startCluster]) {
+
+            int distance = _startSearch.getDistance(_nodeX[node], _nodeY[node], _nodeZ[node]);
+            if (distance != -1)
+                visit(node, distance, -1, goalX, goalZ);
+        }
+
+        while (_heapSize > 0) {
+
+            long entry = poll();
+            int node = (int)entry;
+            int estimate = (int)(entry >>> 32);
+
+            // no remaining path can be shorter
+            if (estimate >= _bestDistance)
+                break;
+
+            int score = _scores[node];
+
+            // replaced by a shorter path
+            if (estimate != score + getHeuristic(node, goalX, goalZ))
+                continue;
+
+            if (_nodeClusters[node] == goalCluster) {
+
+                int distance = _goalSearch.getDistance(_nodeX[node], _nodeY[node], _nodeZ[node]);
+                if (distance != -1 && score + distance < _bestDistance) {
+                    _bestNode = node;
+                    _bestDistance = score + distance;
+                }
+            }
+
+            int[] targets = _edgeTargets[node];
+            int[] costs = _edgeCosts[node];
+
+            for (int i = 0; i < _edgeCounts[node]; i++) {
+
+                int target = targets[i];
+                int targetScore = score + costs[i];
+
+                if (targetScore > maxDistance)
+                    continue;
+
+                if (_visited[target] == _visitStamp && _scores[target] <= targetScore)
+                    continue;
+
+                visit(target, targetScore, node, goalX, goalZ);
+            }
+        }
+
+        return _bestNode != NO_PATH && _bestDistance <= maxDistance;
+    }
+
+    /*
+     * Record the score of an entrance and add it to the open heap.
+     */
+    private void visit(int node, int score, int parent, int goalX, int goalZ) {
+
+        _visited[node] = _visitStamp;
+        _scores[node] = score;
+        _parents[node] = parent;
+
+        push(((long)(score + getHeuristic(node, goalX, goalZ)) << 32) | node);
+    }
+
+    /*
+     * Every move changes the X or Z coordinates by one block, so the horizontal
+     * manhattan distance never overestimates the remaining path distance.
+     */
+    private int getHeuristic(int node, int goalX, int goalZ) {
+        return Math.abs(_nodeX[node] - goalX) + Math.abs(_nodeZ[node] - goalZ);
+    }
+
+    private void push(long entry) {
+
+        if (_heapSize == _heap.length)
+            _heap = Arrays.copyOf(_heap, _heap.length * 2);
+
+        int index = _heapSize++;
+
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (_heap[parent] <= entry)
+                break;
+
+            _heap[index] = _heap[parent];
+            index = parent;
+        }
+
+        _heap[index] = entry;
+    }
+
+    private long poll() {
+
+        long result = _heap[0];
+        long last = _heap[--_heapSize];
+        int index = 0;
+
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= _heapSize)
+                break;
+
+            if (child + 1 < _heapSize && _heap[child + 1] < _heap[child])
+                child++;
+
+            if (last <= _heap[child])
+                break;
+
+            _heap[index] = _heap[child];
+            index = child;
+        }
+
+        if (_heapSize > 0)
+            _heap[index] = last;
+
+        return result;
+    }
+
+    /*
+     * Get the clusters that overlap changed chunks.
+     */
+    private boolean[] getChangedClusters(int[] chunks) {
+
+        boolean[] changed = new boolean[_xClusters * _zClusters];
+
+        for (int i = 0; i < chunks.length; i += 2) {
+
+            int xFrom = Math.max(_xStart, chunks[i] << 4);
+            int zFrom = Math.max(_zStart, chunks[i + 1] << 4);
+            int xTo = Math.min(_xEnd, (chunks[i] << 4) + 15);
+            int zTo = Math.min(_zEnd, (chunks[i + 1] << 4) + 15);
+
+            if (xFrom > xTo || zFrom > zTo)
+                continue;
+
+            for (int cx = (xFrom - _xStart) / _clusterSize; cx <= (xTo - _xStart) / _clusterSize; cx++) {
+                for (int cz = (zFrom - _zStart) / _clusterSize; cz <= (zTo - _zStart) / _clusterSize; cz++) {
+                    changed[cz * _xClusters + cx] = true;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    /*
+     * Find the entrances for the crossings of a border between two clusters. The
+     * "a" line is the last column of the first cluster and the "b" line is the
+     * first column of the next cluster.
+     */
+    private int[] findEntrances(int aLine, int bLine, int from, int to, boolean isXBorder, int[] adjacent) {
+
+        // crossing flags keyed by the a level, b level and position along the border
+        Map<Long, Integer> crossings = new HashMap<>(32);
+
+        for (int position = from; position <= to; position++) {
+
+            int ax = isXBorder ? aLine : position;
+            int az = isXBorder ? position : aLine;
+            int bx = isXBorder ? bLine : position;
+            int bz = isXBorder ? position : bLine;
+
+            for (int y = _yStart; y <= _yEnd; y++) {
+
+                if (_flood.isSurface(ax, y, az)) {
+
+                    int total = _flood.getNextSurfaces(ax, y, az, bx, bz, adjacent);
+                    for (int i = 0; i < total; i++) {
+                        addCrossing(crossings, y, adjacent[i], position - from, FORWARD);
+                    }
+                }
+
+                if (_flood.isSurface(bx, y, bz)) {
+
+                    int total = _flood.getNextSurfaces(bx, y, bz, ax, az, adjacent);
+                    for (int i = 0; i < total; i++) {
+                        addCrossing(crossings, adjacent[i], y, position - from, BACKWARD);
+                    }
+                }
+            }
+        }
+
+        if (crossings.isEmpty())
+            return new int[0];
+
+        // sorted by a level, then b level, then position
+        long[] keys = new long[crossings.size()];
+        int total = 0;
+
+        for (Long key : crossings.keySet()) {
+            keys[total++] = key;
+        }
+
+        Arrays.sort(keys);
+
+        int[] entrances = new int[total * 2 * ENTRANCE_INTS];
+        int size = 0;
+        int runStart = 0;
+
+        for (int i = 1; i <= total; i++) {
+
+            if (i < total &&
+                    keys[i] >>> 20 == keys[i - 1] >>> 20 &&
+                    (keys[i] & 0xFFFFF) == (keys[i - 1] & 0xFFFFF) + 1 &&
+                    crossings.get(keys[i]).equals(crossings.get(keys[runStart]))) {
+                continue;
+            }
+
+            long key = keys[runStart];
+            int aY = (int)(key >>> 40) + _yStart;
+            int bY = (int)((key >>> 20) & 0xFFFFF) + _yStart;
+            int first = (int)(keys[runStart] & 0xFFFFF) + from;
+            int last = (int)(keys[i - 1] & 0xFFFFF) + from;
+            int flags = crossings.get(key);
+
+            if (last - first + 1 > MAX_ENTRANCE_WIDTH) {
+                size = putEntrance(entrances, size, aLine, bLine, first, aY, bY, flags, isXBorder);
+                size = putEntrance(entrances, size, aLine, bLine, last, aY, bY, flags, isXBorder);
+            }
+            else {
+                size = putEntrance(entrances, size, aLine, bLine, (first + last) / 2, aY, bY, flags, isXBorder);
+            }
+
+            runStart = i;
+        }
+
+        return Arrays.copyOf(entrances, size);
+    }
+
+    private void addCrossing(Map<Long, Integer> crossings, int aY, int bY, int position, int flag) {
+
+        if (aY < _yStart || aY > _yEnd || bY < _yStart || bY > _yEnd)
+            return;
+
+        long key = ((long)(aY - _yStart) << 40) | ((long)(bY - _yStart) << 20) | position;
+
+        Integer flags = crossings.get(key);
+        crossings.put(key, flags == null ? flag : flags | flag);
+    }
+
+    private static int putEntrance(int[] entrances, int size, int aLine, int bLine, int position,
+                                   int aY, int bY, int flags, boolean isXBorder) {
+
+        entrances[size++] = isXBorder ? aLine : position;
+        entrances[size++] = aY;
+        entrances[size++] = isXBorder ? position : aLine;
+        entrances[size++] = isXBorder ? bLine : position;
+        entrances[size++] = bY;
+        entrances[size++] = isXBorder ? position : bLine;
+        entrances[size++] = flags;
+
+        return size;
+    }
+
+    /*
+     * Add the nodes of the entrances of a border and the moves across it.
+     */
+    private void addEntrances(int[] entrances, List<List<Integer>> clusterNodes) {
+
+        for (int i = 0; i < entrances.length; i += ENTRANCE_INTS) {
+
+            int a = getNode(entrances[i], entrances[i + 1], entrances[i + 2], clusterNodes);
+            int b = getNode(entrances[i + 3], entrances[i + 4], entrances[i + 5], clusterNodes);
+            int flags = entrances[i + 6];
+
+            if ((flags & FORWARD) != 0)
+                addEdge(a, b, 1);
+
+            if ((flags & BACKWARD) != 0)
+                addEdge(b, a, 1);
+        }
+    }
+
+    /*
+     * Find the path distances between the entrances of a cluster. The distance
+     * from the entrance at index i to the entrance at index j is at
+     * i * total + j, or -1 if there is no path.
+     */
+    private int[] findCosts(int cluster, int[] nodes) {
+
+        int[] costs = new int[nodes.length * nodes.length];
+
+        for (int i = 0; i < nodes.length; i++) {
+
+            int from = nodes[i];
+
+            _refineSearch.search(cluster, _nodeX[from], _nodeY[from], _nodeZ[from],
+                    Integer.MAX_VALUE, false);
+
+            for (int j = 0; j < nodes.length; j++) {
+
+                int to = nodes[j];
+
+                costs[i * nodes.length + j] = to == from
+                        ? -1
+                        : _refineSearch.getDistance(_nodeX[to], _nodeY[to], _nodeZ[to]);
+            }
+        }
+
+        return costs;
+    }
+
+    /*
+     * Get the index of the entrance at a surface position, adding it if needed.
+     */
+    private int getNode(int x, int y, int z, List<List<Integer>> clusterNodes) {
+
+        long key = getPositionKey(x, y, z);
+
+        Integer index = _nodeIndexes.get(key);
+        if (index != null)
+            return index;
+
+        if (_totalNodes == _nodeX.length) {
+            int size = _nodeX.length * 2;
+            _nodeX = Arrays.copyOf(_nodeX, size);
+            _nodeY = Arrays.copyOf(_nodeY, size);
+            _nodeZ = Arrays.copyOf(_nodeZ, size);
+            _nodeClusters = Arrays.copyOf(_nodeClusters, size);
+            _edgeTargets = Arrays.copyOf(_edgeTargets, size);
+            _edgeCosts = Arrays.copyOf(_edgeCosts, size);
+            _edgeCounts = Arrays.copyOf(_edgeCounts, size);
+        }
+
+        int node = _totalNodes++;
+        int cluster = getCluster(x, z);
+
+        _nodeX[node] = x;
+        _nodeY[node] = y;
+        _nodeZ[node] = z;
+        _nodeClusters[node] = cluster;
+        _edgeTargets[node] = new int[4];
+        _edgeCosts[node] = new int[4];
+
+        _nodeIndexes.put(key, node);
+        clusterNodes.get(cluster).add(node);
+
+        return node;
+    }
+
+    private long getPositionKey(int x, int y, int z) {
+        return ((long)(x - _xStart) << 40) | ((long)(y - _yStart) << 20) | (z - _zStart);
+    }
+
+    private void addEdge(int from, int to, int cost) {
+
+        int count = _edgeCounts[from];
+
+        if (count == _edgeTargets[from].length) {
+            _edgeTargets[from] = Arrays.copyOf(_edgeTargets[from], count * 2);
+            _edgeCosts[from] = Arrays.copyOf(_edgeCosts[from], count * 2);
+        }
+
+        _edgeTargets[from][count] = to;
+        _edgeCosts[from][count] = cost;
+        _edgeCounts[from]++;
+        _totalEdges++;
+    }
+
+    private int getCluster(int x, int z) {
+        return ((z - _zStart) / _clusterSize) * _xClusters + (x - _xStart) / _clusterSize;
+    }
+
+    /*
+     * Breadth first search over the surface positions of a single cluster.
+     * If reversed, the search follows moves backwards so the distances are
+     * to the start position instead of from it and each parent is the next
+     * position toward the start.
+     */
+    private class LocalSearch {
+
+        final int[] visited;
+        final int[] distances;
+        final int[] parents;
+        final int[] adjacent;
+        int[] queue = new int[256];
+        int stamp;
+
+        int xOrigin;
+        int zOrigin;
+        int xSize;
+        int zSize;
+
+        LocalSearch(int maxDropHeight) {
+
+            int volume = _clusterSize * _clusterSize * (_yEnd - _yStart + 1);
+
+            visited = new int[volume];
+            distances = new int[volume];
+            parents = new int[volume];
+            adjacent = new int[maxDropHeight + 2];
+        }
+
+        void search(int cluster, int x, int y, int z, int maxDistance, boolean isReverse) {
+
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+
+            xOrigin = _xStart + (cluster % _xClusters) * _clusterSize;
+            zOrigin = _zStart + (cluster / _xClusters) * _clusterSize;
+            xSize = Math.min(_clusterSize, _xEnd - xOrigin + 1);
+            zSize = Math.min(_clusterSize, _zEnd - zOrigin + 1);
+
+            int start = getIndex(x, y, z);
+            if (start == -1)
+                return;
+
+            visited[start] = stamp;
+            distances[start] = 0;
+            parents[start] = -1;
+            queue[0] = start;
+
+            int head = 0;
+            int tail = 1;
+
+            while (head < tail) {
+
+                int index = queue[head++];
+                int distance = distances[index];
+
+                if (distance >= maxDistance)
+                    continue;
+
+                int cx = getX(index);
+                int cy = getY(index);
+                int cz = getZ(index);
+
+                for (int i = 0; i < DIRECTIONS_X.length; i++) {
+
+                    int nx = cx + DIRECTIONS_X[i];
+                    int nz = cz + DIRECTIONS_Z[i];
+
+                    int total = isReverse
+                            ? _flood.getPreviousSurfaces(cx, cy, cz, nx, nz, adjacent)
+                            : _flood.getNextSurfaces(cx, cy, cz, nx, nz, adjacent);
+
+                    for (int j = 0; j < total; j++) {
+
+                        int neighbor = getIndex(nx, adjacent[j], nz);
+                        if (neighbor == -1 || visited[neighbor] == stamp)
+                            continue;
+
+                        visited[neighbor] = stamp;
+                        distances[neighbor] = distance + 1;
+                        parents[neighbor] = index;
+
+                        if (tail == queue.length)
+                            queue = Arrays.copyOf(queue, Math.min(visited.length, queue.length * 2));
+
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        /*
+         * Get the path distance to a position in the last search or -1 if not reached.
+         */
+        int getDistance(int x, int y, int z) {
+            int index = getIndex(x, y, z);
+            return index != -1 && visited[index] == stamp ? distances[index] : -1;
+        }
+
+        int getIndex(int x, int y, int z) {
+
+            int lx = x - xOrigin;
+            int ly = y - _yStart;
+            int lz = z - zOrigin;
+
+            if (lx < 0 || lz < 0 || ly < 0 || lx >= xSize || lz >= zSize || y > _yEnd)
+                return -1;
+
+            return (ly * _clusterSize + lz) * _clusterSize + lx;
+        }
+
+        int getX(int index) {
+            return index % _clusterSize + xOrigin;
+        }
+
+        int getY(int index) {
+            return index / (_clusterSize * _clusterSize) + _yStart;
+        }
+
+        int getZ(int index) {
+            return (index / _clusterSize) % _clusterSize + zOrigin;
+        }
+    }
+
+    /*
+     * Collects the positions of a refined path.
+     */
+    private static class PathBuilder {
+
+        int[] coords;
+        int size;
+
+        PathBuilder(int capacity) {
+            coords = new int[Math.max(1, capacity) * 3];
+        }
+
+        void add(int x, int y, int z) {
+
+            if (size + 3 > coords.length)
+                coords = Arrays.copyOf(coords, coords.length * 2);
+
+            coords[size++] = x;
+            coords[size++] = y;
+            coords[size++] = z;
+        }
+
+        /*
+         * Add the path from the start of a forward search to a position
+         * reached by the search.
+         */
+        void addSegment(LocalSearch search, int index, boolean includeStart) {
+
+            int start = size;
+
+            for (; index != -1; index = search.parents[index]) {
+                add(search.getX(index), search.getY(index), search.getZ(index));
+            }
+
+            // positions were added from the end of the segment
+            for (int i = start, j = size - 3; i < j; i += 3, j -= 3) {
+                for (int k = 0; k < 3; k++) {
+                    int swap = coords[i + k];
+                    coords[i + k] = coords[j + k];
+                    coords[j + k] = swap;
+                }
+            }
+
+            if (!includeStart) {
+                System.arraycopy(coords, start + 3, coords, start, size - start - 3);
+                size -= 3;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(coords, size);
+        }
+    }
+}
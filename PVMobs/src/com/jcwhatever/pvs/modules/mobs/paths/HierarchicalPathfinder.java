@@ -0,0 +1,427 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.PVStarAPI;
+import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.modules.mobs.MobsModule;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Hierarchical path finder for the region of an arena.
+ *
+ * <p>The region is divided into square clusters of columns. The entrances between
+ * adjacent clusters and the path distances between the entrances of each cluster
+ * are computed in the background. A query only searches the clusters of its start
+ * and goal and then the much smaller graph of entrances, so its cost does not grow
+ * with the distance between the start and goal the way a flat search does.</p>
+ *
+ * <p>When blocks in the region change, the chunks that contain them are captured
+ * again once the changes settle and only the clusters that overlap those chunks
+ * are rebuilt. The previous graph answers queries until the repaired graph is
+ * ready. Until the first graph is ready, queries return {@link #NOT_AVAILABLE}
+ * so callers can fall back to a realtime search. Queries must be made from the
+ * main thread.</p>
+ */
+public class HierarchicalPathfinder {
+
+    /**
+     * Returned when a query cannot be answered by the path finder.
+     */
+    public static final int NOT_AVAILABLE = Integer.MIN_VALUE;
+
+    /**
+     * The width and length of a cluster in blocks.
+     */
+    public static final int CLUSTER_SIZE = 16;
+
+    // ticks to wait after the last block change before repairing
+    private static final int REPAIR_DELAY = 20;
+
+    private final IArena _arena;
+
+    private ClusterGraph _graph;
+    private RegionBlocks _blocks;
+    private String _worldName;
+    private IScheduledTask _repairTask;
+    private boolean _isBuilding;
+
+    // keys of chunks with changed blocks that are not repaired yet
+    private final Set<Long> _changedChunks = new HashSet<>(10);
+
+    // incremented when cleared so graphs already building are discarded
+    private volatile int _generation;
+
+    /**
+     * Constructor.
+     *
+     * @param arena  The arena.
+     */
+    public HierarchicalPathfinder(IArena arena) {
+        PreCon.notNull(arena);
+
+        _arena = arena;
+    }
+
+    /**
+     * Determine if the graph is ready to answer queries.
+     */
+    public boolean isReady() {
+        return _graph != null;
+    }
+
+    /**
+     * Determine if the graph is being built.
+     */
+    public boolean isBuilding() {
+        return _isBuilding || _repairTask != null;
+    }
+
+    /**
+     * Get the number of clusters in the graph or 0 if not ready.
+     */
+    public int getClusterCount() {
+        return _graph != null ? _graph.getClusterCount() : 0;
+    }
+
+    /**
+     * Get the number of entrances in the graph or 0 if not ready.
+     */
+    public int getEntranceCount() {
+        return _graph != null ? _graph.getNodeCount() : 0;
+    }
+
+    /**
+     * Build the graph in the background. No effect if the graph is
+     * ready or already building. Must be invoked from the main thread.
+     *
+     * @return  True if the graph is ready or building, false if the arena
+     * region is not defined or its world is not loaded.
+     */
+    public boolean build() {
+
+        if (_graph != null || _isBuilding)
+            return true;
+
+        if (!_arena.getRegion().isDefined())
+            return false;
+
+        World world = _arena.getRegion().getWorld();
+        if (world == null)
+            return false;
+
+        final int xStart = _arena.getRegion().getXStart();
+        final int zStart = _arena.getRegion().getZStart();
+        final int xEnd = _arena.getRegion().getXEnd();
+        final int zEnd = _arena.getRegion().getZEnd();
+
+        // mobs stand on the blocks below the region floor
+        final int yStart = Math.max(0, _arena.getRegion().getYStart() - 1);
+        final int yEnd = _arena.getRegion().getYEnd();
+
+        // chunk snapshots must be taken on the main thread
+        final WorldSnapshot snapshot = new WorldSnapshot(world, xStart, zStart, xEnd, zEnd);
+        final int generation = _generation;
+
+        _worldName = world.getName();
+        _isBuilding = true;
+
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
+            @Override
+            public void run() {
+
+                ClusterGraph graph = null;
+                RegionBlocks blocks = null;
+
+                try {
+                    if (generation != _generation)
+                        return;
+
+                    // blocks below and above the surfaces are needed for
+                    // drop and head room checks.
+                    blocks = new RegionBlocks(snapshot,
+                            xStart, Math.max(0, yStart - DistanceUtils.MAX_DROP_HEIGHT), zStart,
+                            xEnd, yEnd + 3, zEnd);
+
+                    graph = new ClusterGraph(blocks, DistanceUtils.MAX_DROP_HEIGHT, CLUSTER_SIZE,
+                            xStart, yStart, zStart, xEnd, yEnd, zEnd);
+                }
+                finally {
+                    finishBuild(graph, blocks, generation);
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Record a changed block. The clusters that contain the block are rebuilt
+     * after the changes settle. No effect if the graph was never built or the
+     * block is outside of the region.
+     *
+     * @param x  The X coordinates of the changed block.
+     * @param y  The Y coordinates of the changed block.
+     * @param z  The Z coordinates of the changed block.
+     */
+    public void invalidate(int x, int y, int z) {
+
+        if (_graph == null && !_isBuilding)
+            return;
+
+        if (x < _arena.getRegion().getXStart() || x > _arena.getRegion().getXEnd() ||
+                z < _arena.getRegion().getZStart() || z > _arena.getRegion().getZEnd()) {
+            return;
+        }
+
+        _changedChunks.add(getChunkKey(x >> 4, z >> 4));
+
+        scheduleRepair();
+    }
+
+    /**
+     * Discard the graph and stop building.
+     */
+    public void clear() {
+
+        if (_repairTask != null) {
+            _repairTask.cancel();
+            _repairTask = null;
+        }
+
+        _generation++;
+        _graph = null;
+        _blocks = null;
+        _isBuilding = false;
+        _changedChunks.clear();
+    }
+
+    /**
+     * Get the path distance between two locations in the arena region.
+     *
+     * @param from         The location to search from.
+     * @param to           The location to find a path to.
+     * @param maxDistance  The max path distance.
+     *
+     * @return  The path distance, -1 if there is no path within the max distance,
+     * or {@link #NOT_AVAILABLE} if the graph is not ready or either location is
+     * not on a surface in the region.
+     */
+    public int getPathDistance(Location from, Location to, int maxDistance) {
+        PreCon.notNull(from);
+        PreCon.notNull(to);
+        PreCon.positiveNumber(maxDistance);
+
+        ClusterGraph graph = _graph;
+        if (graph == null || !isInWorld(from) || !isInWorld(to))
+            return NOT_AVAILABLE;
+
+        int startX = from.getBlockX();
+        int startZ = from.getBlockZ();
+        int startY = graph.findSurfaceBelow(startX, from.getBlockY(), startZ);
+
+        int goalX = to.getBlockX();
+        int goalZ = to.getBlockZ();
+        int goalY = graph.findSurfaceBelow(goalX, to.getBlockY(), goalZ);
+
+        if (startY == -1 || goalY == -1 ||
+                !graph.contains(startX, startY, startZ) ||
+                !graph.contains(goalX, goalY, goalZ)) {
+            return NOT_AVAILABLE;
+        }
+
+        return graph.getPathDistance(startX, startY, startZ, goalX, goalY, goalZ, maxDistance);
+    }
+
+    /**
+     * Find a path between two locations in the arena region. The abstract
+     * path is refined into the blocks a mob stands on along the path.
+     *
+     * @param from         The location to search from.
+     * @param to           The location to find a path to.
+     * @param maxDistance  The max path distance.
+     *
+     * @return  The surface blocks of the path, including the start and goal, or
+     * null if the graph is not ready, either location is not on a surface in the
+     * region, or there is no path within the max distance.
+     */
+    @Nullable
+    public List<Location> findPath(Location from, Location to, int maxDistance) {
+        PreCon.notNull(from);
+        PreCon.notNull(to);
+        PreCon.positiveNumber(maxDistance);
+
+        ClusterGraph graph = _graph;
+        if (graph == null || !isInWorld(from) || !isInWorld(to))
+            return null;
+
+        int startX = from.getBlockX();
+        int startZ = from.getBlockZ();
+        int startY = graph.findSurfaceBelow(startX, from.getBlockY(), startZ);
+
+        int goalX = to.getBlockX();
+        int goalZ = to.getBlockZ();
+        int goalY = graph.findSurfaceBelow(goalX, to.getBlockY(), goalZ);
+
+        if (startY == -1 || goalY == -1 ||
+                !graph.contains(startX, startY, startZ) ||
+                !graph.contains(goalX, goalY, goalZ)) {
+            return null;
+        }
+
+        int[] coords = graph.findPath(startX, startY, startZ, goalX, goalY, goalZ, maxDistance);
+        if (coords == null)
+            return null;
+
+        List<Location> result = new ArrayList<>(coords.length / 3);
+
+        for (int i = 0; i < coords.length; i += 3) {
+            result.add(new Location(from.getWorld(), coords[i], coords[i + 1], coords[i + 2]));
+        }
+
+        return result;
+    }
+
+    /*
+     * Determine if a location is in the world the graph was built from.
+     */
+    private boolean isInWorld(Location location) {
+        return location.getWorld() != null && location.getWorld().getName().equals(_worldName);
+    }
+
+    /*
+     * Schedule changed chunks to be repaired. Restarts the delay if a
+     * repair is already scheduled.
+     */
+    private void scheduleRepair() {
+
+        if (_repairTask != null)
+            _repairTask.cancel();
+
+        _repairTask = Scheduler.runTaskLater(PVStarAPI.getPlugin(), REPAIR_DELAY, new Runnable() {
+            @Override
+            public void run() {
+                _repairTask = null;
+                repair();
+            }
+        });
+    }
+
+    /*
+     * Capture the changed chunks and rebuild the clusters that overlap them
+     * in the background.
+     */
+    private void repair() {
+
+        // changes made while building are repaired when the build finishes
+        if (_changedChunks.isEmpty() || _isBuilding || _graph == null)
+            return;
+
+        World world = _arena.getRegion().getWorld();
+        if (world == null || !world.getName().equals(_worldName)) {
+            clear();
+            return;
+        }
+
+        final int[] chunks = new int[_changedChunks.size() * 2];
+        int i = 0;
+
+        for (long key : _changedChunks) {
+            chunks[i++] = (int)(key >> 32);
+            chunks[i++] = (int)key;
+        }
+
+        _changedChunks.clear();
+
+        // chunk snapshots must be taken on the main thread
+        final WorldSnapshot snapshot = new WorldSnapshot(world, chunks);
+        final ClusterGraph previous = _graph;
+        final RegionBlocks previousBlocks = _blocks;
+        final int generation = _generation;
+
+        _isBuilding = true;
+
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
+            @Override
+            public void run() {
+
+                ClusterGraph graph = null;
+                RegionBlocks blocks = null;
+
+                try {
+                    if (generation != _generation)
+                        return;
+
+                    blocks = previousBlocks.update(snapshot, chunks);
+                    graph = new ClusterGraph(previous, blocks, chunks);
+                }
+                finally {
+                    finishBuild(graph, blocks, generation);
+                }
+            }
+        });
+    }
+
+    /*
+     * Use a built graph on the main thread unless cleared while building.
+     * If the build failed, the previous graph remains in use.
+     */
+    private void finishBuild(final ClusterGraph graph, final RegionBlocks blocks, final int generation) {
+
+        Scheduler.runTaskLater(PVStarAPI.getPlugin(), 1, new Runnable() {
+            @Override
+            public void run() {
+
+                if (generation != _generation)
+                    return;
+
+                if (graph != null) {
+                    _graph = graph;
+                    _blocks = blocks;
+                }
+
+                _isBuilding = false;
+
+                if (!_changedChunks.isEmpty())
+                    scheduleRepair();
+            }
+        });
+    }
+
+    private static long getChunkKey(int x, int z) {
+        return ((long)x << 32) | (z & 0xFFFFFFFFL);
+    }
+}
@@ -25,41 +25,72 @@
 
 package com.jcwhatever.pvs.modules.mobs.paths;
 
-import com.jcwhatever.nucleus.managed.scheduler.TaskHandler;
-import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
 import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.pvs.api.PVStarAPI;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+import com.jcwhatever.pvs.modules.mobs.MobsModule;
+import com.jcwhatever.pvs.modules.mobs.paths.PathCacheEntry.LoadedPaths;
+import com.jcwhatever.pvs.modules.mobs.paths.PathCacheGenerator.IProgressHandler;
+import org.bukkit.World;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 public class PathCache {
 
+    /**
+     * The default max radius of valid destinations around a spawn point.
+     */
+    public static final int DEFAULT_SEARCH_RADIUS = 16;
+
+    /**
+     * The default max path distance stored in the cache. Destination checks
+     * for any max path distance up to this value are answered by the cache.
+     */
+    public static final int DEFAULT_MAX_PATH_DISTANCE = PathVolume.MAX_DISTANCE;
+
+    // ticks to wait after the last block change before recomputing stale entries
+    private static final int RECOMPUTE_DELAY = 40;
+
+    private final MobArenaExtension _manager;
     private final Map<String, PathCacheEntry> _entries;
+    private final Set<PathCacheEntry> _staleEntries = new HashSet<>(10);
+
+    // destination checks that could not use cached paths because they were still loading
+    private final AtomicLong _loadFallbacks = new AtomicLong();
+
+    private PathCacheGenerator _generator;
+    private GeneratorHandler _generatorHandler;
+    private IScheduledTask _recomputeTask;
+    private int _searchRadius = DEFAULT_SEARCH_RADIUS;
+    private int _maxPathDistance = DEFAULT_MAX_PATH_DISTANCE;
+    private volatile boolean _isDisposed;
+    private boolean _isLoadStarted;
+    private volatile boolean _isLoading;
 
     public PathCache (MobArenaExtension manager, Collection<? extends Spawnpoint> spawns) {
         PreCon.notNull(manager);
         PreCon.notNull(spawns);
 
+        _manager = manager;
         _entries = new HashMap<>(spawns.size());
 
         for (Spawnpoint spawn : spawns) {
             PathCacheEntry entry = new PathCacheEntry(manager, spawn);
             _entries.put(spawn.getSearchName(), entry);
         }
-
-        try {
-            loadPaths();
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
     }
 
     @Nullable
@@ -68,56 +99,238 @@ public class PathCache {
     }
 
     /**
-     * Cache possible mob path destinations to a file. When paths are cached,
-     * The cache results are used instead of A-Star path finding to determine if
-     * a player is in range of a spawn.
+     * Determine if cached paths are being loaded in the background.
+     */
+    public boolean isLoading() {
+        return _isLoading;
+    }
+
+    /**
+     * Get the number of destination checks that could not use cached
+     * paths because the paths were still loading.
+     */
+    public long getLoadFallbacks() {
+        return _loadFallbacks.get();
+    }
+
+    /**
+     * Record a destination check that could not use cached paths
+     * because the paths were still loading.
+     */
+    public void incrementLoadFallbacks() {
+        _loadFallbacks.incrementAndGet();
+    }
+
+    /**
+     * Load cached paths from disk on a background thread. Only the first
+     * invocation has an effect. Must be invoked from the main thread.
      *
-     * @param searchRadius     The maximum radius for valid destinations around a spawn point.
-     * @param maxPathDistance  The maximum distance traveled to get to a destination from the spawn point.
+     * <p>Entries use realtime path checks until their paths are loaded. The
+     * loaded paths are applied on the main thread and are discarded for entries
+     * that were changed or invalidated while loading.</p>
      */
-    public void cachePaths(final int searchRadius, final int maxPathDistance) {
-        PreCon.greaterThanZero(searchRadius);
-        PreCon.greaterThanZero(maxPathDistance);
+    public void load() {
 
-        if (_entries.size() == 0)
+        if (_isLoadStarted || _isDisposed)
             return;
 
-        final Deque<PathCacheEntry> entries = new ArrayDeque<>(_entries.values());
+        _isLoadStarted = true;
+
+        if (_entries.isEmpty())
+            return;
+
+        final List<PathCacheEntry> entries = new ArrayList<>(_entries.values());
+
+        // the arena data folder is resolved on the main thread
+        final List<File> files = new ArrayList<>(entries.size());
+
+        for (PathCacheEntry entry : entries) {
+            try {
+                files.add(entry.getPathCacheFile(false));
+            } catch (IOException e) {
+                e.printStackTrace();
+                files.add(null);
+            }
+        }
+
+        _isLoading = true;
 
-        Scheduler.runTaskRepeat(PVStarAPI.getPlugin(), 7, 7, new TaskHandler() {
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
             @Override
             public void run() {
 
-                if (entries.isEmpty()) {
-                    cancelTask();
-                    return;
-                }
+                final List<LoadedPaths> loaded = new ArrayList<>(entries.size());
 
-                PathCacheEntry entry = entries.remove();
+                for (int i = 0; i < entries.size(); i++) {
 
-                try {
-                    entry.cachePaths(searchRadius, maxPathDistance);
-                }
-                catch (IOException e) {
-                    e.printStackTrace();
+                    LoadedPaths paths = null;
+
+                    if (!_isDisposed) {
+                        try {
+                            paths = entries.get(i).readPathCache(files.get(i));
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+
+                    loaded.add(paths);
                 }
 
+                Scheduler.runTaskLater(PVStarAPI.getPlugin(), 1, new Runnable() {
+                    @Override
+                    public void run() {
+
+                        _isLoading = false;
 
+                        if (_isDisposed)
+                            return;
+
+                        for (int i = 0; i < entries.size(); i++) {
+
+                            PathCacheEntry entry = entries.get(i);
+                            LoadedPaths paths = loaded.get(i);
+
+                            // generated or invalidated while loading
+                            if (paths == null || entry.hasPathCache() || entry.isStale())
+                                continue;
+
+                            entry.setLoadedPaths(paths);
+                        }
+                    }
+                });
             }
         });
     }
 
     /**
-     * Load cached paths from an arena.
+     * Get the generator that is currently caching paths.
      *
-     * @throws java.io.IOException
-     * @throws java.lang.ClassNotFoundException
+     * @return  The generator or null if paths are not being cached.
+     */
+    @Nullable
+    public PathCacheGenerator getGenerator() {
+        if (_generator != null && _generator.isFinished())
+            _generator = null;
+
+        return _generator;
+    }
+
+    /**
+     * Set the handler that receives progress updates from the generator
+     * that is currently caching paths.
+     *
+     * @param handler  The handler or null to remove.
+     *
+     * @return  True if paths are being cached, otherwise false.
+     */
+    public boolean setProgressHandler(@Nullable IProgressHandler handler) {
+
+        if (getGenerator() == null)
+            return false;
+
+        _generatorHandler.handler = handler;
+        return true;
+    }
+
+    /**
+     * Cache possible mob path destinations to a file. When paths are cached,
+     * The cache results are used instead of A-Star path finding to determine if
+     * a player is in range of a spawn.
+     *
+     * <p>The paths are generated on worker threads from chunk snapshots. Any
+     * generation already in progress is cancelled.</p>
+     *
+     * @param searchRadius     The maximum radius for valid destinations around a spawn point.
+     * @param maxPathDistance  The maximum path distance to store.
+     *
+     * @return  The generator or null if the arena world is not loaded.
+     */
+    @Nullable
+    public PathCacheGenerator cachePaths(int searchRadius, int maxPathDistance) {
+        return cachePaths(searchRadius, maxPathDistance, null);
+    }
+
+    /**
+     * Cache possible mob path destinations to a file.
+     *
+     * @param searchRadius     The maximum radius for valid destinations around a spawn point.
+     * @param maxPathDistance  The maximum path distance to store.
+     * @param handler          Optional handler to receive progress updates.
+     *
+     * @return  The generator or null if the arena world is not loaded.
      */
-    public void loadPaths() throws IOException, ClassNotFoundException {
+    @Nullable
+    public PathCacheGenerator cachePaths(int searchRadius, int maxPathDistance,
+                                         @Nullable IProgressHandler handler) {
+        PreCon.greaterThanZero(searchRadius);
+        PreCon.greaterThanZero(maxPathDistance);
+        PreCon.lessThan(maxPathDistance, PathVolume.MAX_DISTANCE + 1);
+
+        cancelCachePaths();
+
+        _searchRadius = searchRadius;
+        _maxPathDistance = maxPathDistance;
+
+        // all entries are regenerated
+        _staleEntries.clear();
+        cancelRecompute();
+
+        return startGenerator(new ArrayList<>(_entries.values()), handler);
+    }
+
+    /**
+     * Cancel caching paths.
+     *
+     * @return  True if a generator was cancelled.
+     */
+    public boolean cancelCachePaths() {
+
+        PathCacheGenerator generator = getGenerator();
+        if (generator == null)
+            return false;
+
+        generator.cancel();
+        _generator = null;
+
+        return true;
+    }
+
+    /**
+     * Invalidate the cached paths of all entries whose search volume contains
+     * a changed block. Invalidated entries stop using their cache until they
+     * are recomputed in the background.
+     *
+     * @param x  The X coordinates of the changed block.
+     * @param y  The Y coordinates of the changed block.
+     * @param z  The Z coordinates of the changed block.
+     *
+     * @return  The number of entries invalidated.
+     */
+    public int invalidate(int x, int y, int z) {
+
+        if (_isDisposed)
+            return 0;
+
+        int total = 0;
 
         for (PathCacheEntry entry : _entries.values()) {
-            entry.loadPathCache();
+
+            // entries that are still loading may load paths that are already stale
+            if (!entry.hasPathCache() && !entry.isStale() && !_isLoading)
+                continue;
+
+            if (!entry.isInSearchVolume(x, y, z, _searchRadius))
+                continue;
+
+            entry.setStale();
+            _staleEntries.add(entry);
+            total++;
         }
+
+        if (total > 0)
+            scheduleRecompute();
+
+        return total;
     }
 
     /**
@@ -132,6 +345,130 @@ public class PathCache {
         }
     }
 
+    /**
+     * Cancel path generation and pending recomputes. Invoked when
+     * the path cache is replaced.
+     */
+    public void dispose() {
+        _isDisposed = true;
+        _staleEntries.clear();
+
+        cancelRecompute();
+        cancelCachePaths();
+    }
+
+    /*
+     * Start a generator for the specified entries.
+     */
+    @Nullable
+    private PathCacheGenerator startGenerator(List<PathCacheEntry> entries, @Nullable IProgressHandler handler) {
+
+        World world = _manager.getArena().getRegion().getWorld();
+        if (world == null)
+            return null;
+
+        _generatorHandler = new GeneratorHandler(entries, handler);
+
+        _generator = new PathCacheGenerator(entries, _searchRadius, _maxPathDistance);
+        _generator.setProgressHandler(_generatorHandler);
+        _generator.start(world);
+
+        return _generator;
+    }
+
+    /*
+     * Schedule stale entries to be recomputed. Restarts the delay
+     * if a recompute is already scheduled.
+     */
+    private void scheduleRecompute() {
+
+        cancelRecompute();
+
+        _recomputeTask = Scheduler.runTaskLater(PVStarAPI.getPlugin(), RECOMPUTE_DELAY, new Runnable() {
+            @Override
+            public void run() {
+                _recomputeTask = null;
+                recompute();
+            }
+        });
+    }
+
+    private void cancelRecompute() {
+        if (_recomputeTask != null) {
+            _recomputeTask.cancel();
+            _recomputeTask = null;
+        }
+    }
+
+    /*
+     * Recompute stale entries.
+     */
+    private void recompute() {
+
+        if (_isDisposed || _staleEntries.isEmpty())
+            return;
+
+        // wait for the current generator to finish
+        if (getGenerator() != null) {
+            scheduleRecompute();
+            return;
+        }
 
+        List<PathCacheEntry> entries = new ArrayList<>(_staleEntries);
+        _staleEntries.clear();
 
+        if (startGenerator(entries, null) == null) {
+            // world not loaded, try again later
+            _staleEntries.addAll(entries);
+            scheduleRecompute();
+        }
+    }
+
+    /*
+     * Keeps stale entries consistent with generator results before
+     * passing updates to an optional external handler.
+     */
+    private class GeneratorHandler implements IProgressHandler {
+
+        final List<PathCacheEntry> entries;
+        IProgressHandler handler;
+
+        GeneratorHandler(List<PathCacheEntry> entries, @Nullable IProgressHandler handler) {
+            this.entries = entries;
+            this.handler = handler;
+        }
+
+        @Override
+        public void onProgress(int completed, int total) {
+            if (handler != null)
+                handler.onProgress(completed, total);
+        }
+
+        @Override
+        public void onFinish(boolean isCancelled) {
+
+            if (!_isDisposed) {
+
+                if (isCancelled) {
+                    // entries that were stale still need to be recomputed
+                    for (PathCacheEntry entry : entries) {
+                        if (entry.isStale())
+                            _staleEntries.add(entry);
+                    }
+                }
+                else {
+                    // entries changed after the snapshot was taken are stale again
+                    for (PathCacheEntry entry : _staleEntries) {
+                        entry.setStale();
+                    }
+                }
+
+                if (!_staleEntries.isEmpty() && _recomputeTask == null)
+                    scheduleRecompute();
+            }
+
+            if (handler != null)
+                handler.onFinish(isCancelled);
+        }
+    }
 }
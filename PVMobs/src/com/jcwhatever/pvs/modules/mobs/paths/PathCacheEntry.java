@@ -25,45 +25,60 @@
 
 package com.jcwhatever.pvs.modules.mobs.paths;
 
-import com.jcwhatever.nucleus.managed.astar.AStar;
-import com.jcwhatever.nucleus.managed.astar.IAStarSettings;
-import com.jcwhatever.nucleus.managed.astar.area.IPathAreaResult;
 import com.jcwhatever.nucleus.utils.PreCon;
-import com.jcwhatever.nucleus.utils.coords.Coords3Di;
-import com.jcwhatever.nucleus.utils.coords.ICoords3Di;
+import com.jcwhatever.nucleus.utils.ThreadSingletons;
 import com.jcwhatever.nucleus.utils.coords.LocationUtils;
-import com.jcwhatever.nucleus.utils.coords.MutableCoords3Di;
-import com.jcwhatever.nucleus.utils.file.BasicByteReader;
-import com.jcwhatever.nucleus.utils.file.BasicByteWriter;
 import com.jcwhatever.pvs.api.arena.IArena;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.api.utils.Msg;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
-import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
 import org.bukkit.Location;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.Set;
+import javax.annotation.Nullable;
 
 public class PathCacheEntry {
 
-    private static final Location DESTINATION_LOCATION = new Location(null, 0, 0, 0);
-    private static final MutableCoords3Di COORDS_MATCHER = new MutableCoords3Di();
-    private static final int CACHE_FILE_VERSION = 2;
+    /**
+     * The version of cached path files.
+     */
+    public static final int CACHE_FILE_VERSION = 5;
+
+    /**
+     * The size of the cached path file header. The header contains the
+     * version, flags and spawn x, y, z as ints and is followed by the key
+     * of the {@link SharedPathCache} file that stores the paths, written
+     * as modified UTF-8.
+     */
+    public static final int FILE_HEADER_SIZE = 5 * 4;
+
+    /**
+     * The name of the arena data folder that contains cached path files.
+     * Each file is named after its spawnpoint with the extension ".bin".
+     */
+    public static final String CACHE_FOLDER_NAME = "spawn-path-cache";
+
+    private static final ThreadSingletons<Location> SURFACE_LOCATIONS = LocationUtils.createThreadSingleton();
 
     private final MobArenaExtension _manager;
     private final Spawnpoint _spawnpoint;
     private final IArena _arena;
-    private final IAStarSettings _settings = AStar.createSettings();
 
-    private Set<ICoords3Di> _cachedPaths;
-    private boolean _isValidCachedPaths;
+    // path distances to destinations
+    private volatile PathVolume _cachedPaths;
+
+    // key of the shared paths
+    private volatile String _cacheKey;
+
+    // true if blocks in the search volume changed since the paths were cached
+    private volatile boolean _isStale;
 
     public PathCacheEntry (MobArenaExtension manager, Spawnpoint spawnpoint) {
         PreCon.notNull(manager);
@@ -74,137 +89,296 @@ public class PathCacheEntry {
         _spawnpoint = spawnpoint;
     }
 
+    /**
+     * Get the spawnpoint the entry caches paths for.
+     */
+    public Spawnpoint getSpawnpoint() {
+        return _spawnpoint;
+    }
+
     /**
      * Determine if valid destinations are cached and loaded.
      */
     public boolean hasPathCache() {
-        return _cachedPaths != null;
+        return _cachedPaths != null && !_isStale;
+    }
+
+    /**
+     * Determine if valid destinations are cached and loaded and the
+     * cache can answer checks for the specified max path distance.
+     *
+     * @param maxPathDistance  The max path distance to a destination.
+     */
+    public boolean hasPathCache(int maxPathDistance) {
+        PathVolume cachedPaths = _cachedPaths;
+        return cachedPaths != null && !_isStale && maxPathDistance <= cachedPaths.getMaxDistance();
+    }
+
+    /**
+     * Get the max path distance stored in the cache.
+     *
+     * @return  The max distance or -1 if there is no path cache.
+     */
+    public int getMaxPathDistance() {
+        PathVolume cachedPaths = _cachedPaths;
+        return cachedPaths != null ? cachedPaths.getMaxDistance() : -1;
+    }
+
+    /**
+     * Get the key of the shared paths used by the entry.
+     *
+     * @return  The key or null if there is no path cache.
+     */
+    @Nullable
+    public String getCacheKey() {
+        return _cacheKey;
+    }
+
+    /**
+     * Determine if the cached paths are out of date because blocks
+     * within the search volume were changed.
+     */
+    public boolean isStale() {
+        return _isStale;
+    }
+
+    /**
+     * Determine if a block is within the volume searched for destinations
+     * from the entries spawn point.
+     *
+     * <p>A block also affects the surfaces up to 3 blocks below it since
+     * mobs require head room.</p>
+     *
+     * @param x             The X coordinates of the block.
+     * @param y             The Y coordinates of the block.
+     * @param z             The Z coordinates of the block.
+     * @param searchRadius  The radius used to generate the cached paths.
+     */
+    public boolean isInSearchVolume(int x, int y, int z, int searchRadius) {
+
+        return Math.abs(x - _spawnpoint.getBlockX()) <= searchRadius &&
+                Math.abs(z - _spawnpoint.getBlockZ()) <= searchRadius &&
+                y >= _spawnpoint.getBlockY() - searchRadius &&
+                y - 3 <= _spawnpoint.getBlockY() + searchRadius;
     }
 
     /**
      * Determine if the destination is valid from the entries spawn point.
      *
-     * @param destination  The destination to check.
+     * <p>Reads blocks from the world to find the surface below the destination
+     * and must be invoked from the main thread.</p>
+     *
+     * @param destination      The destination to check.
+     * @param maxPathDistance  The max path distance to the destination.
      */
-    public boolean isValidDestination(Location destination) {
+    public boolean isValidDestination(Location destination, int maxPathDistance) {
         if (_arena.getRegion().getWorld() == null)
             return false;
 
         if (!_arena.getRegion().getWorld().equals(destination.getWorld()))
             return false;
 
-        if (LocationUtils.findSurfaceBelow(destination, DESTINATION_LOCATION) == null)
+        Location surface = LocationUtils.findSurfaceBelow(destination, SURFACE_LOCATIONS.get());
+        if (surface == null)
             return false;
 
-        if (_cachedPaths == null)
-            throw new IllegalStateException("Cannot check destination because there is no path cache.");
-
-        COORDS_MATCHER.copyFrom(DESTINATION_LOCATION);
-
-        return _isValidCachedPaths
-                ? _cachedPaths.contains(COORDS_MATCHER)
-                : !_cachedPaths.contains(COORDS_MATCHER);
+        return isValidDestination(surface.getBlockX(), surface.getBlockY(), surface.getBlockZ(), maxPathDistance);
     }
 
     /**
-     * Cache valid destinations from the location to memory and on disk.
+     * Determine if a surface block is a valid destination from the entries spawn point.
      *
-     * @param searchRadius     The max radius from this location of valid destinations.
-     * @param maxPathDistance  The max distance traveled to get to a location.
+     * <p>Does not allocate and is safe to invoke from any thread.</p>
      *
-     * @throws java.io.IOException
+     * @param x                The X coordinates of the surface block.
+     * @param y                The Y coordinates of the surface block.
+     * @param z                The Z coordinates of the surface block.
+     * @param maxPathDistance  The max path distance to the surface block.
      */
-    public void cachePaths(int searchRadius, int maxPathDistance) throws IOException {
-        PreCon.greaterThanZero(searchRadius);
-        PreCon.greaterThanZero(maxPathDistance);
+    public boolean isValidDestination(int x, int y, int z, int maxPathDistance) {
+        int distance = getPathDistance(x, y, z);
+        return distance != -1 && distance <= maxPathDistance;
+    }
 
+    /**
+     * Get the path distance from the entries spawn point to a surface block.
+     *
+     * <p>Does not allocate and is safe to invoke from any thread.</p>
+     *
+     * @param x  The X coordinates of the surface block.
+     * @param y  The Y coordinates of the surface block.
+     * @param z  The Z coordinates of the surface block.
+     *
+     * @return  The path distance or -1 if the block cannot be reached within
+     * the max path distance of the cache.
+     */
+    public int getPathDistance(int x, int y, int z) {
 
-        _settings.setMaxDropHeight(DistanceUtils.MAX_DROP_HEIGHT);
-        _settings.setRange(searchRadius);
+        PathVolume cachedPaths = _cachedPaths;
+        if (cachedPaths == null)
+            throw new IllegalStateException("Cannot check destination because there is no path cache.");
 
-        IPathAreaResult result = AStar.searchArea(_spawnpoint, _settings);
+        return cachedPaths.getDistance(x, y, z);
+    }
 
-        if (result.getValid().size() > result.getInvalid().size()) {
-            _isValidCachedPaths = false;
-            _cachedPaths = result.getInvalid();
-        }
-        else {
-            _isValidCachedPaths = true;
-            _cachedPaths = result.getValid();
-        }
+    /**
+     * Set the path distances to destinations from the location. The paths must
+     * already be stored in the {@link SharedPathCache} under the key. The key is
+     * saved to disk separately by the {@link PathCacheGenerator}.
+     *
+     * @param paths  A volume of the path distances to destinations.
+     * @param key    The key of the shared paths.
+     */
+    public void setPathCache(PathVolume paths, String key) {
+        PreCon.notNull(paths);
+        PreCon.notNullOrEmpty(key);
 
-        savePathCache();
+        _cachedPaths = paths;
+        _cacheKey = key;
+        _isStale = false;
     }
 
+    /**
+     * Mark the cached paths as out of date. Stale paths are not used
+     * until new paths are set.
+     */
+    void setStale() {
+        _isStale = true;
+    }
 
     /**
-     * Delete cached paths from memory and on disk.
+     * Delete cached paths from memory and the key of the paths on disk.
+     * The shared paths are kept until no arena references them.
      *
      * @throws IOException
      */
     public void clearPathCache() throws IOException {
 
         _cachedPaths = null;
+        _cacheKey = null;
+        _isStale = false;
         getPathCacheFile(true); // delete file if exists
     }
 
 
     /**
-     * Loads cached paths from disk.
+     * Loads cached paths from disk. The file contains the key of the paths in
+     * the {@link SharedPathCache}, the shared file is memory mapped and the
+     * cached positions are read from the file as they are needed.
+     *
+     * <p>Cache files from earlier versions stored the paths of the arena directly
+     * and are not loaded.</p>
      *
      * @return True if cached paths exist and were successfully loaded.
      *
      * @throws IOException
      */
-    public boolean loadPathCache() throws IOException, ClassNotFoundException {
-
-        File file = getPathCacheFile(false);
+    public boolean loadPathCache() throws IOException {
 
-        if (!file.exists())
+        LoadedPaths loaded = readPathCache(getPathCacheFile(false));
+        if (loaded == null)
             return false;
 
-        BasicByteReader reader = new BasicByteReader(new FileInputStream(file));
+        setLoadedPaths(loaded);
+        return true;
+    }
+
+    /*
+     * Read cached paths from a file without applying them to the entry.
+     * Safe to invoke from a worker thread.
+     */
+    @Nullable
+    LoadedPaths readPathCache(@Nullable File file) throws IOException {
 
-        int version = reader.getInteger();
-        if (version != CACHE_FILE_VERSION) {
-            Msg.warning("Attempted to load cached paths from outdated file version: " + file.getName());
-            Msg.warning("Expected version was " + CACHE_FILE_VERSION + ", file version was: " + version);
-            return false;
-        }
+        if (file == null || !file.exists())
+            return null;
 
-        reader.getString(); // location name
-        reader.getLocation(); // spawn location
+        String key;
 
-        _isValidCachedPaths = reader.getByte() != 0;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
 
-        int totalLocations = reader.getInteger();
+            int version = file.length() >= 4 ? input.readInt() : -1;
 
-        Set<ICoords3Di> locations = new HashSet<>(totalLocations);
+            if (version != CACHE_FILE_VERSION) {
+                Msg.warning("Attempted to load cached paths from outdated file version: " + file.getName());
+                Msg.warning("Expected version was " + CACHE_FILE_VERSION + ", file version was: " + version);
+                return null;
+            }
 
-        for (int i=0; i < totalLocations; i++) {
-            int x = reader.getInteger();
-            int y = reader.getInteger();
-            int z = reader.getInteger();
+            if (file.length() < FILE_HEADER_SIZE + 2) {
+                Msg.warning("Cached paths file is truncated: " + file.getName());
+                return null;
+            }
 
-            // convert SyncLocation to Location
-            locations.add(new Coords3Di(x, y, z));
+            input.readInt(); // flags, reserved
+
+            if (input.readInt() != _spawnpoint.getBlockX() ||
+                    input.readInt() != _spawnpoint.getBlockY() ||
+                    input.readInt() != _spawnpoint.getBlockZ()) {
+                Msg.warning("Cached paths file is for a different spawn location: " + file.getName());
+                return null;
+            }
+
+            key = input.readUTF();
         }
 
-        reader.close();
+        PathVolume paths = SharedPathCache.get().load(key,
+                _spawnpoint.getBlockX(), _spawnpoint.getBlockY(), _spawnpoint.getBlockZ());
 
-        _cachedPaths = locations;
+        if (paths == null) {
+            Msg.warning("Shared cached paths are missing for file: " + file.getName());
+            return null;
+        }
 
-        return true;
+        return new LoadedPaths(paths, key);
+    }
+
+    /*
+     * Read the key of the shared paths from a cached path file. Returns
+     * null if the file cannot be read or is from a different version.
+     * Safe to invoke from a worker thread.
+     */
+    @Nullable
+    static String readCacheKey(File file) {
+
+        if (file.length() < FILE_HEADER_SIZE + 2)
+            return null;
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+
+            if (input.readInt() != CACHE_FILE_VERSION)
+                return null;
+
+            // flags and spawn x, y, z
+            input.skipBytes(FILE_HEADER_SIZE - 4);
+
+            return input.readUTF();
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Apply paths read from disk.
+     */
+    void setLoadedPaths(LoadedPaths loaded) {
+        _cachedPaths = loaded.paths;
+        _cacheKey = loaded.key;
+        _isStale = false;
     }
 
     /*
      * Get file that stores cached paths for this instance.
      */
-    private File getPathCacheFile(boolean deleteIfExists) throws IOException {
+    @Nullable
+    File getPathCacheFile(boolean deleteIfExists) throws IOException {
 
         File baseDir = _arena.getDataFolder(_manager);
 
-        File dir = new File(baseDir, "spawn-path-cache");
+        File dir = new File(baseDir, CACHE_FOLDER_NAME);
         if (!dir.exists() && !dir.mkdirs()) {
             return null;
         }
@@ -219,38 +393,40 @@ public class PathCacheEntry {
 
 
     /*
-     * Saves current cached paths to disk
+     * Save the key of the shared paths to disk. Does nothing if the paths
+     * of the entry were replaced or cleared since the key was set. Safe to
+     * invoke from a worker thread.
      */
-    private boolean savePathCache() throws IOException {
+    boolean savePathCache(@Nullable File file, String key) throws IOException {
 
-        if (_cachedPaths == null)
+        if (file == null || !key.equals(_cacheKey))
             return false;
 
-        File file = getPathCacheFile(true);
-        if (file == null)
-            return false;
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
 
-        BasicByteWriter writer = new BasicByteWriter(new FileOutputStream(file));
+            output.writeInt(CACHE_FILE_VERSION);
+            output.writeInt(0); // flags, reserved
+            output.writeInt(_spawnpoint.getBlockX());
+            output.writeInt(_spawnpoint.getBlockY());
+            output.writeInt(_spawnpoint.getBlockZ());
+            output.writeUTF(key);
+        }
 
-        Deque<ICoords3Di> locations = new ArrayDeque<>(_cachedPaths);
+        return true;
+    }
 
-        writer.write(CACHE_FILE_VERSION);
-        writer.write(_spawnpoint.getName());
-        writer.write(_spawnpoint);
-        writer.write(_isValidCachedPaths ? (byte)1 : (byte)0);
-        writer.write(_arena.getRegion().getWorldName());
+    /*
+     * Paths read from disk and the key of the shared paths.
+     */
+    static class LoadedPaths {
 
-        writer.write(locations.size()); // int
+        final PathVolume paths;
+        final String key;
 
-        while (!locations.isEmpty()) {
-            ICoords3Di location = locations.remove();
-            writer.write(location.getX());
-            writer.write(location.getY());
-            writer.write(location.getZ());
+        LoadedPaths(PathVolume paths, String key) {
+            this.paths = paths;
+            this.key = key;
         }
-
-        writer.close();
-
-        return true;
     }
 }
@@ -0,0 +1,377 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.managed.scheduler.TaskHandler;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.PVStarAPI;
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.MobsModule;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * Generates path caches for a collection of {@link PathCacheEntry}'s
+ * on a pool of worker threads.
+ *
+ * <p>The chunks around each spawn are captured as snapshots on the main thread
+ * and the area searches are run against the snapshots in parallel. When all
+ * searches are finished, the results are applied to the entries in a single
+ * main thread tick and the cache files of the entries are written on a worker
+ * thread.</p>
+ *
+ * <p>Paths are stored in the {@link SharedPathCache}. Entries whose search volume
+ * matches paths already stored by any arena reuse them instead of searching.</p>
+ */
+public class PathCacheGenerator {
+
+    private static final int MONITOR_INTERVAL = 10;
+
+    private final List<PathCacheEntry> _entries;
+    private final int _searchRadius;
+    private final int _maxPathDistance;
+    private final AtomicReferenceArray<PathVolume> _results;
+    private final AtomicReferenceArray<String> _keys;
+    private final AtomicInteger _completed = new AtomicInteger();
+    private final AtomicInteger _shared = new AtomicInteger();
+
+    private SharedPathCache _sharedCache;
+
+    private ExecutorService _executor;
+    private IProgressHandler _handler;
+    private volatile boolean _isCancelled;
+    private boolean _isStarted;
+    private boolean _isFinished;
+
+    /**
+     * Handles progress updates from a generator. All methods are
+     * invoked on the main thread.
+     */
+    public interface IProgressHandler {
+
+        /**
+         * Invoked when the number of completed entries changes.
+         *
+         * @param completed  The number of entries searched.
+         * @param total      The total number of entries.
+         */
+        void onProgress(int completed, int total);
+
+        /**
+         * Invoked when the generator is finished.
+         *
+         * @param isCancelled  True if the generator was cancelled before the
+         *                     results were applied.
+         */
+        void onFinish(boolean isCancelled);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param entries          The entries to generate caches for.
+     * @param searchRadius     The max radius of valid destinations around a spawn point.
+     * @param maxPathDistance  The max path distance stored in the caches.
+     */
+    public PathCacheGenerator(Collection<PathCacheEntry> entries, int searchRadius, int maxPathDistance) {
+        PreCon.notNull(entries);
+        PreCon.greaterThanZero(searchRadius);
+        PreCon.greaterThanZero(maxPathDistance);
+        PreCon.lessThan(maxPathDistance, PathVolume.MAX_DISTANCE + 1);
+
+        _entries = new ArrayList<>(entries);
+        _searchRadius = searchRadius;
+        _maxPathDistance = maxPathDistance;
+        _results = new AtomicReferenceArray<>(_entries.size());
+        _keys = new AtomicReferenceArray<>(_entries.size());
+    }
+
+    /**
+     * Get the total number of entries to generate.
+     */
+    public int getTotal() {
+        return _entries.size();
+    }
+
+    /**
+     * Get the number of entries that have been searched.
+     */
+    public int getCompleted() {
+        return _completed.get();
+    }
+
+    /**
+     * Get the number of searched entries that reused paths from
+     * the shared cache instead of searching.
+     */
+    public int getShared() {
+        return _shared.get();
+    }
+
+    /**
+     * Determine if the generator was cancelled.
+     */
+    public boolean isCancelled() {
+        return _isCancelled;
+    }
+
+    /**
+     * Determine if the generator is finished, either because the results
+     * were applied or because it was cancelled.
+     */
+    public boolean isFinished() {
+        return _isFinished;
+    }
+
+    /**
+     * Set the handler that receives progress updates.
+     *
+     * @param handler  The handler or null to remove.
+     */
+    public void setProgressHandler(@Nullable IProgressHandler handler) {
+        _handler = handler;
+    }
+
+    /**
+     * Capture snapshots and start generating. Must be invoked
+     * from the main thread.
+     *
+     * @param world  The world the entries are in.
+     */
+    public void start(World world) {
+        PreCon.notNull(world);
+
+        if (_isStarted)
+            throw new IllegalStateException("Path cache generator already started.");
+
+        _isStarted = true;
+
+        if (_entries.isEmpty()) {
+            finish(false);
+            return;
+        }
+
+        List<Location> spawns = new ArrayList<>(_entries.size());
+        for (PathCacheEntry entry : _entries) {
+            spawns.add(entry.getSpawnpoint());
+        }
+
+        _sharedCache = SharedPathCache.get();
+
+        // chunk snapshots must be taken on the main thread
+        WorldSnapshot snapshot = new WorldSnapshot(world, spawns, _searchRadius + PathFlood.SEARCH_MARGIN);
+
+        int threads = Math.max(1, Math.min(_entries.size(), Runtime.getRuntime().availableProcessors() - 1));
+
+        _executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory("PVMobs-PathCache"));
+
+        for (int i=0; i < _entries.size(); i++) {
+            _executor.execute(new SearchTask(snapshot, i));
+        }
+
+        _executor.shutdown();
+
+        Scheduler.runTaskRepeat(PVStarAPI.getPlugin(), 1, MONITOR_INTERVAL, new Monitor());
+    }
+
+    /**
+     * Cancel the generator. Results are discarded and the
+     * path cache entries are left unchanged.
+     */
+    public void cancel() {
+        if (_isFinished)
+            return;
+
+        _isCancelled = true;
+
+        if (_executor != null)
+            _executor.shutdownNow();
+    }
+
+    /*
+     * Apply results and notify handler. Invoked on the main thread.
+     */
+    private void finish(boolean isCancelled) {
+
+        _isFinished = true;
+
+        if (!isCancelled) {
+
+            List<PathCacheEntry> entries = new ArrayList<>(_entries.size());
+            List<File> files = new ArrayList<>(_entries.size());
+            List<String> keys = new ArrayList<>(_entries.size());
+
+            for (int i = 0; i < _entries.size(); i++) {
+
+                PathVolume result = _results.get(i);
+                if (result == null)
+                    continue;
+
+                PathCacheEntry entry = _entries.get(i);
+                String key = _keys.get(i);
+
+                entry.setPathCache(result, key);
+
+                // the arena data folder is resolved on the main thread
+                File file;
+                try {
+                    file = entry.getPathCacheFile(false);
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                    continue;
+                }
+
+                entries.add(entry);
+                files.add(file);
+                keys.add(key);
+            }
+
+            saveKeys(entries, files, keys);
+        }
+
+        if (_handler != null)
+            _handler.onFinish(isCancelled);
+    }
+
+    /*
+     * Save the keys of the shared paths of entries to disk on a worker thread.
+     */
+    private void saveKeys(final List<PathCacheEntry> entries,
+                          final List<File> files, final List<String> keys) {
+
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
+            @Override
+            public void run() {
+
+                for (int i = 0; i < entries.size(); i++) {
+                    try {
+                        entries.get(i).savePathCache(files.get(i), keys.get(i));
+                    }
+                    catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * Runs the area search for a single entry.
+     */
+    private class SearchTask implements Runnable {
+
+        final WorldSnapshot snapshot;
+        final int index;
+
+        SearchTask(WorldSnapshot snapshot, int index) {
+            this.snapshot = snapshot;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+
+            if (_isCancelled)
+                return;
+
+            try {
+                PathFlood flood = new PathFlood(snapshot, DistanceUtils.MAX_DROP_HEIGHT);
+                Spawnpoint spawn = _entries.get(index).getSpawnpoint();
+                int x = spawn.getBlockX();
+                int y = spawn.getBlockY();
+                int z = spawn.getBlockZ();
+
+                String key = SharedPathCache.getKey(flood, spawn, _searchRadius, _maxPathDistance);
+
+                // arenas with the same blocks around the spawn reuse the same paths
+                PathVolume paths = _sharedCache.load(key, x, y, z);
+
+                if (paths != null) {
+                    _shared.incrementAndGet();
+                }
+                else {
+                    paths = _sharedCache.save(key, flood.search(spawn, _searchRadius, _maxPathDistance), x, y, z);
+                }
+
+                _keys.set(index, key);
+                _results.set(index, paths);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            finally {
+                // count failed searches so the monitor does not wait forever
+                _completed.incrementAndGet();
+            }
+        }
+    }
+
+    /*
+     * Reports progress and applies the results once all searches complete.
+     */
+    private class Monitor extends TaskHandler {
+
+        int reported = -1;
+
+        @Override
+        public void run() {
+
+            if (_isCancelled) {
+                cancelTask();
+                finish(true);
+                return;
+            }
+
+            int completed = _completed.get();
+
+            if (completed != reported) {
+                reported = completed;
+
+                if (_handler != null)
+                    _handler.onProgress(completed, _entries.size());
+            }
+
+            if (completed == _entries.size()) {
+                cancelTask();
+                finish(false);
+            }
+        }
+    }
+}
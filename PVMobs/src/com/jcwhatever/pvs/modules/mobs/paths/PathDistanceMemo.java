@@ -0,0 +1,265 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import com.jcwhatever.pvs.modules.mobs.utils.TickMonitor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used memo of realtime path distances from
+ * spawnpoints to destination blocks.
+ *
+ * <p>Entries expire after a time to live in ticks counted by the
+ * {@link TickMonitor}. The memo is not thread safe and should only be
+ * used from the main thread.</p>
+ */
+public class PathDistanceMemo {
+
+    /**
+     * Returned when a path distance is not in the memo.
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    private final int _capacity;
+    private final int _ttlTicks;
+    private final Map<Key, Value> _entries;
+
+    // reused for lookups to avoid allocation
+    private final Key _lookupKey = new Key();
+
+    private long _hits;
+    private long _misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity  The max number of distances to store.
+     * @param ttlTicks  The number of ticks a distance is valid for.
+     */
+    public PathDistanceMemo(final int capacity, int ttlTicks) {
+        PreCon.greaterThanZero(capacity);
+        PreCon.greaterThanZero(ttlTicks);
+
+        _capacity = capacity;
+        _ttlTicks = ttlTicks;
+        _entries = new LinkedHashMap<Key, Value>(Math.min(capacity, 256), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the max number of distances stored.
+     */
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Get the number of distances stored, including expired distances
+     * that have not been removed yet.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Get the number of lookups that found a distance.
+     */
+    public long getHits() {
+        return _hits;
+    }
+
+    /**
+     * Get the number of lookups that did not find a distance.
+     */
+    public long getMisses() {
+        return _misses;
+    }
+
+    /**
+     * Get a path distance.
+     *
+     * @param spawn         The spawnpoint the path starts from.
+     * @param x             The X coordinates of the destination block.
+     * @param y             The Y coordinates of the destination block.
+     * @param z             The Z coordinates of the destination block.
+     * @param searchRadius  The radius searched to find the path.
+     *
+     * @return  The path distance, -1 if there is no path, or {@link #NOT_FOUND}
+     * if the distance is not in the memo or has expired.
+     */
+    public int get(Spawnpoint spawn, int x, int y, int z, int searchRadius) {
+        PreCon.notNull(spawn);
+
+        Value value = _entries.get(_lookupKey.set(spawn, x, y, z, searchRadius));
+
+        if (value != null && TickMonitor.getTick() >= value.expires) {
+            _entries.remove(_lookupKey);
+            value = null;
+        }
+
+        _lookupKey.spawn = null;
+
+        if (value == null) {
+            _misses++;
+            return NOT_FOUND;
+        }
+
+        _hits++;
+        return value.distance;
+    }
+
+    /**
+     * Store a path distance.
+     *
+     * @param spawn         The spawnpoint the path starts from.
+     * @param x             The X coordinates of the destination block.
+     * @param y             The Y coordinates of the destination block.
+     * @param z             The Z coordinates of the destination block.
+     * @param searchRadius  The radius searched to find the path.
+     * @param distance      The path distance or -1 if there is no path.
+     */
+    public void put(Spawnpoint spawn, int x, int y, int z, int searchRadius, int distance) {
+        PreCon.notNull(spawn);
+
+        _entries.put(new Key().set(spawn, x, y, z, searchRadius),
+                new Value(distance, TickMonitor.getTick() + _ttlTicks));
+    }
+
+    /**
+     * Remove the distances of paths that may pass through a changed block.
+     *
+     * <p>A path is affected if the block is within the radius searched from its
+     * spawnpoint, one block past the radius horizontally, the max drop height
+     * below it or the head room of a mob above it.</p>
+     *
+     * @param x  The X coordinates of the changed block.
+     * @param y  The Y coordinates of the changed block.
+     * @param z  The Z coordinates of the changed block.
+     *
+     * @return  The number of distances removed.
+     */
+    public int invalidate(int x, int y, int z) {
+
+        int total = 0;
+
+        Iterator<Key> iterator = _entries.keySet().iterator();
+        while (iterator.hasNext()) {
+
+            Key key = iterator.next();
+            int radius = key.searchRadius;
+            int dy = y - key.spawn.getBlockY();
+
+            if (Math.abs(x - key.spawn.getBlockX()) > radius + PathFlood.SEARCH_MARGIN ||
+                    Math.abs(z - key.spawn.getBlockZ()) > radius + PathFlood.SEARCH_MARGIN ||
+                    dy < -radius - DistanceUtils.MAX_DROP_HEIGHT ||
+                    dy > radius + 3) {
+                continue;
+            }
+
+            iterator.remove();
+            total++;
+        }
+
+        return total;
+    }
+
+    /**
+     * Remove all distances.
+     */
+    public void clear() {
+        _entries.clear();
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public void resetCounters() {
+        _hits = 0;
+        _misses = 0;
+    }
+
+    /*
+     * Identifies a spawn and destination. The spawn is compared by identity
+     * so distances for regenerated spawn groups are never returned.
+     */
+    private static class Key {
+
+        Spawnpoint spawn;
+        int x;
+        int y;
+        int z;
+        int searchRadius;
+
+        Key set(Spawnpoint spawn, int x, int y, int z, int searchRadius) {
+            this.spawn = spawn;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.searchRadius = searchRadius;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(spawn);
+            result = 31 * result + x;
+            result = 31 * result + y;
+            result = 31 * result + z;
+            return 31 * result + searchRadius;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key)obj;
+
+            return other.spawn == spawn && other.x == x && other.y == y && other.z == z &&
+                    other.searchRadius == searchRadius;
+        }
+    }
+
+    private static class Value {
+
+        final int distance;
+        final long expires; // tick
+
+        Value(int distance, long expires) {
+            this.distance = distance;
+            this.expires = expires;
+        }
+    }
+}
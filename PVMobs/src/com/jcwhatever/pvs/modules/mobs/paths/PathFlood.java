@@ -0,0 +1,411 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.Location;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Breadth first flood search over the blocks of a {@link IBlockAccessor},
+ * usually a {@link WorldSnapshot}.
+ *
+ * <p>Positions are identified by the solid block a mob stands on, the same
+ * block returned by {@link com.jcwhatever.nucleus.utils.coords.LocationUtils#findSurfaceBelow}.</p>
+ *
+ * <p>Instances are not thread safe but any number of instances can search the
+ * same blocks concurrently.</p>
+ */
+public class PathFlood {
+
+    /**
+     * The number of blocks past the range of a search that are read. Moves
+     * out of the search volume are checked before they are discarded, so the
+     * blocks being searched must cover the range plus the margin.
+     */
+    public static final int SEARCH_MARGIN = 1;
+
+    private static final int[] DIRECTIONS_X = new int[] { 1, -1, 0, 0 };
+    private static final int[] DIRECTIONS_Z = new int[] { 0, 0, 1, -1 };
+
+    private final IBlockAccessor _blocks;
+    private final int _maxDropHeight;
+
+    /**
+     * Constructor.
+     *
+     * @param blocks         The blocks to search.
+     * @param maxDropHeight  The max height a mob can drop.
+     */
+    public PathFlood(IBlockAccessor blocks, int maxDropHeight) {
+        PreCon.notNull(blocks);
+        PreCon.positiveNumber(maxDropHeight);
+
+        _blocks = blocks;
+        _maxDropHeight = maxDropHeight;
+    }
+
+    /**
+     * Get the blocks being searched.
+     */
+    public IBlockAccessor getBlocks() {
+        return _blocks;
+    }
+
+    /**
+     * Get the max height a mob can drop.
+     */
+    public int getMaxDropHeight() {
+        return _maxDropHeight;
+    }
+
+    /**
+     * Find all surface positions reachable from a location and the
+     * path distance to each.
+     *
+     * @param start            The location to search from.
+     * @param range            The max radius from the start location to search.
+     * @param maxPathDistance  The max distance traveled to get to a position. Cannot
+     *                         be larger than {@link PathVolume#MAX_DISTANCE}.
+     *
+     * @return  A volume containing the path distances to the surface positions that were reached.
+     */
+    public PathVolume search(Location start, int range, int maxPathDistance) {
+        PreCon.notNull(start);
+        PreCon.greaterThanZero(range);
+        PreCon.greaterThanZero(maxPathDistance);
+        PreCon.lessThan(maxPathDistance, PathVolume.MAX_DISTANCE + 1);
+
+        int startX = start.getBlockX();
+        int startZ = start.getBlockZ();
+        int startY = findSurfaceBelow(startX, start.getBlockY(), startZ);
+
+        if (startY == -1)
+            return PathVolume.empty();
+
+        int size = range * 2 + 1;
+        int xOrigin = startX - range;
+        int yOrigin = start.getBlockY() - range;
+        int zOrigin = startZ - range;
+
+        if (startY < yOrigin)
+            return PathVolume.empty();
+
+        return flood(new int[] { startX, startY, startZ }, 1,
+                xOrigin, yOrigin, zOrigin, size, size, size, maxPathDistance, false);
+    }
+
+    /**
+     * Find all surface positions within a bounding box that can reach one of the
+     * specified destinations and the path distance to the closest destination.
+     *
+     * @param destinations     The locations to find paths to.
+     * @param xStart           The smallest X coordinates of the bounding box.
+     * @param yStart           The smallest Y coordinates of the bounding box.
+     * @param zStart           The smallest Z coordinates of the bounding box.
+     * @param xEnd             The largest X coordinates of the bounding box.
+     * @param yEnd             The largest Y coordinates of the bounding box.
+     * @param zEnd             The largest Z coordinates of the bounding box.
+     * @param maxPathDistance  The max distance traveled to get to a destination. Cannot
+     *                         be larger than {@link PathVolume#MAX_DISTANCE}.
+     *
+     * @return  A volume containing the path distances from the surface positions that were reached.
+     */
+    public PathVolume searchTo(Collection<? extends Location> destinations,
+                               int xStart, int yStart, int zStart,
+                               int xEnd, int yEnd, int zEnd, int maxPathDistance) {
+        PreCon.notNull(destinations);
+        PreCon.greaterThanZero(maxPathDistance);
+        PreCon.lessThan(maxPathDistance, PathVolume.MAX_DISTANCE + 1);
+
+        if (xEnd < xStart || yEnd < yStart || zEnd < zStart)
+            return PathVolume.empty();
+
+        int[] sources = new int[destinations.size() * 3];
+        int total = 0;
+
+        for (Location destination : destinations) {
+
+            int x = destination.getBlockX();
+            int z = destination.getBlockZ();
+            int y = findSurfaceBelow(x, destination.getBlockY(), z);
+
+            if (y < yStart || y > yEnd || x < xStart || x > xEnd || z < zStart || z > zEnd)
+                continue;
+
+            sources[total * 3] = x;
+            sources[total * 3 + 1] = y;
+            sources[total * 3 + 2] = z;
+            total++;
+        }
+
+        if (total == 0)
+            return PathVolume.empty();
+
+        return flood(sources, total, xStart, yStart, zStart,
+                xEnd - xStart + 1, yEnd - yStart + 1, zEnd - zStart + 1, maxPathDistance, true);
+    }
+
+    /**
+     * Determine if a mob can stand on the specified block.
+     *
+     * @param x  The block X coordinates.
+     * @param y  The block Y coordinates.
+     * @param z  The block Z coordinates.
+     */
+    public boolean isSurface(int x, int y, int z) {
+        return isSolid(x, y, z) && !isSolid(x, y + 1, z) && !isSolid(x, y + 2, z);
+    }
+
+    /**
+     * Find the Y coordinates of the first surface block below
+     * the specified block, inclusive.
+     *
+     * @param x  The block X coordinates.
+     * @param y  The block Y coordinates.
+     * @param z  The block Z coordinates.
+     *
+     * @return  The surface Y coordinates or -1 if not found.
+     */
+    public int findSurfaceBelow(int x, int y, int z) {
+
+        for (int i = y; i >= 0; i--) {
+            if (isSolid(x, i, z))
+                return isSurface(x, i, z) ? i : -1;
+        }
+
+        return -1;
+    }
+
+    /*
+     * Breadth first search from the source surface positions. If reversed, the
+     * search follows moves backwards so the distances are from each position
+     * to the closest source instead of from the closest source.
+     */
+    private PathVolume flood(int[] sources, int totalSources,
+                             int xOrigin, int yOrigin, int zOrigin,
+                             int xSize, int ySize, int zSize,
+                             int maxPathDistance, boolean isReverse) {
+
+        int volume = xSize * ySize * zSize;
+
+        // distance + 1 of each visited position, 0 if not visited
+        byte[] distances = new byte[volume];
+        int[] queue = new int[Math.min(volume, 4096)];
+        int[] adjacent = new int[_maxDropHeight + 2];
+        int head = 0;
+        int tail = 0;
+
+        // bounds of the visited positions
+        int xMin = xSize;
+        int yMin = ySize;
+        int zMin = zSize;
+        int xMax = 0;
+        int yMax = 0;
+        int zMax = 0;
+
+        for (int i = 0; i < totalSources; i++) {
+
+            int index = getIndex(sources[i * 3] - xOrigin, sources[i * 3 + 1] - yOrigin,
+                    sources[i * 3 + 2] - zOrigin, xSize, zSize);
+
+            if (distances[index] != 0)
+                continue;
+
+            distances[index] = 1;
+
+            if (tail == queue.length)
+                queue = Arrays.copyOf(queue, queue.length * 2);
+
+            queue[tail++] = index;
+        }
+
+        for (int distance = 0; distance <= maxPathDistance && head < tail; distance++) {
+
+            int levelEnd = tail;
+
+            while (head < levelEnd) {
+
+                int index = queue[head++];
+                int lx = index % xSize;
+                int lz = (index / xSize) % zSize;
+                int ly = index / (xSize * zSize);
+
+                xMin = Math.min(xMin, lx);
+                yMin = Math.min(yMin, ly);
+                zMin = Math.min(zMin, lz);
+                xMax = Math.max(xMax, lx);
+                yMax = Math.max(yMax, ly);
+                zMax = Math.max(zMax, lz);
+
+                if (distance == maxPathDistance)
+                    continue;
+
+                int x = lx + xOrigin;
+                int y = ly + yOrigin;
+                int z = lz + zOrigin;
+
+                for (int i = 0; i < DIRECTIONS_X.length; i++) {
+
+                    int nx = x + DIRECTIONS_X[i];
+                    int nz = z + DIRECTIONS_Z[i];
+
+                    int total = isReverse
+                            ? getPreviousSurfaces(x, y, z, nx, nz, adjacent)
+                            : getNextSurfaces(x, y, z, nx, nz, adjacent);
+
+                    for (int j = 0; j < total; j++) {
+
+                        int nlx = nx - xOrigin;
+                        int nly = adjacent[j] - yOrigin;
+                        int nlz = nz - zOrigin;
+
+                        if (nlx < 0 || nly < 0 || nlz < 0 || nlx >= xSize || nly >= ySize || nlz >= zSize)
+                            continue;
+
+                        int neighbor = getIndex(nlx, nly, nlz, xSize, zSize);
+                        if (distances[neighbor] != 0)
+                            continue;
+
+                        distances[neighbor] = (byte) (distance + 2);
+
+                        if (tail == queue.length)
+                            queue = Arrays.copyOf(queue, Math.min(volume, queue.length * 2));
+
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        // crop to the visited positions
+        int xCropped = xMax - xMin + 1;
+        int yCropped = yMax - yMin + 1;
+        int zCropped = zMax - zMin + 1;
+
+        byte[] cropped = new byte[xCropped * yCropped * zCropped];
+
+        for (int y = 0; y < yCropped; y++) {
+            for (int z = 0; z < zCropped; z++) {
+                System.arraycopy(distances, getIndex(xMin, y + yMin, z + zMin, xSize, zSize),
+                        cropped, (y * zCropped + z) * xCropped, xCropped);
+            }
+        }
+
+        return PathVolume.fromDistances(xOrigin + xMin, yOrigin + yMin, zOrigin + zMin,
+                xCropped, yCropped, zCropped, maxPathDistance, cropped);
+    }
+
+    /*
+     * Get the Y coordinates of the surfaces in the adjacent nx, nz column that a
+     * mob standing on the block at x, y, z can move to. Returns the number of
+     * surfaces added to the output array. Also used by ClusterGraph.
+     */
+    int getNextSurfaces(int x, int y, int z, int nx, int nz, int[] output) {
+
+        int ny = getAdjacentSurface(x, y, z, nx, nz);
+        if (ny == -1)
+            return 0;
+
+        output[0] = ny;
+        return 1;
+    }
+
+    /*
+     * Get the Y coordinates of the surfaces in the adjacent nx, nz column that a
+     * mob can move from to get to the block at x, y, z. Returns the number of
+     * surfaces added to the output array. Also used by ClusterGraph.
+     */
+    int getPreviousSurfaces(int x, int y, int z, int nx, int nz, int[] output) {
+
+        int total = 0;
+
+        // same level
+        if (isSurface(nx, y, nz))
+            output[total++] = y;
+
+        // step up from below
+        if (isSurface(nx, y - 1, nz) && !isSolid(nx, y + 2, nz))
+            output[total++] = y - 1;
+
+        // drop down from above, the column must be clear from the
+        // surface to the head room of the mob before dropping.
+        for (int ny = y + 1; ny <= y + _maxDropHeight; ny++) {
+
+            if (isSolid(x, ny + 2, z))
+                break;
+
+            if (isSurface(nx, ny, nz))
+                output[total++] = ny;
+        }
+
+        return total;
+    }
+
+    /*
+     * Get the Y coordinates of the surface a mob standing on the block at
+     * x, y, z can move to in the adjacent nx, nz column. Returns -1 if
+     * the mob cannot move into the column.
+     */
+    private int getAdjacentSurface(int x, int y, int z, int nx, int nz) {
+
+        // same level
+        if (isSurface(nx, y, nz))
+            return y;
+
+        // step up
+        if (isSurface(nx, y + 1, nz))
+            return isSolid(x, y + 3, z) ? -1 : y + 1;
+
+        // drop down
+        if (isSolid(nx, y + 1, nz) || isSolid(nx, y + 2, nz))
+            return -1;
+
+        for (int ny = y; ny >= y - _maxDropHeight && ny >= 0; ny--) {
+            if (isSolid(nx, ny, nz))
+                return isSurface(nx, ny, nz) ? ny : -1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Determine if a block is solid.
+     *
+     * @param x  The block X coordinates.
+     * @param y  The block Y coordinates.
+     * @param z  The block Z coordinates.
+     */
+    public boolean isSolid(int x, int y, int z) {
+        return _blocks.getType(x, y, z).isSolid();
+    }
+
+    private static int getIndex(int x, int y, int z, int xSize, int zSize) {
+        return (y * zSize + z) * xSize + x;
+    }
+}
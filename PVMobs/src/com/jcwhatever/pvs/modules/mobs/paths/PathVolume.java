@@ -0,0 +1,283 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * A volume of path distances to block positions.
+ *
+ * <p>Each block inside the bounding box of the volume is represented by a single
+ * byte containing the path distance to the position plus one. Zero indicates the
+ * position was not reached within the max distance of the volume. The bytes can be
+ * backed by a heap buffer or by a memory mapped file.</p>
+ *
+ * <p>The volume is read only. Lookups do not allocate and are safe to perform
+ * from any thread.</p>
+ */
+public class PathVolume {
+
+    /**
+     * The largest path distance a volume can store.
+     */
+    public static final int MAX_DISTANCE = 254;
+
+    /**
+     * The number of bytes used to store the bounding box and max distance of a volume.
+     */
+    public static final int HEADER_SIZE = 7 * 4;
+
+    private static final PathVolume EMPTY = new PathVolume(0, 0, 0, 0, 0, 0, MAX_DISTANCE, ByteBuffer.allocate(0), 0, null);
+
+    private final int _xOrigin;
+    private final int _yOrigin;
+    private final int _zOrigin;
+    private final int _xSize;
+    private final int _ySize;
+    private final int _zSize;
+    private final int _maxDistance;
+    private final ByteBuffer _distances;
+    private final int _offset;
+
+    // the volume a translated view was created from, kept reachable
+    // for as long as the view is in use.
+    private final PathVolume _source;
+
+    /**
+     * Get an empty volume.
+     */
+    public static PathVolume empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a new volume from an array of distances. The array is not copied.
+     *
+     * <p>The index of the distance for a position is {@code (y * zSize + z) * xSize + x}
+     * where the coordinates are relative to the origin. Each value is the path distance
+     * plus one or zero if the position was not reached.</p>
+     *
+     * @param xOrigin      The X coordinates of the volume origin.
+     * @param yOrigin      The Y coordinates of the volume origin.
+     * @param zOrigin      The Z coordinates of the volume origin.
+     * @param xSize        The X size of the volume.
+     * @param ySize        The Y size of the volume.
+     * @param zSize        The Z size of the volume.
+     * @param maxDistance  The max distance searched to create the volume.
+     * @param distances    The distances.
+     */
+    public static PathVolume fromDistances(int xOrigin, int yOrigin, int zOrigin,
+                                           int xSize, int ySize, int zSize,
+                                           int maxDistance, byte[] distances) {
+        PreCon.positiveNumber(xSize);
+        PreCon.positiveNumber(ySize);
+        PreCon.positiveNumber(zSize);
+        PreCon.positiveNumber(maxDistance);
+        PreCon.lessThan(maxDistance, MAX_DISTANCE + 1);
+        PreCon.notNull(distances);
+        PreCon.isValid(distances.length >= getByteSize(xSize, ySize, zSize), "Not enough distances for volume size.");
+
+        return new PathVolume(xOrigin, yOrigin, zOrigin, xSize, ySize, zSize,
+                maxDistance, ByteBuffer.wrap(distances), 0, null);
+    }
+
+    /**
+     * Read a volume from a buffer written by {@link #write}. The distances are not
+     * copied, the returned volume is a view of the buffer.
+     *
+     * @param buffer  The buffer to read from.
+     * @param offset  The index of the volume header in the buffer.
+     *
+     * @throws IOException if the buffer is too small to contain the volume.
+     */
+    public static PathVolume read(ByteBuffer buffer, int offset) throws IOException {
+        PreCon.notNull(buffer);
+        PreCon.positiveNumber(offset);
+
+        if (buffer.limit() - offset < HEADER_SIZE)
+            throw new IOException("Path volume header is truncated.");
+
+        int xOrigin = buffer.getInt(offset);
+        int yOrigin = buffer.getInt(offset + 4);
+        int zOrigin = buffer.getInt(offset + 8);
+        int xSize = buffer.getInt(offset + 12);
+        int ySize = buffer.getInt(offset + 16);
+        int zSize = buffer.getInt(offset + 20);
+        int maxDistance = buffer.getInt(offset + 24);
+
+        if (xSize < 0 || ySize < 0 || zSize < 0)
+            throw new IOException("Path volume has an invalid size.");
+
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE)
+            throw new IOException("Path volume has an invalid max distance.");
+
+        int dataOffset = offset + HEADER_SIZE;
+
+        if (buffer.limit() - dataOffset < getByteSize(xSize, ySize, zSize))
+            throw new IOException("Path volume data is truncated.");
+
+        return new PathVolume(xOrigin, yOrigin, zOrigin, xSize, ySize, zSize,
+                maxDistance, buffer, dataOffset, null);
+    }
+
+    /*
+     * Private constructor.
+     */
+    private PathVolume(int xOrigin, int yOrigin, int zOrigin,
+                       int xSize, int ySize, int zSize,
+                       int maxDistance, ByteBuffer distances, int offset,
+                       @Nullable PathVolume source) {
+        _xOrigin = xOrigin;
+        _yOrigin = yOrigin;
+        _zOrigin = zOrigin;
+        _xSize = xSize;
+        _ySize = ySize;
+        _zSize = zSize;
+        _maxDistance = maxDistance;
+        _distances = distances;
+        _offset = offset;
+        _source = source;
+    }
+
+    /**
+     * Get the max path distance searched to create the volume.
+     *
+     * <p>Positions further than the max distance are not in the volume
+     * even if they can be reached.</p>
+     */
+    public int getMaxDistance() {
+        return _maxDistance;
+    }
+
+    /**
+     * Get the path distance to a block position.
+     *
+     * @param x  The block X coordinates.
+     * @param y  The block Y coordinates.
+     * @param z  The block Z coordinates.
+     *
+     * @return  The distance or -1 if the position was not reached.
+     */
+    public int getDistance(int x, int y, int z) {
+
+        int lx = x - _xOrigin;
+        int ly = y - _yOrigin;
+        int lz = z - _zOrigin;
+
+        if (lx < 0 || ly < 0 || lz < 0 || lx >= _xSize || ly >= _ySize || lz >= _zSize)
+            return -1;
+
+        int index = getIndex(lx, ly, lz, _xSize, _zSize);
+
+        // absolute get does not modify the buffer and is safe for concurrent reads
+        return (_distances.get(_offset + index) & 0xFF) - 1;
+    }
+
+    /**
+     * Determine if the volume contains a block position.
+     *
+     * @param x  The block X coordinates.
+     * @param y  The block Y coordinates.
+     * @param z  The block Z coordinates.
+     */
+    public boolean contains(int x, int y, int z) {
+        return getDistance(x, y, z) != -1;
+    }
+
+    /**
+     * Determine if the volume contains a block position that is
+     * within the specified path distance.
+     *
+     * @param x            The block X coordinates.
+     * @param y            The block Y coordinates.
+     * @param z            The block Z coordinates.
+     * @param maxDistance  The max path distance.
+     */
+    public boolean contains(int x, int y, int z, int maxDistance) {
+        int distance = getDistance(x, y, z);
+        return distance != -1 && distance <= maxDistance;
+    }
+
+    /**
+     * Get a view of the volume moved by the specified offset. The
+     * distances are not copied.
+     *
+     * @param x  The X offset.
+     * @param y  The Y offset.
+     * @param z  The Z offset.
+     */
+    public PathVolume translate(int x, int y, int z) {
+
+        if (this == EMPTY)
+            return EMPTY;
+
+        return new PathVolume(_xOrigin + x, _yOrigin + y, _zOrigin + z, _xSize, _ySize, _zSize,
+                _maxDistance, _distances, _offset, this);
+    }
+
+    /**
+     * Get the number of bytes used to store the volume distances.
+     */
+    public int getByteSize() {
+        return getByteSize(_xSize, _ySize, _zSize);
+    }
+
+    /**
+     * Write the volume header and distances.
+     *
+     * @param output  The output to write to.
+     *
+     * @throws IOException
+     */
+    public void write(DataOutput output) throws IOException {
+        PreCon.notNull(output);
+
+        output.writeInt(_xOrigin);
+        output.writeInt(_yOrigin);
+        output.writeInt(_zOrigin);
+        output.writeInt(_xSize);
+        output.writeInt(_ySize);
+        output.writeInt(_zSize);
+        output.writeInt(_maxDistance);
+
+        int size = getByteSize();
+        for (int i=0; i < size; i++) {
+            output.writeByte(_distances.get(_offset + i));
+        }
+    }
+
+    private static int getIndex(int x, int y, int z, int xSize, int zSize) {
+        return (y * zSize + z) * xSize + x;
+    }
+
+    private static int getByteSize(int xSize, int ySize, int zSize) {
+        return (int)((long)xSize * ySize * zSize);
+    }
+}
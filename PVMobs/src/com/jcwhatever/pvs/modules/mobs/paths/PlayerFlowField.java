@@ -0,0 +1,266 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.managed.scheduler.TaskHandler;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.ThreadSingletons;
+import com.jcwhatever.nucleus.utils.coords.LocationUtils;
+import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.api.arena.IArenaPlayer;
+import com.jcwhatever.pvs.api.utils.ArenaScheduler;
+import com.jcwhatever.pvs.modules.mobs.MobsModule;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A distance field of the path distance from surface positions in an arena
+ * to the closest player.
+ *
+ * <p>The field is refreshed periodically by a single multi source search from all
+ * player positions. Chunk snapshots around the players are captured on the main
+ * thread and the search is run on a worker thread, the previous field remains in
+ * use until the search finishes.</p>
+ *
+ * <p>Once the field is ready, checking the distance of a mob to the closest player
+ * is a single lookup regardless of the number of mobs.</p>
+ */
+public class PlayerFlowField {
+
+    private static final ThreadSingletons<Location> PLAYER_LOCATIONS = LocationUtils.createThreadSingleton();
+    private static final ThreadSingletons<Location> SURFACE_LOCATIONS = LocationUtils.createThreadSingleton();
+
+    private final IArena _arena;
+
+    private IScheduledTask _refreshTask;
+    private int _maxPathDistance = 1;
+    private volatile PathVolume _field;
+    private volatile boolean _isSearching;
+
+    // incremented when stopped so results of searches already running are discarded
+    private volatile int _generation;
+
+    /**
+     * Constructor.
+     *
+     * @param arena  The arena.
+     */
+    public PlayerFlowField(IArena arena) {
+        PreCon.notNull(arena);
+
+        _arena = arena;
+    }
+
+    /**
+     * Determine if the field is refreshing periodically.
+     */
+    public boolean isRunning() {
+        return _refreshTask != null && !_refreshTask.isCancelled();
+    }
+
+    /**
+     * Determine if the field is ready to be used.
+     */
+    public boolean isReady() {
+        return _field != null;
+    }
+
+    /**
+     * Get the max path distance searched from players.
+     */
+    public int getMaxPathDistance() {
+        return _maxPathDistance;
+    }
+
+    /**
+     * Set the max path distance searched from players. Takes effect
+     * the next time the field is refreshed.
+     *
+     * @param maxPathDistance  The max path distance. Cannot be larger
+     *                         than {@link PathVolume#MAX_DISTANCE}.
+     */
+    public void setMaxPathDistance(int maxPathDistance) {
+        PreCon.greaterThanZero(maxPathDistance);
+        PreCon.lessThan(maxPathDistance, PathVolume.MAX_DISTANCE + 1);
+
+        _maxPathDistance = maxPathDistance;
+    }
+
+    /**
+     * Start refreshing the field periodically.
+     *
+     * @param intervalTicks  The interval in ticks between refreshes.
+     */
+    public void start(int intervalTicks) {
+        PreCon.greaterThanZero(intervalTicks);
+
+        stop();
+
+        _refreshTask = ArenaScheduler.runTaskRepeat(_arena, 1, intervalTicks, new RefreshTask());
+    }
+
+    /**
+     * Stop refreshing the field and discard the current field.
+     */
+    public void stop() {
+
+        if (_refreshTask != null) {
+            _refreshTask.cancel();
+            _refreshTask = null;
+        }
+
+        _field = null;
+        _generation++;
+    }
+
+    /**
+     * Get the path distance from a location to the closest player.
+     *
+     * <p>Reads blocks from the world to find the surface below the location
+     * and must be invoked from the main thread.</p>
+     *
+     * @param location  The location to check.
+     *
+     * @return  The path distance or -1 if the field is not ready or a player
+     * cannot be reached within the max path distance.
+     */
+    public int getPathDistance(Location location) {
+        PreCon.notNull(location);
+
+        PathVolume field = _field;
+        if (field == null)
+            return -1;
+
+        Location surface = LocationUtils.findSurfaceBelow(location, SURFACE_LOCATIONS.get());
+        if (surface == null)
+            return -1;
+
+        return field.getDistance(surface.getBlockX(), surface.getBlockY(), surface.getBlockZ());
+    }
+
+    /*
+     * Capture the players and the chunks around them, then search on
+     * the worker thread.
+     */
+    private void refresh() {
+
+        // the previous search is still running
+        if (_isSearching)
+            return;
+
+        World world = _arena.getRegion().getWorld();
+        if (world == null)
+            return;
+
+        int maxPathDistance = _maxPathDistance;
+        List<Location> players = new ArrayList<>(_arena.getGame().getPlayers().size());
+
+        int xMin = Integer.MAX_VALUE;
+        int yMin = Integer.MAX_VALUE;
+        int zMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE;
+        int yMax = Integer.MIN_VALUE;
+        int zMax = Integer.MIN_VALUE;
+
+        for (IArenaPlayer player : _arena.getGame().getPlayers()) {
+
+            Location location = player.getLocation(PLAYER_LOCATIONS.get());
+            if (!world.equals(location.getWorld()) || !_arena.getRegion().contains(location))
+                continue;
+
+            players.add(location.clone());
+
+            xMin = Math.min(xMin, location.getBlockX());
+            yMin = Math.min(yMin, location.getBlockY());
+            zMin = Math.min(zMin, location.getBlockZ());
+            xMax = Math.max(xMax, location.getBlockX());
+            yMax = Math.max(yMax, location.getBlockY());
+            zMax = Math.max(zMax, location.getBlockZ());
+        }
+
+        if (players.isEmpty()) {
+            _field = PathVolume.empty();
+            return;
+        }
+
+        // positions further than the max path distance from every player
+        // cannot be reached, limit the search to the arena region.
+        final int xStart = Math.max(_arena.getRegion().getXStart(), xMin - maxPathDistance);
+        final int yStart = Math.max(_arena.getRegion().getYStart(), yMin - maxPathDistance);
+        final int zStart = Math.max(_arena.getRegion().getZStart(), zMin - maxPathDistance);
+        final int xEnd = Math.min(_arena.getRegion().getXEnd(), xMax + maxPathDistance);
+        final int yEnd = Math.min(_arena.getRegion().getYEnd(), yMax + maxPathDistance);
+        final int zEnd = Math.min(_arena.getRegion().getZEnd(), zMax + maxPathDistance);
+
+        // chunk snapshots must be taken on the main thread
+        final WorldSnapshot snapshot = new WorldSnapshot(world, players, maxPathDistance + PathFlood.SEARCH_MARGIN);
+        final List<Location> destinations = players;
+        final int distance = maxPathDistance;
+        final int generation = _generation;
+
+        _isSearching = true;
+
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PathFlood flood = new PathFlood(snapshot, DistanceUtils.MAX_DROP_HEIGHT);
+
+                    PathVolume field = flood.searchTo(destinations,
+                            xStart, yStart, zStart, xEnd, yEnd, zEnd, distance);
+
+                    // discard the result if stopped while searching
+                    if (generation == _generation)
+                        _field = field;
+                }
+                finally {
+                    _isSearching = false;
+                }
+            }
+        });
+    }
+
+    /*
+     * Periodically refreshes the field.
+     */
+    private class RefreshTask extends TaskHandler {
+
+        @Override
+        public void run() {
+
+            if (!_arena.getGame().isRunning()) {
+                stop();
+                return;
+            }
+
+            refresh();
+        }
+    }
+}
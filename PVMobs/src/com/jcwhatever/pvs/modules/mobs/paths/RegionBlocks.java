@@ -0,0 +1,146 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.Material;
+
+import java.util.BitSet;
+
+/**
+ * A compact copy of which blocks in a box are solid.
+ *
+ * <p>Only solidity is kept, one bit per block, so a large region can be held
+ * for as long as it is needed without keeping chunk snapshots. Solid blocks
+ * are returned as stone and all other blocks, including blocks outside of
+ * the box, as air. Instances are immutable and can be read from any thread,
+ * changed blocks are applied to a copy.</p>
+ */
+public final class RegionBlocks implements IBlockAccessor {
+
+    private final int _xStart;
+    private final int _yStart;
+    private final int _zStart;
+    private final int _xSize;
+    private final int _ySize;
+    private final int _zSize;
+    private final BitSet _solid;
+
+    /**
+     * Constructor.
+     *
+     * @param blocks  The blocks to copy.
+     * @param xStart  The smallest X coordinates of the box.
+     * @param yStart  The smallest Y coordinates of the box.
+     * @param zStart  The smallest Z coordinates of the box.
+     * @param xEnd    The largest X coordinates of the box.
+     * @param yEnd    The largest Y coordinates of the box.
+     * @param zEnd    The largest Z coordinates of the box.
+     */
+    public RegionBlocks(IBlockAccessor blocks,
+                        int xStart, int yStart, int zStart,
+                        int xEnd, int yEnd, int zEnd) {
+        PreCon.notNull(blocks);
+        PreCon.isValid(xEnd >= xStart && yEnd >= yStart && zEnd >= zStart, "Invalid bounds.");
+
+        _xStart = xStart;
+        _yStart = yStart;
+        _zStart = zStart;
+        _xSize = xEnd - xStart + 1;
+        _ySize = yEnd - yStart + 1;
+        _zSize = zEnd - zStart + 1;
+        _solid = new BitSet(_xSize * _ySize * _zSize);
+
+        read(blocks, 0, 0, _xSize - 1, _zSize - 1);
+    }
+
+    private RegionBlocks(RegionBlocks source) {
+        _xStart = source._xStart;
+        _yStart = source._yStart;
+        _zStart = source._zStart;
+        _xSize = source._xSize;
+        _ySize = source._ySize;
+        _zSize = source._zSize;
+        _solid = (BitSet)source._solid.clone();
+    }
+
+    /**
+     * Create a copy with the blocks of the specified chunks read again.
+     *
+     * @param blocks  The blocks to read.
+     * @param chunks  The X and Z coordinates of each chunk to read, in pairs.
+     */
+    public RegionBlocks update(IBlockAccessor blocks, int[] chunks) {
+        PreCon.notNull(blocks);
+        PreCon.notNull(chunks);
+
+        RegionBlocks result = new RegionBlocks(this);
+
+        for (int i = 0; i < chunks.length; i += 2) {
+
+            int xFrom = Math.max(0, (chunks[i] << 4) - _xStart);
+            int zFrom = Math.max(0, (chunks[i + 1] << 4) - _zStart);
+            int xTo = Math.min(_xSize - 1, (chunks[i] << 4) + 15 - _xStart);
+            int zTo = Math.min(_zSize - 1, (chunks[i + 1] << 4) + 15 - _zStart);
+
+            result.read(blocks, xFrom, zFrom, xTo, zTo);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Material getType(int x, int y, int z) {
+
+        x -= _xStart;
+        y -= _yStart;
+        z -= _zStart;
+
+        if (x < 0 || y < 0 || z < 0 || x >= _xSize || y >= _ySize || z >= _zSize)
+            return Material.AIR;
+
+        return _solid.get(getIndex(x, y, z)) ? Material.STONE : Material.AIR;
+    }
+
+    /*
+     * Read the solidity of the columns in a box relative to the start.
+     */
+    private void read(IBlockAccessor blocks, int xFrom, int zFrom, int xTo, int zTo) {
+
+        for (int y = 0; y < _ySize; y++) {
+            for (int z = zFrom; z <= zTo; z++) {
+                for (int x = xFrom; x <= xTo; x++) {
+
+                    _solid.set(getIndex(x, y, z),
+                            blocks.getType(x + _xStart, y + _yStart, z + _zStart).isSolid());
+                }
+            }
+        }
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return (y * _zSize + z) * _xSize + x;
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.PVStarAPI;
+import org.bukkit.Location;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Stores cached paths by the contents of their search volume so arenas
+ * with identical geometry around a spawn share a single cache.
+ *
+ * <p>The key of a cache is a hash of the blocks a path search can read,
+ * relative to the spawn, and the search settings. Cached volumes are stored
+ * relative to the spawn and moved to the spawn location when loaded. Loaded
+ * volumes are shared in memory for as long as an entry uses them.</p>
+ *
+ * <p>Each arena stores the keys it uses in the cached path files of its
+ * {@link PathCacheEntry#CACHE_FOLDER_NAME} folder. Stored paths whose key is not
+ * in the cached path folder of any arena on disk and that are not loaded in
+ * memory can be deleted.</p>
+ *
+ * <p>Methods are thread safe.</p>
+ */
+public class SharedPathCache {
+
+    /**
+     * The name of the plugin data folder that contains shared path files.
+     * Each file is named after its key with the extension ".bin".
+     */
+    public static final String FOLDER_NAME = "shared-path-cache";
+
+    /**
+     * The size of the shared path file header. The header contains the
+     * version and flags as ints and is followed by a {@link PathVolume}
+     * with coordinates relative to the spawn.
+     */
+    public static final int FILE_HEADER_SIZE = 2 * 4;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static SharedPathCache _instance;
+
+    private final File _folder;
+    private final Map<String, WeakReference<PathVolume>> _loaded = new HashMap<>(50);
+
+    /**
+     * Get the shared cache in the PV-Star data folder.
+     */
+    public static synchronized SharedPathCache get() {
+        if (_instance == null)
+            _instance = new SharedPathCache(new File(PVStarAPI.getPlugin().getDataFolder(), FOLDER_NAME));
+
+        return _instance;
+    }
+
+    /**
+     * Get the key of the paths searched from a spawn.
+     *
+     * <p>Reads the blocks of the search volume from the flood snapshot and
+     * should be invoked from a worker thread. The snapshot must cover the
+     * search radius plus {@link PathFlood#SEARCH_MARGIN} around the spawn,
+     * otherwise blocks past the captured chunks are hashed as air and spawns
+     * with the same geometry at different chunk offsets get different keys.</p>
+     *
+     * @param flood            The flood the paths are searched with.
+     * @param spawn            The spawn location.
+     * @param searchRadius     The max radius of valid destinations around the spawn.
+     * @param maxPathDistance  The max path distance stored in the cache.
+     */
+    public static String getKey(PathFlood flood, Location spawn, int searchRadius, int maxPathDistance) {
+        PreCon.notNull(flood);
+        PreCon.notNull(spawn);
+        PreCon.greaterThanZero(searchRadius);
+        PreCon.greaterThanZero(maxPathDistance);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        int x = spawn.getBlockX();
+        int y = spawn.getBlockY();
+        int z = spawn.getBlockZ();
+        int surfaceY = flood.findSurfaceBelow(x, y, z);
+
+        ByteBuffer header = ByteBuffer.allocate(5 * 4);
+        header.putInt(PathCacheEntry.CACHE_FILE_VERSION);
+        header.putInt(searchRadius);
+        header.putInt(maxPathDistance);
+        header.putInt(flood.getMaxDropHeight());
+        header.putInt(surfaceY == -1 ? Integer.MIN_VALUE : surfaceY - y);
+        digest.update(header.array());
+
+        // the search reads the margin past the radius, drops below
+        // the radius and checks head room above it.
+        int xStart = x - searchRadius - PathFlood.SEARCH_MARGIN;
+        int xEnd = x + searchRadius + PathFlood.SEARCH_MARGIN;
+        int yStart = y - searchRadius - flood.getMaxDropHeight();
+        int yEnd = y + searchRadius + 3;
+        int zStart = z - searchRadius - PathFlood.SEARCH_MARGIN;
+        int zEnd = z + searchRadius + PathFlood.SEARCH_MARGIN;
+
+        // only solid blocks affect the search, one bit per block
+        byte[] row = new byte[((xEnd - xStart + 1) + 7) / 8];
+
+        for (int by = yStart; by <= yEnd; by++) {
+            for (int bz = zStart; bz <= zEnd; bz++) {
+
+                for (int i = 0; i < row.length; i++)
+                    row[i] = 0;
+
+                for (int bx = xStart; bx <= xEnd; bx++) {
+                    if (flood.isSolid(bx, by, bz)) {
+                        int bit = bx - xStart;
+                        row[bit >> 3] |= 1 << (bit & 7);
+                    }
+                }
+
+                digest.update(row);
+            }
+        }
+
+        byte[] hash = digest.digest();
+        char[] chars = new char[hash.length * 2];
+
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param folder  The folder the shared path files are stored in.
+     */
+    public SharedPathCache(File folder) {
+        PreCon.notNull(folder);
+
+        _folder = folder;
+    }
+
+    /**
+     * Get the folder the shared path files are stored in.
+     */
+    public File getFolder() {
+        return _folder;
+    }
+
+    /**
+     * Delete stored paths that are not referenced by a cached path file of
+     * any arena.
+     *
+     * <p>Cached path folders are found by scanning the folder that contains the
+     * shared folder, so arenas whose mob extension is not loaded still keep their
+     * paths. Nothing is deleted if a folder cannot be read. Paths that are loaded
+     * in memory are kept since entries that are being generated use their paths
+     * before the key is saved.</p>
+     *
+     * <p>Reads and deletes files and should be invoked from a worker thread.</p>
+     *
+     * @return  The number of deleted files.
+     */
+    public int deleteUnreferenced() {
+
+        File dataFolder = _folder.getParentFile();
+        if (dataFolder == null)
+            return 0;
+
+        List<File> folders = new ArrayList<>(20);
+        if (!findCacheFolders(dataFolder, folders))
+            return 0;
+
+        Set<String> referenced = new HashSet<>(50);
+
+        for (File folder : folders) {
+
+            File[] files = folder.listFiles();
+            if (files == null)
+                return 0;
+
+            for (File file : files) {
+
+                if (!file.getName().endsWith(".bin"))
+                    continue;
+
+                String key = PathCacheEntry.readCacheKey(file);
+                if (key != null)
+                    referenced.add(key);
+            }
+        }
+
+        File[] files = _folder.listFiles();
+        if (files == null)
+            return 0;
+
+        int deleted = 0;
+
+        for (File file : files) {
+
+            String name = file.getName();
+            if (!name.endsWith(".bin"))
+                continue;
+
+            String key = name.substring(0, name.length() - 4);
+
+            // locked so paths saved while sweeping are not deleted
+            synchronized (_loaded) {
+
+                if (referenced.contains(key) || getLoaded(key) != null)
+                    continue;
+
+                if (file.delete())
+                    deleted++;
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Determine if paths are stored for a key.
+     *
+     * @param key  The key of the paths.
+     */
+    public boolean contains(String key) {
+        PreCon.notNullOrEmpty(key);
+
+        return getLoaded(key) != null || getFile(key).exists();
+    }
+
+    /**
+     * Load the paths stored for a key. The file is memory mapped and
+     * shared with other entries that load the same key.
+     *
+     * @param key  The key of the paths.
+     * @param x    The X coordinates of the spawn to move the paths to.
+     * @param y    The Y coordinates of the spawn to move the paths to.
+     * @param z    The Z coordinates of the spawn to move the paths to.
+     *
+     * @return  The paths or null if no valid paths are stored for the key.
+     *
+     * @throws IOException
+     */
+    @Nullable
+    public PathVolume load(String key, int x, int y, int z) throws IOException {
+        PreCon.notNullOrEmpty(key);
+
+        PathVolume paths = getLoaded(key);
+        if (paths != null)
+            return paths.translate(x, y, z);
+
+        File file = getFile(key);
+        if (!file.exists())
+            return null;
+
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            if (channel.size() < FILE_HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                return null;
+
+            // the mapping remains valid after the channel is closed
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != PathCacheEntry.CACHE_FILE_VERSION)
+            return null;
+
+        paths = PathVolume.read(buffer, FILE_HEADER_SIZE);
+
+        synchronized (_loaded) {
+            _loaded.put(key, new WeakReference<>(paths));
+        }
+
+        return paths.translate(x, y, z);
+    }
+
+    /**
+     * Store paths searched from a spawn. Existing paths for the key
+     * are replaced.
+     *
+     * <p>The returned paths should be used instead of the saved paths so
+     * the stored paths are shared with entries that load the same key.</p>
+     *
+     * @param key    The key of the paths.
+     * @param paths  The paths.
+     * @param x      The X coordinates of the spawn the paths were searched from.
+     * @param y      The Y coordinates of the spawn the paths were searched from.
+     * @param z      The Z coordinates of the spawn the paths were searched from.
+     *
+     * @return  A view of the stored paths at the spawn location.
+     *
+     * @throws IOException
+     */
+    public PathVolume save(String key, PathVolume paths, int x, int y, int z) throws IOException {
+        PreCon.notNullOrEmpty(key);
+        PreCon.notNull(paths);
+
+        PathVolume relative = paths.translate(-x, -y, -z);
+
+        if (!_folder.exists() && !_folder.mkdirs())
+            throw new IOException("Failed to create shared path cache folder: " + _folder);
+
+        File file = getFile(key);
+
+        // written to a temporary file first so other threads and arenas
+        // never map a partially written file.
+        File temp = File.createTempFile(key, ".tmp", _folder);
+
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+
+                output.writeInt(PathCacheEntry.CACHE_FILE_VERSION);
+                output.writeInt(0); // flags, reserved
+
+                relative.write(output);
+            }
+
+            // the file is never unreferenced and unloaded at the same time
+            synchronized (_loaded) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                _loaded.put(key, new WeakReference<>(relative));
+            }
+        } finally {
+            if (temp.exists() && !temp.delete())
+                temp.deleteOnExit();
+        }
+
+        return relative.translate(x, y, z);
+    }
+
+    /*
+     * Get paths that are already loaded for a key.
+     */
+    @Nullable
+    private PathVolume getLoaded(String key) {
+        synchronized (_loaded) {
+
+            WeakReference<PathVolume> reference = _loaded.get(key);
+            if (reference == null)
+                return null;
+
+            PathVolume paths = reference.get();
+            if (paths == null)
+                _loaded.remove(key);
+
+            return paths;
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(_folder, key + ".bin");
+    }
+
+    /*
+     * Add the cached path folders in a folder and its sub folders to the
+     * output list. Returns false if a folder cannot be read.
+     */
+    private boolean findCacheFolders(File folder, List<File> output) {
+
+        File[] files = folder.listFiles();
+        if (files == null)
+            return false;
+
+        for (File file : files) {
+
+            if (!file.isDirectory() || file.equals(_folder))
+                continue;
+
+            if (file.getName().equals(PathCacheEntry.CACHE_FOLDER_NAME)) {
+                output.add(file);
+            }
+            else if (!findCacheFolders(file, output)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
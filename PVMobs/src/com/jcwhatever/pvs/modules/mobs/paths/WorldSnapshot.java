@@ -0,0 +1,222 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.jcwhatever.pvs.modules.mobs.paths;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.util.Collection;
+
+/**
+ * An immutable capture of the chunks surrounding a set of locations.
+ *
+ * <p>The snapshot must be created on the main thread. Once created it can be
+ * read from any thread.</p>
+ */
+public final class WorldSnapshot implements IBlockAccessor {
+
+    private final String _worldName;
+    private final int _maxHeight;
+
+    // captured chunks indexed by chunk offset from the smallest chunk
+    private final ChunkSnapshot[] _chunks;
+    private final int _chunkXStart;
+    private final int _chunkZStart;
+    private final int _width;
+    private final int _depth;
+    private int _chunkCount;
+
+    /**
+     * Constructor.
+     *
+     * @param world    The world to capture.
+     * @param centers  The locations to capture chunks around.
+     * @param radius   The block radius around each location to capture.
+     */
+    public WorldSnapshot(World world, Collection<? extends Location> centers, int radius) {
+        PreCon.notNull(world);
+        PreCon.notNull(centers);
+        PreCon.positiveNumber(radius);
+
+        _worldName = world.getName();
+        _maxHeight = world.getMaxHeight();
+
+        int xMin = Integer.MAX_VALUE;
+        int zMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE;
+        int zMax = Integer.MIN_VALUE;
+
+        for (Location center : centers) {
+            xMin = Math.min(xMin, (center.getBlockX() - radius) >> 4);
+            zMin = Math.min(zMin, (center.getBlockZ() - radius) >> 4);
+            xMax = Math.max(xMax, (center.getBlockX() + radius) >> 4);
+            zMax = Math.max(zMax, (center.getBlockZ() + radius) >> 4);
+        }
+
+        _chunkXStart = xMin;
+        _chunkZStart = zMin;
+        _width = centers.isEmpty() ? 0 : xMax - xMin + 1;
+        _depth = centers.isEmpty() ? 0 : zMax - zMin + 1;
+        _chunks = new ChunkSnapshot[_width * _depth];
+
+        for (Location center : centers) {
+
+            int xStart = (center.getBlockX() - radius) >> 4;
+            int zStart = (center.getBlockZ() - radius) >> 4;
+            int xEnd = (center.getBlockX() + radius) >> 4;
+            int zEnd = (center.getBlockZ() + radius) >> 4;
+
+            for (int x = xStart; x <= xEnd; x++) {
+                for (int z = zStart; z <= zEnd; z++) {
+                    capture(world, x, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param world   The world to capture.
+     * @param xStart  The smallest X coordinates of the blocks to capture.
+     * @param zStart  The smallest Z coordinates of the blocks to capture.
+     * @param xEnd    The largest X coordinates of the blocks to capture.
+     * @param zEnd    The largest Z coordinates of the blocks to capture.
+     */
+    public WorldSnapshot(World world, int xStart, int zStart, int xEnd, int zEnd) {
+        PreCon.notNull(world);
+
+        _worldName = world.getName();
+        _maxHeight = world.getMaxHeight();
+        _chunkXStart = xStart >> 4;
+        _chunkZStart = zStart >> 4;
+        _width = Math.max(0, (xEnd >> 4) - _chunkXStart + 1);
+        _depth = Math.max(0, (zEnd >> 4) - _chunkZStart + 1);
+        _chunks = new ChunkSnapshot[_width * _depth];
+
+        for (int x = xStart >> 4; x <= xEnd >> 4; x++) {
+            for (int z = zStart >> 4; z <= zEnd >> 4; z++) {
+                capture(world, x, z);
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param world   The world to capture.
+     * @param chunks  The X and Z coordinates of each chunk to capture, in pairs.
+     */
+    public WorldSnapshot(World world, int[] chunks) {
+        PreCon.notNull(world);
+        PreCon.notNull(chunks);
+
+        _worldName = world.getName();
+        _maxHeight = world.getMaxHeight();
+
+        int xMin = Integer.MAX_VALUE;
+        int zMin = Integer.MAX_VALUE;
+        int xMax = Integer.MIN_VALUE;
+        int zMax = Integer.MIN_VALUE;
+
+        for (int i = 0; i < chunks.length - 1; i += 2) {
+            xMin = Math.min(xMin, chunks[i]);
+            zMin = Math.min(zMin, chunks[i + 1]);
+            xMax = Math.max(xMax, chunks[i]);
+            zMax = Math.max(zMax, chunks[i + 1]);
+        }
+
+        _chunkXStart = xMin;
+        _chunkZStart = zMin;
+        _width = chunks.length < 2 ? 0 : xMax - xMin + 1;
+        _depth = chunks.length < 2 ? 0 : zMax - zMin + 1;
+        _chunks = new ChunkSnapshot[_width * _depth];
+
+        for (int i = 0; i < chunks.length - 1; i += 2) {
+            capture(world, chunks[i], chunks[i + 1]);
+        }
+    }
+
+    /**
+     * Get the name of the captured world.
+     */
+    public String getWorldName() {
+        return _worldName;
+    }
+
+    /**
+     * Get the number of captured chunks.
+     */
+    public int getChunkCount() {
+        return _chunkCount;
+    }
+
+    /**
+     * Get the material of a block in the snapshot. Blocks outside of
+     * the captured chunks are returned as air.
+     *
+     * @param x  The block X coordinates.
+     * @param y  The block Y coordinates.
+     * @param z  The block Z coordinates.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public Material getType(int x, int y, int z) {
+
+        if (y < 0 || y >= _maxHeight)
+            return Material.AIR;
+
+        int chunkX = (x >> 4) - _chunkXStart;
+        int chunkZ = (z >> 4) - _chunkZStart;
+
+        if (chunkX < 0 || chunkX >= _width || chunkZ < 0 || chunkZ >= _depth)
+            return Material.AIR;
+
+        ChunkSnapshot chunk = _chunks[chunkX * _depth + chunkZ];
+        if (chunk == null)
+            return Material.AIR;
+
+        Material material = Material.getMaterial(chunk.getBlockTypeId(x & 0xF, y, z & 0xF));
+        return material != null ? material : Material.AIR;
+    }
+
+    /*
+     * Capture a chunk if it has not been captured already. The chunk
+     * must be within the snapshot bounds.
+     */
+    private void capture(World world, int chunkX, int chunkZ) {
+
+        int index = (chunkX - _chunkXStart) * _depth + (chunkZ - _chunkZStart);
+        if (_chunks[index] != null)
+            return;
+
+        _chunks[index] = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot();
+        _chunkCount++;
+    }
+}
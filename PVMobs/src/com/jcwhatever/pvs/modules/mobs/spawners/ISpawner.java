@@ -30,6 +30,10 @@ import com.jcwhatever.pvs.api.arena.IArena;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.modules.mobs.DespawnMethod;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+import com.jcwhatever.pvs.modules.mobs.utils.ChunkMobCounter;
+import com.jcwhatever.pvs.modules.mobs.utils.PlayerGrid;
+import com.jcwhatever.pvs.modules.mobs.utils.StuckMobTracker;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 
 import javax.annotation.Nullable;
@@ -84,6 +88,29 @@ public interface ISpawner extends IDisposable {
      */
     int getMobCount();
 
+    /**
+     * Get the locations of the players in the game, updated once per tick.
+     */
+    PlayerGrid getPlayerGrid();
+
+    /**
+     * Get the number of spawned mobs in each chunk.
+     */
+    ChunkMobCounter getChunkMobs();
+
+    /**
+     * Get the tracker that detects spawned mobs that are stuck.
+     */
+    StuckMobTracker getStuckMobs();
+
+    /**
+     * Determine if the chunk a spawnpoint is in has reached
+     * the max mobs per chunk.
+     *
+     * @param spawn  The spawnpoint.
+     */
+    boolean isChunkFull(Spawnpoint spawn);
+
     /**
      * Get a list of the spawned mobs
      */
@@ -101,6 +128,20 @@ public interface ISpawner extends IDisposable {
 
     void removeMob(LivingEntity entity, DespawnMethod method, MobRemoveReason reason);
 
+    /**
+     * Remove a mob from the spawner without despawning the entity.
+     *
+     * @param entity  The mob entity.
+     * @param reason  The reason the mob is removed.
+     *
+     * @return  True if the entity was a mob of the spawner, otherwise false.
+     */
+    boolean unregisterMob(Entity entity, MobRemoveReason reason);
+
+    /**
+     * Remove dead mobs. Mobs are normally removed when they die, this
+     * removes mobs that were removed from the world without dying.
+     */
     void removeDead();
 
     /**
@@ -29,5 +29,6 @@ package com.jcwhatever.pvs.modules.mobs.spawners;
  */
 public enum MobRemoveReason {
     OUT_OF_RANGE,
-    KILLED
+    KILLED,
+    STUCK
 }
@@ -27,82 +27,269 @@ package com.jcwhatever.pvs.modules.mobs.spawners.base;
 import com.jcwhatever.nucleus.managed.astar.AStar;
 import com.jcwhatever.nucleus.managed.astar.IAStarSettings;
 import com.jcwhatever.nucleus.utils.PreCon;
-import com.jcwhatever.nucleus.utils.Rand;
 import com.jcwhatever.pvs.api.arena.IArena;
 import com.jcwhatever.pvs.api.arena.IArenaPlayer;
 import com.jcwhatever.pvs.modules.mobs.DespawnMethod;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+import com.jcwhatever.pvs.modules.mobs.paths.PathVolume;
+import com.jcwhatever.pvs.modules.mobs.paths.PlayerFlowField;
 import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
 import com.jcwhatever.pvs.modules.mobs.spawners.MobRemoveReason;
 import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import com.jcwhatever.pvs.modules.mobs.utils.LineOfSightCache;
+import com.jcwhatever.pvs.modules.mobs.utils.PerformanceStats;
+import com.jcwhatever.pvs.modules.mobs.utils.PlayerGrid;
+import com.jcwhatever.pvs.modules.mobs.utils.StuckMobTracker;
+import com.jcwhatever.pvs.modules.mobs.utils.TickMonitor;
 import org.bukkit.Location;
+import org.bukkit.entity.Creature;
 import org.bukkit.entity.LivingEntity;
 
 import java.util.List;
 
-/*
-     * Despawn mobs that are out of range of players
-     */
+/**
+ * Despawn mobs that are out of range of players.
+ *
+ * <p>Mobs are checked in order, resuming where the previous run stopped,
+ * until all mobs are checked or the time budget for the run is used.</p>
+ */
 public abstract class DespawnMobsTask implements Runnable {
 
-    private static final Location MOB_LOCATION = new Location(null, 0, 0, 0);
-    private static final Location CLOSEST_LOCATION = new Location(null, 0, 0, 0);
+    // ticks between player flow field refreshes
+    private static final int FLOW_FIELD_INTERVAL = 40;
+
+    // mobs within attack range of a player are not expected to move
+    private static final double ATTACK_RANGE_SQUARED = 3 * 3;
 
     private final ISpawner _spawner;
+    private final MobArenaExtension _extension;
     private final IArena _arena;
     private final IAStarSettings _settings = AStar.createSettings();
+    private final PlayerFlowField _flowField;
+    private final LineOfSightCache _lineOfSight;
+
+    // reused to get mob and player locations on the main thread
+    private final Location _mobLocation = new Location(null, 0, 0, 0);
+    private final Location _closestLocation = new Location(null, 0, 0, 0);
+
+    private int _cursor;
+    private long _sweepStart = System.nanoTime();
+    private long _previousSweepStart;
+
+    private long _rateStart;
+    private long _checksThisSecond;
+    private int _checksPerSecond;
 
     public DespawnMobsTask(MobArenaExtension extension, ISpawner spawner) {
         PreCon.notNull(extension);
         PreCon.notNull(spawner);
 
+        _extension = extension;
         _arena = extension.getArena();
         _spawner = spawner;
+        _flowField = new PlayerFlowField(_arena);
+        _lineOfSight = extension.getLineOfSightCache();
+    }
+
+    /**
+     * Get the number of mobs checked per second, measured over the
+     * last second.
+     */
+    public int getChecksPerSecond() {
+        return _checksPerSecond;
+    }
+
+    /**
+     * Get the worst case time in nanoseconds since any tracked mob
+     * was last checked.
+     *
+     * <p>Mobs are checked in order, so no mob has gone unchecked for longer
+     * than the time since the previous sweep of the mob list started.</p>
+     */
+    public long getMaxNanosSinceCheck() {
+        if (_spawner.getMobs().isEmpty())
+            return 0;
+
+        long since = _previousSweepStart != 0 ? _previousSweepStart : _sweepStart;
+
+        return System.nanoTime() - since;
     }
 
     @Override
     public void run() {
 
+        _flowField.setMaxPathDistance(Math.min(getMaxPathDistance(), PathVolume.MAX_DISTANCE));
+        _lineOfSight.setCapacity(Math.max(0, getLineOfSightCacheSize()));
+
+        StuckMobTracker stuckMobs = _spawner.getStuckMobs();
+        stuckMobs.setWindow(getStuckTicks());
+        stuckMobs.setDistance(Math.max(0, getStuckDistance()));
+
+        if (!_flowField.isRunning())
+            _flowField.start(FLOW_FIELD_INTERVAL);
+
+        long start = System.nanoTime();
+        long budget = getBudgetNanos();
+
+        updateRate(start);
+
         List<LivingEntity> mobs = _spawner.getMobs();
 
-        if (mobs.size() == 0)
+        if (mobs.isEmpty()) {
+            _cursor = 0;
+            _previousSweepStart = 0;
+            _sweepStart = start;
+
+            PerformanceStats.getDespawnTask().add(System.nanoTime() - start);
             return;
+        }
+
+        // check each mob at most once per tick
+        int maxChecks = mobs.size();
+        int checks = 0;
+
+        // at least one mob is checked per tick regardless of budget
+        do {
+
+            if (_cursor >= mobs.size()) {
+                // sweep complete, start over
+                _cursor = 0;
+                _previousSweepStart = _sweepStart;
+                _sweepStart = System.nanoTime();
+            }
+
+            int size = mobs.size();
+
+            checkMob(mobs.get(_cursor));
+            checks++;
+
+            // a removed mob is replaced by the last mob in the registry
+            if (mobs.size() == size)
+                _cursor++;
+
+        } while (checks < maxChecks && !mobs.isEmpty() && System.nanoTime() - start < budget);
 
-        LivingEntity mob = Rand.get(mobs);
+        _checksThisSecond += checks;
+
+        PerformanceStats.getDespawnTask().add(System.nanoTime() - start);
+    }
+
+    protected abstract int getMaxDistanceSquared();
+
+    protected abstract int getMaxDistance();
+
+    protected abstract int getMaxPathDistance();
+
+    /**
+     * Get the max nanoseconds to spend checking mobs per run.
+     */
+    protected abstract long getBudgetNanos();
+
+    /**
+     * Get the max number of line of sight results to cache.
+     */
+    protected abstract int getLineOfSightCacheSize();
+
+    /**
+     * Get the ticks a mob chasing a player can stay in place before it
+     * is removed as stuck. 0 or less disables stuck detection.
+     */
+    protected abstract int getStuckTicks();
+
+    /**
+     * Get the distance in blocks a mob must move within the stuck ticks
+     * to not be removed as stuck.
+     */
+    protected abstract int getStuckDistance();
+
+    /*
+     * Update the checks per second measurement.
+     */
+    private void updateRate(long now) {
+
+        if (_rateStart == 0) {
+            _rateStart = now;
+            return;
+        }
+
+        long elapsed = now - _rateStart;
+        if (elapsed < 1000000000L)
+            return;
+
+        _checksPerSecond = (int)(_checksThisSecond * 1000000000L / elapsed);
+        _checksThisSecond = 0;
+        _rateStart = now;
+    }
+
+    /*
+     * Remove a mob if it is dead, out of range of players or stuck. Mobs
+     * that are not removed are retargeted if a closer player is available.
+     */
+    private void checkMob(LivingEntity mob) {
 
         if (mob.isDead()) {
             _spawner.removeMob(mob, DespawnMethod.REMOVE, MobRemoveReason.KILLED);
+            return;
+        }
+
+        PlayerGrid players = _spawner.getPlayerGrid();
+        Location location = mob.getLocation(_mobLocation);
+
+        IArenaPlayer closest = players.getClosest(location, getMaxDistanceSquared());
+
+        if (closest == null) {
+            _spawner.removeMob(mob, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
+            return;
         }
-        else {
-            IArenaPlayer closest = DistanceUtils.getClosestPlayer(
-                    _arena.getGame().getPlayers(), mob.getLocation(), getMaxDistanceSquared());
 
-            if (closest == null) {
+        Location closestLocation = closest.getLocation(_closestLocation);
+
+        if (_flowField.isReady()) {
+
+            int distance = _flowField.getPathDistance(location);
+
+            if ((distance == -1 || distance > getMaxPathDistance()) &&
+                    !_lineOfSight.hasLineOfSight(mob, location, closest.getEntity(), closestLocation)) {
                 _spawner.removeMob(mob, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
                 return;
             }
+        }
+        else if (!_lineOfSight.hasLineOfSight(mob, location, closest.getEntity(), closestLocation)) {
 
-            if (!mob.hasLineOfSight(closest.getEntity())) {
-
-                _settings.setMaxDropHeight(DistanceUtils.MAX_DROP_HEIGHT);
-                _settings.setRange(getMaxDistance());
+            _settings.setMaxDropHeight(DistanceUtils.MAX_DROP_HEIGHT);
+            _settings.setRange(getMaxDistance());
 
-                int distance = AStar.search(
-                        mob.getLocation(MOB_LOCATION),
-                        closest.getLocation(CLOSEST_LOCATION),
-                        _settings)
-                        .getPathDistance();
+            int distance = DistanceUtils.getPathDistance(
+                    _extension, location, closestLocation, _settings, getMaxPathDistance());
 
-                if (distance == -1 || distance > getMaxPathDistance()) {
-                    _spawner.removeMob(mob, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
-                }
+            if (distance == -1 || distance > getMaxPathDistance()) {
+                _spawner.removeMob(mob, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
+                return;
             }
         }
+
+        if (isStuck(mob, location, closestLocation)) {
+            _spawner.removeMob(mob, DespawnMethod.REMOVE, MobRemoveReason.STUCK);
+            return;
+        }
+
+        _spawner.getChunkMobs().update(mob, location);
+
+        if (MobTargets.shouldRetarget(mob, location, closest, players))
+            MobTargets.setTarget(mob, closest);
     }
 
-    protected abstract int getMaxDistanceSquared();
+    /*
+     * Sample the position of a mob and determine if it is stuck. Only mobs
+     * that have a target and are not within attack range of the closest
+     * player are expected to move.
+     */
+    private boolean isStuck(LivingEntity mob, Location location, Location closestLocation) {
 
-    protected abstract int getMaxDistance();
+        boolean isChasing = mob instanceof Creature &&
+                ((Creature) mob).getTarget() != null &&
+                location.distanceSquared(closestLocation) > ATTACK_RANGE_SQUARED;
 
-    protected abstract int getMaxPathDistance();
+        return _spawner.getStuckMobs().update(mob, location, isChasing, TickMonitor.getTick());
+    }
 }
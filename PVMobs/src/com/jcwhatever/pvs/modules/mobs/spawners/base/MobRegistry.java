@@ -0,0 +1,150 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.spawners.base;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Registry of mobs spawned by a spawner with constant time
+ * add, remove and lookup by entity ID.
+ *
+ * <p>The registry is a read-only list view of the mobs. Removing a mob moves
+ * the last mob into its position so the order of mobs is not preserved.</p>
+ */
+public class MobRegistry extends AbstractList<LivingEntity> {
+
+    private final List<LivingEntity> _mobs;
+    private final Map<UUID, Integer> _indexes;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity  The initial capacity.
+     */
+    public MobRegistry(int capacity) {
+        PreCon.positiveNumber(capacity);
+
+        _mobs = new ArrayList<>(capacity);
+        _indexes = new HashMap<>(capacity);
+    }
+
+    @Override
+    public LivingEntity get(int index) {
+        return _mobs.get(index);
+    }
+
+    @Override
+    public int size() {
+        return _mobs.size();
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return object instanceof Entity &&
+                _indexes.containsKey(((Entity) object).getUniqueId());
+    }
+
+    /**
+     * Get a registered mob by its entity ID.
+     *
+     * @param entityId  The entity ID.
+     *
+     * @return  The mob or null if not registered.
+     */
+    @Nullable
+    public LivingEntity get(UUID entityId) {
+        PreCon.notNull(entityId);
+
+        Integer index = _indexes.get(entityId);
+        return index != null ? _mobs.get(index) : null;
+    }
+
+    /**
+     * Register a mob.
+     *
+     * @param entity  The mob entity.
+     *
+     * @return  True if registered, false if already registered.
+     */
+    public boolean register(LivingEntity entity) {
+        PreCon.notNull(entity);
+
+        UUID id = entity.getUniqueId();
+        if (_indexes.containsKey(id))
+            return false;
+
+        _indexes.put(id, _mobs.size());
+        _mobs.add(entity);
+        return true;
+    }
+
+    /**
+     * Unregister a mob.
+     *
+     * @param entity  The mob entity.
+     *
+     * @return  The registered mob or null if the entity is not registered.
+     */
+    @Nullable
+    public LivingEntity unregister(Entity entity) {
+        PreCon.notNull(entity);
+
+        Integer index = _indexes.remove(entity.getUniqueId());
+        if (index == null)
+            return null;
+
+        LivingEntity removed = _mobs.get(index);
+        int last = _mobs.size() - 1;
+
+        // move the last mob into the removed position
+        if (index != last) {
+            LivingEntity moved = _mobs.get(last);
+            _mobs.set(index, moved);
+            _indexes.put(moved.getUniqueId(), index);
+        }
+
+        _mobs.remove(last);
+        return removed;
+    }
+
+    /**
+     * Unregister all mobs.
+     */
+    @Override
+    public void clear() {
+        _mobs.clear();
+        _indexes.clear();
+    }
+}
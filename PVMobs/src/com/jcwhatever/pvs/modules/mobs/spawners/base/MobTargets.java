@@ -0,0 +1,130 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.spawners.base;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.nucleus.utils.ThreadSingletons;
+import com.jcwhatever.nucleus.utils.coords.LocationUtils;
+import com.jcwhatever.pvs.api.arena.IArenaPlayer;
+import com.jcwhatever.pvs.modules.mobs.utils.PlayerGrid;
+import org.bukkit.Location;
+import org.bukkit.entity.Creature;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.PigZombie;
+
+/**
+ * Mob targeting utilities.
+ */
+public class MobTargets {
+
+    private MobTargets() {}
+
+    // a target is replaced if it is more than this many times farther than the closest player
+    private static final double RETARGET_DISTANCE_RATIO = 2.0D;
+
+    // a target within this distance is never replaced
+    private static final double MIN_RETARGET_DISTANCE = 8.0D;
+
+    private static final double RETARGET_RATIO_SQUARED = RETARGET_DISTANCE_RATIO * RETARGET_DISTANCE_RATIO;
+    private static final double MIN_RETARGET_DISTANCE_SQUARED = MIN_RETARGET_DISTANCE * MIN_RETARGET_DISTANCE;
+
+    private static final ThreadSingletons<Location> TARGET_LOCATIONS = LocationUtils.createThreadSingleton();
+    private static final ThreadSingletons<Location> PLAYER_LOCATIONS = LocationUtils.createThreadSingleton();
+
+    /**
+     * Set the target of a mob to a player.
+     *
+     * @param mob     The mob.
+     * @param player  The player to target.
+     *
+     * @return  True if the target was set, false if the mob cannot target.
+     */
+    public static boolean setTarget(LivingEntity mob, IArenaPlayer player) {
+        PreCon.notNull(mob);
+        PreCon.notNull(player);
+
+        if (!(mob instanceof Creature))
+            return false;
+
+        if (!(player.getEntity() instanceof LivingEntity))
+            return false;
+
+        Creature creature = (Creature)mob;
+
+        creature.setTarget((LivingEntity)player.getEntity());
+
+        if (creature instanceof PigZombie) {
+            PigZombie pigZ = (PigZombie)creature;
+            pigZ.setAngry(true);
+        }
+
+        return true;
+    }
+
+    /**
+     * Determine if a mob should target the closest player instead of its
+     * current target.
+     *
+     * <p>A mob is retargeted if it has no valid target, its target is not a player
+     * in the game, or its target is much farther away than the closest player.</p>
+     *
+     * @param mob          The mob.
+     * @param mobLocation  The location of the mob.
+     * @param closest      The closest player to the mob.
+     * @param players      The players in the game.
+     */
+    public static boolean shouldRetarget(LivingEntity mob, Location mobLocation,
+                                         IArenaPlayer closest, PlayerGrid players) {
+        PreCon.notNull(mob);
+        PreCon.notNull(mobLocation);
+        PreCon.notNull(closest);
+        PreCon.notNull(players);
+
+        if (!(mob instanceof Creature))
+            return false;
+
+        LivingEntity target = ((Creature) mob).getTarget();
+
+        if (target == null || target.isDead() || !target.isValid())
+            return true;
+
+        if (target == closest.getEntity())
+            return false;
+
+        if (!players.contains(target))
+            return true;
+
+        if (!mobLocation.getWorld().equals(target.getWorld()))
+            return true;
+
+        double current = target.getLocation(TARGET_LOCATIONS.get()).distanceSquared(mobLocation);
+        if (current <= MIN_RETARGET_DISTANCE_SQUARED)
+            return false;
+
+        double alternative = closest.getLocation(PLAYER_LOCATIONS.get()).distanceSquared(mobLocation);
+
+        return current > alternative * RETARGET_RATIO_SQUARED;
+    }
+}
@@ -24,29 +24,38 @@
 
 package com.jcwhatever.pvs.modules.mobs.spawners.base;
 
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
 import com.jcwhatever.nucleus.managed.scheduler.TaskHandler;
 import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.nucleus.utils.Rand;
 import com.jcwhatever.pvs.api.arena.IArena;
 import com.jcwhatever.pvs.api.arena.collections.IArenaPlayerCollection;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.api.utils.ArenaScheduler;
 import com.jcwhatever.pvs.modules.mobs.DespawnMethod;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
 import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
+import com.jcwhatever.pvs.modules.mobs.utils.PerformanceStats;
 import org.bukkit.entity.LivingEntity;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /*
  * Spawn mobs task
+ *
+ * Spawns are queued and released by a spawn queue over
+ * several ticks instead of all at once.
  */
 public abstract class SpawnMobsTask extends TaskHandler {
 
     private final Map<Spawnpoint, SpawnpointInfo> _spawnInfoMap = new HashMap<>(25);
     private final ISpawner _spawner;
     private final IArena _arena;
+    private final SpawnQueue _queue;
+    private IScheduledTask _queueTask;
 
     public SpawnMobsTask(MobArenaExtension extension, ISpawner spawner) {
         PreCon.notNull(extension);
@@ -54,16 +63,27 @@ public abstract class SpawnMobsTask extends TaskHandler {
 
         _spawner = spawner;
         _arena = extension.getArena();
+        _queue = new SpawnQueue(this, spawner);
+    }
+
+    /**
+     * Get the queue of spawns waiting to be released.
+     */
+    public SpawnQueue getQueue() {
+        return _queue;
     }
 
     @Override
     public void run() {
 
-        _spawner.removeDead();
-
         if (_spawner.isPaused())
             return;
 
+        long start = System.nanoTime();
+
+        if (_queueTask == null || _queueTask.isCancelled())
+            _queueTask = ArenaScheduler.runTaskRepeat(_arena, 1, 1, _queue);
+
         IArenaPlayerCollection players = _arena.getGame().getPlayers();
 
         int maxMobsPerSpawn = getMaxMobsPerSpawn();
@@ -74,7 +94,7 @@ public abstract class SpawnMobsTask extends TaskHandler {
             // get spawns in proximity to players
             List<Spawnpoint> spawns = getMobSpawns(players);
 
-            // spawn till max is reached
+            // queue spawns till max is reached
             while (!spawns.isEmpty() && canAddMobs()) {
 
                 Spawnpoint spawn = Rand.get(spawns);
@@ -92,49 +112,85 @@ public abstract class SpawnMobsTask extends TaskHandler {
                     }
 
                     // make sure mobs per spawn is not reached.
-                    if (info.getEntityCount() >= maxMobsPerSpawn) {
+                    if (info.getEntityCount() + info.getPendingCount() >= maxMobsPerSpawn) {
 
                         // remove maxed spawn from candidates
                         continue;
                     }
                 }
 
-                int spawnCount = getSpawnCount(maxMobsPerSpawn);
+                // skip spawns in full chunks until the next cycle
+                if (_spawner.isChunkFull(spawn))
+                    continue;
 
-                List<LivingEntity> spawned = _spawner.spawn(spawn, spawnCount);
-                if (spawned != null) {
-                    setMobTargets(spawned);
+                int spawnCount = getSpawnCount(maxMobsPerSpawn, info);
+                if (spawnCount < 1)
+                    break;
 
-                    if (info != null) {
-                        for (LivingEntity entity : spawned) {
-                            info.addEntity(entity);
-                        }
-                    }
-                }
+                _queue.add(spawn, spawnCount, info);
             }
-
         }
+
+        PerformanceStats.getSpawnTask().add(System.nanoTime() - start);
     }
 
     protected abstract int getSpawnLimit();
 
     protected abstract int getMaxMobsPerSpawn();
 
+    /**
+     * Get the max number of entities released from the spawn queue per tick.
+     */
+    protected abstract int getMaxSpawnsPerTick();
+
+    /**
+     * Get the max nanoseconds spent releasing spawns from the queue per tick.
+     */
+    protected abstract long getSpawnBudgetNanos();
+
     protected abstract List<Spawnpoint> getMobSpawns(IArenaPlayerCollection players);
 
     protected abstract void setMobTargets(List<LivingEntity> mobs);
 
     @Override
     protected void onCancel() {
+
+        if (_queueTask != null) {
+            _queueTask.cancel();
+            _queueTask = null;
+        }
+
+        _queue.clear();
+
         _spawner.reset(DespawnMethod.REMOVE);
         _spawner.stop();
     }
 
     protected boolean canAddMobs() {
-        return _spawner.getMobCount() < getSpawnLimit();
+        return _spawner.getMobCount() + _queue.getPendingMobs() < getSpawnLimit();
     }
 
-    protected int getSpawnCount(int maxMobsPerSpawn) {
-        return Math.min(getSpawnLimit(), maxMobsPerSpawn);
+    /**
+     * Get the number of mobs to queue at a spawnpoint.
+     *
+     * <p>Mobs already waiting in the queue are subtracted from the spawn limit and
+     * mobs spawned or waiting at the spawnpoint are subtracted from the max mobs
+     * per spawn.</p>
+     *
+     * @param maxMobsPerSpawn  The max mobs per spawn or -1 for no limit.
+     * @param info             The spawnpoint info or null if there is no per spawn limit.
+     */
+    protected int getSpawnCount(int maxMobsPerSpawn, @Nullable SpawnpointInfo info) {
+
+        int count = getSpawnLimit() - _queue.getPendingMobs();
+
+        if (maxMobsPerSpawn < 0)
+            return count;
+
+        int perSpawn = info != null
+                ? maxMobsPerSpawn - info.getEntityCount() - info.getPendingCount()
+                : maxMobsPerSpawn;
+
+        return Math.min(count, perSpawn);
     }
 }
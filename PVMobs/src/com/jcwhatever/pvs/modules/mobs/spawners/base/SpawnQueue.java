@@ -0,0 +1,204 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.spawners.base;
+
+import com.jcwhatever.nucleus.managed.scheduler.TaskHandler;
+import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
+import com.jcwhatever.pvs.modules.mobs.utils.PerformanceStats;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Queue of mob spawns released over several ticks.
+ *
+ * <p>Each tick, queued spawns are released until the max number of entities
+ * per tick is spawned or the time budget is used. At least one spawn is
+ * released per tick.</p>
+ *
+ * <p>Queued spawns are dropped if the spawnpoint is removed from the arena,
+ * its world is unloaded, the spawner stops, or the spawn limit is reached
+ * before they are released.</p>
+ */
+public class SpawnQueue extends TaskHandler {
+
+    private final SpawnMobsTask _task;
+    private final ISpawner _spawner;
+    private final Deque<SpawnRequest> _requests = new ArrayDeque<>(25);
+
+    private int _pendingMobs;
+    private long _totalDropped;
+
+    SpawnQueue(SpawnMobsTask task, ISpawner spawner) {
+        _task = task;
+        _spawner = spawner;
+    }
+
+    /**
+     * Get the number of queued spawns.
+     */
+    public int size() {
+        return _requests.size();
+    }
+
+    /**
+     * Get the number of mobs waiting to be spawned.
+     */
+    public int getPendingMobs() {
+        return _pendingMobs;
+    }
+
+    /**
+     * Get the total number of queued spawns that were dropped.
+     */
+    public long getTotalDropped() {
+        return _totalDropped;
+    }
+
+    /**
+     * Queue a spawn.
+     *
+     * @param spawn  The spawnpoint.
+     * @param count  The number of mobs to spawn.
+     * @param info   Optional info used to track mobs spawned at the spawnpoint.
+     */
+    void add(Spawnpoint spawn, int count, @Nullable SpawnpointInfo info) {
+
+        _requests.add(new SpawnRequest(spawn, count, info));
+        _pendingMobs += count;
+
+        if (info != null)
+            info.addPending(count);
+    }
+
+    /**
+     * Remove all queued spawns.
+     */
+    void clear() {
+
+        while (!_requests.isEmpty()) {
+            remove();
+        }
+    }
+
+    @Override
+    public void run() {
+
+        if (_requests.isEmpty() || _spawner.isPaused())
+            return;
+
+        long start = System.nanoTime();
+        long budget = _task.getSpawnBudgetNanos();
+        int maxSpawns = _task.getMaxSpawnsPerTick();
+        int totalSpawned = 0;
+
+        do {
+
+            SpawnRequest request = remove();
+
+            int count = getSpawnCount(request);
+            if (count < 1) {
+                _totalDropped++;
+                continue;
+            }
+
+            List<LivingEntity> spawned = _spawner.spawn(request.spawn, count);
+            if (spawned == null)
+                continue;
+
+            _task.setMobTargets(spawned);
+
+            if (request.info != null) {
+                for (LivingEntity entity : spawned) {
+                    request.info.addEntity(entity);
+                }
+            }
+
+            totalSpawned += spawned.size();
+
+        } while (!_requests.isEmpty() &&
+                totalSpawned < maxSpawns &&
+                System.nanoTime() - start < budget);
+
+        PerformanceStats.getSpawnQueue().add(System.nanoTime() - start);
+    }
+
+    /*
+     * Remove the next request from the queue.
+     */
+    private SpawnRequest remove() {
+
+        SpawnRequest request = _requests.remove();
+        _pendingMobs -= request.count;
+
+        if (request.info != null)
+            request.info.addPending(-request.count);
+
+        return request;
+    }
+
+    /*
+     * Get the number of mobs a request can still spawn. Returns 0
+     * if the request is no longer valid.
+     */
+    private int getSpawnCount(SpawnRequest request) {
+
+        if (!_spawner.isRunning() || request.spawn.getWorld() == null)
+            return 0;
+
+        IArena arena = _spawner.getArena();
+
+        // the spawnpoint may have been removed while queued
+        if (arena == null || arena.getSpawns().get(request.spawn.getName()) == null)
+            return 0;
+
+        int count = Math.min(request.count, _task.getSpawnLimit());
+
+        if (request.info != null) {
+            int maxMobsPerSpawn = _task.getMaxMobsPerSpawn();
+            if (maxMobsPerSpawn > -1)
+                count = Math.min(count, maxMobsPerSpawn - request.info.getEntityCount());
+        }
+
+        return count;
+    }
+
+    private static class SpawnRequest {
+        final Spawnpoint spawn;
+        final int count;
+        final SpawnpointInfo info;
+
+        SpawnRequest(Spawnpoint spawn, int count, @Nullable SpawnpointInfo info) {
+            this.spawn = spawn;
+            this.count = count;
+            this.info = info;
+        }
+    }
+}
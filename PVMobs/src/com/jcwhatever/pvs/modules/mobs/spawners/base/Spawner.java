@@ -26,6 +26,7 @@ package com.jcwhatever.pvs.modules.mobs.spawners.base;
 
 import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.pvs.api.arena.IArena;
+import com.jcwhatever.pvs.api.arena.IArenaPlayer;
 import com.jcwhatever.pvs.api.arena.context.IGameContext;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.modules.mobs.DespawnMethod;
@@ -33,9 +34,17 @@ import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
 import com.jcwhatever.pvs.modules.mobs.MobTypeLimiter;
 import com.jcwhatever.pvs.modules.mobs.spawners.ISpawner;
 import com.jcwhatever.pvs.modules.mobs.spawners.MobRemoveReason;
+import com.jcwhatever.pvs.modules.mobs.spawngroups.SpawnGroup;
+import com.jcwhatever.pvs.modules.mobs.utils.ChunkMobCounter;
+import com.jcwhatever.pvs.modules.mobs.utils.PlayerGrid;
+import com.jcwhatever.pvs.modules.mobs.utils.StuckMobTracker;
+import com.jcwhatever.pvs.modules.mobs.utils.TickMonitor;
+import org.bukkit.Location;
+import org.bukkit.entity.Creature;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -47,8 +56,16 @@ public abstract class Spawner implements ISpawner {
 
     private IArena _arena;
     private MobArenaExtension _extension;
-    private List<LivingEntity> _mobs = new ArrayList<LivingEntity>(100);
+    private MobRegistry _mobs = new MobRegistry(100);
+    private final ChunkMobCounter _chunkMobs = new ChunkMobCounter();
+    private final StuckMobTracker _stuckMobs = new StuckMobTracker();
     private MobTypeLimiter _limiter;
+    private DespawnMobsTask _despawnTask;
+    private final PlayerGrid _playerGrid = new PlayerGrid();
+    private long _playerGridTick = -1;
+
+    // reused to get mob locations on the main thread
+    private final Location _mobLocation = new Location(null, 0, 0, 0);
 
     private boolean _isRunning;
     private boolean _isPaused;
@@ -123,6 +140,33 @@ public abstract class Spawner implements ISpawner {
         onStop();
     }
 
+    /**
+     * Get the task that despawns mobs.
+     *
+     * @return  The task or null if the spawner has not been run.
+     */
+    @Nullable
+    public DespawnMobsTask getDespawnTask() {
+        return _despawnTask;
+    }
+
+    /**
+     * Get the locations of the players in the game. The locations are
+     * updated the first time the grid is requested in a tick.
+     */
+    @Override
+    public PlayerGrid getPlayerGrid() {
+
+        long tick = TickMonitor.getTick();
+
+        if (tick != _playerGridTick || !TickMonitor.isRunning()) {
+            _playerGridTick = tick;
+            _playerGrid.update(_arena.getGame().getPlayers());
+        }
+
+        return _playerGrid;
+    }
+
     @Override
     public int getMobCount() {
         return _mobs.size();
@@ -134,40 +178,44 @@ public abstract class Spawner implements ISpawner {
     }
 
     @Override
-    public List<LivingEntity> spawn(Spawnpoint spawn, int count) {
-        PreCon.notNull(spawn);
+    public ChunkMobCounter getChunkMobs() {
+        return _chunkMobs;
+    }
 
-        // make sure the type hasn't reached its limit
-        if (!_limiter.canSpawnType(spawn.getSpawnType()))
-            return null;
+    @Override
+    public StuckMobTracker getStuckMobs() {
+        return _stuckMobs;
+    }
 
-        // spawn the entity
-        List<Entity> entities = spawn.spawn(getArena(), count);
-        if (entities == null)
-            return null;
+    @Override
+    public boolean isChunkFull(Spawnpoint spawn) {
+        PreCon.notNull(spawn);
 
-        List<LivingEntity> result = new ArrayList<>(entities.size());
+        return getChunkCapacity(spawn) == 0;
+    }
 
-        // record each spawned entity and place into LivingEntity result list
-        Iterator<Entity> entityIterator = entities.iterator();
-        while (entityIterator.hasNext()) {
+    @Override
+    public List<LivingEntity> spawn(Spawnpoint spawn, int count) {
+        PreCon.notNull(spawn);
+        PreCon.greaterThanZero(count);
 
-            Entity entity = entityIterator.next();
+        if (!(spawn instanceof SpawnGroup))
+            return spawnAt(spawn, count);
 
-            if (entity == null)
-                throw new NullPointerException("Entity array has a null entry.");
+        // spawn from each spawn in the group so that each spawn
+        // reserves its own mob type limit slots.
+        List<Spawnpoint> spawns = ((SpawnGroup) spawn).getSpawns();
+        List<LivingEntity> result = new ArrayList<>(count * spawns.size());
 
-            if (!(entity instanceof LivingEntity)) {
-                entity.remove();
-                entityIterator.remove();
-                continue;
-            }
+        for (Spawnpoint groupSpawn : spawns) {
 
-            result.add((LivingEntity) entity);
-            _mobs.add((LivingEntity)entity);
+            int max = getSpawnLimit();
+            if (max <= 0)
+                break;
 
-            _limiter.increment(entity.getType(), 1);
-            onMobSpawn((LivingEntity)entity);
+            List<LivingEntity> spawned = spawnAt(groupSpawn, Math.min(max, count));
+            if (spawned != null)
+                result.addAll(spawned);
         }
 
         return result;
@@ -177,7 +225,13 @@ public abstract class Spawner implements ISpawner {
     public void reset(DespawnMethod method) {
         PreCon.notNull(method);
 
-        for (LivingEntity entity : _mobs) {
+        // clear first so the death events of killed mobs are ignored
+        List<LivingEntity> mobs = new ArrayList<>(_mobs);
+        _mobs.clear();
+        _chunkMobs.clear();
+        _stuckMobs.clear();
+
+        for (LivingEntity entity : mobs) {
             _limiter.increment(entity.getType(), -1);
 
             if (method == DespawnMethod.KILL)
@@ -186,7 +240,6 @@ public abstract class Spawner implements ISpawner {
                 entity.remove();
         }
 
-        _mobs.clear();
         stop();
     }
 
@@ -194,36 +247,123 @@ public abstract class Spawner implements ISpawner {
     public void removeMob(LivingEntity entity, DespawnMethod method, MobRemoveReason reason) {
         PreCon.notNull(entity);
         PreCon.notNull(method);
+        PreCon.notNull(reason);
 
-        _mobs.remove(entity);
-        _limiter.increment(entity.getType(), -1);
+        // unregister first so the death event of a killed mob is ignored
+        unregisterMob(entity, reason);
 
         if (method == DespawnMethod.KILL)
             entity.damage(entity.getMaxHealth());
         else
             entity.remove();
+    }
+
+    @Override
+    public boolean unregisterMob(Entity entity, MobRemoveReason reason) {
+        PreCon.notNull(entity);
+        PreCon.notNull(reason);
+
+        LivingEntity mob = _mobs.unregister(entity);
+        if (mob == null)
+            return false;
 
-        onMobRemove(entity, reason);
+        _chunkMobs.remove(mob);
+        _stuckMobs.remove(mob);
+        _limiter.increment(mob.getType(), -1);
+
+        onMobRemove(mob, reason);
+        return true;
     }
 
     @Override
     public void removeDead() {
 
-        Iterator<LivingEntity> iterator = _mobs.iterator();
-        while (iterator.hasNext()) {
-            LivingEntity entity = iterator.next();
+        for (int i = _mobs.size() - 1; i >= 0; i--) {
+            LivingEntity entity = _mobs.get(i);
 
             if (!entity.isDead())
                 continue;
 
-            iterator.remove();
+            unregisterMob(entity, MobRemoveReason.KILLED);
             entity.remove();
-            _limiter.increment(entity.getType(), -1);
+        }
+    }
+
+    /*
+     * Spawn mobs from a single spawnpoint.
+     */
+    @Nullable
+    private List<LivingEntity> spawnAt(Spawnpoint spawn, int count) {
+
+        // skip spawns in chunks that already have the max mobs
+        int chunkCapacity = getChunkCapacity(spawn);
+        if (chunkCapacity == 0)
+            return null;
+
+        if (chunkCapacity > 0)
+            count = Math.min(count, chunkCapacity);
+
+        // make sure the type hasn't reached its limit
+        MobTypeLimiter.Reservation reservation = _limiter.reserve(spawn.getSpawnType(), count);
+        if (reservation == null)
+            return null;
+
+        try {
+            // spawn the entity
+            List<Entity> entities = spawn.spawn(getArena(), reservation.getAmount());
+            if (entities == null)
+                return null;
+
+            List<LivingEntity> result = new ArrayList<>(entities.size());
+
+            // record each spawned entity and place into LivingEntity result list
+            Iterator<Entity> entityIterator = entities.iterator();
+            while (entityIterator.hasNext()) {
+
+                Entity entity = entityIterator.next();
 
-            onMobRemove(entity, MobRemoveReason.KILLED);
+                if (entity == null)
+                    throw new NullPointerException("Entity array has a null entry.");
+
+                if (!(entity instanceof LivingEntity)) {
+                    entity.remove();
+                    entityIterator.remove();
+                    continue;
+                }
+
+                result.add((LivingEntity) entity);
+                _mobs.register((LivingEntity) entity);
+                Location location = entity.getLocation(_mobLocation);
+                _chunkMobs.add(entity, location);
+                _stuckMobs.add(entity, location, spawn.getName(), TickMonitor.getTick());
+
+                reservation.commit(entity.getType());
+                onMobSpawn((LivingEntity)entity);
+            }
+
+            return result;
+
+        } finally {
+            // release slots of entities that were not spawned
+            reservation.rollback();
         }
     }
 
+    /*
+     * Get the number of mobs that can still be spawned in the chunk
+     * a spawnpoint is in. Returns -1 if there is no limit.
+     */
+    private int getChunkCapacity(Spawnpoint spawn) {
+
+        int maxMobsPerChunk = getMaxMobsPerChunk();
+        if (maxMobsPerChunk < 0)
+            return -1;
+
+        int count = _chunkMobs.getCount(spawn.getBlockX() >> 4, spawn.getBlockZ() >> 4);
+
+        return Math.max(0, maxMobsPerChunk - count);
+    }
+
     @Override
     public boolean isDisposed() {
         return _isDisposed;
@@ -239,6 +379,53 @@ public abstract class Spawner implements ISpawner {
         _isDisposed = true;
     }
 
+    /**
+     * Set the task that despawns mobs.
+     *
+     * @param task  The task.
+     *
+     * @return  The task.
+     */
+    protected DespawnMobsTask setDespawnTask(DespawnMobsTask task) {
+        _despawnTask = task;
+        return task;
+    }
+
+    /**
+     * Target the closest player with newly spawned mobs. Mobs without
+     * a player in range are removed.
+     *
+     * @param mobs                The mobs.
+     * @param maxDistanceSquared  The max distance squared of a target.
+     */
+    protected void setMobTargets(List<LivingEntity> mobs, int maxDistanceSquared) {
+
+        PlayerGrid players = getPlayerGrid();
+
+        for (LivingEntity entity : mobs) {
+
+            if (!(entity instanceof Creature))
+                continue;
+
+            IArenaPlayer closest = players.getClosest(entity.getLocation(_mobLocation), maxDistanceSquared);
+
+            if (closest == null) {
+                removeMob(entity, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
+                continue;
+            }
+
+            MobTargets.setTarget(entity, closest);
+        }
+    }
+
+    /**
+     * Get the max number of mobs spawned by the spawner that can be in
+     * a chunk before spawns in the chunk are skipped.
+     *
+     * @return  The max mobs or -1 for no limit.
+     */
+    protected abstract int getMaxMobsPerChunk();
+
     protected abstract void onRun();
 
     protected abstract void onDispose();
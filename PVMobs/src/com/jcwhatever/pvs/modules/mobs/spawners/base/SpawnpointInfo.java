@@ -28,6 +28,7 @@ import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import org.bukkit.entity.Entity;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 /*
@@ -37,6 +38,7 @@ public class SpawnpointInfo {
 
     private final Spawnpoint _spawnpoint;
     private final Map<Entity, Void> _spawnedEntities;
+    private int _pendingCount;
 
     public SpawnpointInfo(Spawnpoint spawnpoint, int maxMobsPerSpawn) {
         _spawnpoint = spawnpoint;
@@ -47,20 +49,37 @@ public class SpawnpointInfo {
         return _spawnpoint;
     }
 
+    /*
+     * Get the number of live entities spawned at the spawnpoint. Dead and
+     * removed entities are no longer tracked.
+     */
     public int getEntityCount() {
-        int count = 0;
-        for (Entity entity : _spawnedEntities.keySet()) {
 
-            if (entity.isDead())
-                continue;
+        Iterator<Entity> iterator = _spawnedEntities.keySet().iterator();
+        while (iterator.hasNext()) {
 
-            count++;
+            if (iterator.next().isDead())
+                iterator.remove();
         }
 
-        return count;
+        return _spawnedEntities.size();
     }
 
     public void addEntity(Entity entity) {
         _spawnedEntities.put(entity, null);
     }
+
+    /*
+     * Get the number of entities queued to spawn at the spawnpoint.
+     */
+    public int getPendingCount() {
+        return _pendingCount;
+    }
+
+    /*
+     * Add to or subtract from the number of entities queued to spawn.
+     */
+    public void addPending(int amount) {
+        _pendingCount = Math.max(0, _pendingCount + amount);
+    }
 }
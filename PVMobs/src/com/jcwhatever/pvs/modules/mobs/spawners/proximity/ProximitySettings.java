@@ -39,35 +39,101 @@ import java.util.Map;
 
 public class ProximitySettings implements ISpawnerSettings {
 
+    public static final int DEFAULT_MAX_MOBS = 20;
+    public static final int DEFAULT_MAX_PER_SPAWN = 2;
+    public static final int DEFAULT_MAX_PER_CHUNK = -1;
+    public static final int DEFAULT_MAX_MOBS_PER_PLAYER = 4;
+    public static final int DEFAULT_MAX_PATH_DISTANCE = 18;
+    public static final int DEFAULT_MAX_DISTANCE = 24;
+    public static final int DEFAULT_DESPAWN_BUDGET = 250000;
+    public static final int DEFAULT_SPAWNS_PER_TICK = 4;
+    public static final int DEFAULT_SPAWN_BUDGET = 1000000;
+    public static final int DEFAULT_LOS_CACHE_SIZE = 512;
+    public static final int DEFAULT_STUCK_SECONDS = 20;
+    public static final int DEFAULT_STUCK_DISTANCE = 2;
+    public static final int DEFAULT_MIN_MOBS = 4;
+    public static final int DEFAULT_MIN_SPAWN_INTERVAL = 20;
+    public static final int DEFAULT_MAX_SPAWN_INTERVAL = 100;
+    public static final int DEFAULT_MIN_TPS = 12;
+    public static final int DEFAULT_TARGET_TPS = 18;
+
     private static Map<String, PropertyDefinition> _possibleSettings;
 
     static {
         _possibleSettings = new SettingsBuilder()
-                .set("max-mobs", PropertyValueType.INTEGER, 20,
+                .set("max-mobs", PropertyValueType.INTEGER, DEFAULT_MAX_MOBS,
                         "Maximum mobs spawned.")
 
-                .set("max-per-spawn", PropertyValueType.INTEGER, 2,
+                .set("max-per-spawn", PropertyValueType.INTEGER, DEFAULT_MAX_PER_SPAWN,
                         "Maximum mobs alive per spawnpoint.")
 
-                .set("max-mobs-per-player", PropertyValueType.INTEGER, 4,
+                .set("max-per-chunk", PropertyValueType.INTEGER, DEFAULT_MAX_PER_CHUNK,
+                        "Maximum mobs alive per chunk. Spawnpoints in full chunks are skipped. -1 for no limit.")
+
+                .set("max-mobs-per-player", PropertyValueType.INTEGER, DEFAULT_MAX_MOBS_PER_PLAYER,
                         "Maximum mobs spawned per player.")
 
-                .set("max-path-distance", PropertyValueType.INTEGER, 18,
+                .set("max-path-distance", PropertyValueType.INTEGER, DEFAULT_MAX_PATH_DISTANCE,
                         "Maximum mob path distance when detecting proximity.")
 
-                .set("max-distance", PropertyValueType.INTEGER, 24,
+                .set("max-distance", PropertyValueType.INTEGER, DEFAULT_MAX_DISTANCE,
                         "Maximum distance when detecting proximity.")
 
+                .set("despawn-budget", PropertyValueType.INTEGER, DEFAULT_DESPAWN_BUDGET,
+                        "Maximum nanoseconds per tick spent checking if mobs should despawn.")
+
+                .set("spawns-per-tick", PropertyValueType.INTEGER, DEFAULT_SPAWNS_PER_TICK,
+                        "Maximum mobs spawned per tick. Remaining mobs are spawned in later ticks.")
+
+                .set("spawn-budget", PropertyValueType.INTEGER, DEFAULT_SPAWN_BUDGET,
+                        "Maximum nanoseconds per tick spent spawning mobs.")
+
+                .set("los-cache-size", PropertyValueType.INTEGER, DEFAULT_LOS_CACHE_SIZE,
+                        "Maximum mob to player line of sight results cached. 0 disables the cache.")
+
+                .set("stuck-seconds", PropertyValueType.INTEGER, DEFAULT_STUCK_SECONDS,
+                        "Seconds a mob chasing a player can stay in place before it is despawned as stuck. 0 disables.")
+
+                .set("stuck-distance", PropertyValueType.INTEGER, DEFAULT_STUCK_DISTANCE,
+                        "Blocks a mob must move within the stuck seconds to not be despawned as stuck.")
+
+                .set("min-mobs", PropertyValueType.INTEGER, DEFAULT_MIN_MOBS,
+                        "Minimum mob limit when the server is behind.")
+
+                .set("min-spawn-interval", PropertyValueType.INTEGER, DEFAULT_MIN_SPAWN_INTERVAL,
+                        "Minimum ticks between spawning mobs.")
+
+                .set("max-spawn-interval", PropertyValueType.INTEGER, DEFAULT_MAX_SPAWN_INTERVAL,
+                        "Maximum ticks between spawning mobs when the server is behind.")
+
+                .set("min-tps", PropertyValueType.INTEGER, DEFAULT_MIN_TPS,
+                        "Server TPS at or below which mobs are spawned at the slowest rate.")
+
+                .set("target-tps", PropertyValueType.INTEGER, DEFAULT_TARGET_TPS,
+                        "Server TPS at or above which mobs are spawned at the full rate.")
+
                 .build()
         ;
     }
 
-    private int _maxMobs = 20;
-    private int _maxMobsPerSpawn = 2;
-    private int _maxMobsPerPlayer = 4;
-    private int _maxMobPathDistance = 18; // max distance of a valid mob path
-    private int _maxMobDistance = 24;
+    private int _maxMobs = DEFAULT_MAX_MOBS;
+    private int _maxMobsPerSpawn = DEFAULT_MAX_PER_SPAWN;
+    private int _maxMobsPerChunk = DEFAULT_MAX_PER_CHUNK;
+    private int _maxMobsPerPlayer = DEFAULT_MAX_MOBS_PER_PLAYER;
+    private int _maxMobPathDistance = DEFAULT_MAX_PATH_DISTANCE; // max distance of a valid mob path
+    private int _maxMobDistance = DEFAULT_MAX_DISTANCE;
     private int _maxMobDistanceSquared; // max distance when getting closest mob (squared)
+    private int _despawnBudget = DEFAULT_DESPAWN_BUDGET; // nanoseconds per tick
+    private int _spawnsPerTick = DEFAULT_SPAWNS_PER_TICK;
+    private int _spawnBudget = DEFAULT_SPAWN_BUDGET; // nanoseconds per tick
+    private int _lineOfSightCacheSize = DEFAULT_LOS_CACHE_SIZE;
+    private int _stuckSeconds = DEFAULT_STUCK_SECONDS;
+    private int _stuckDistance = DEFAULT_STUCK_DISTANCE; // blocks
+    private int _minMobs = DEFAULT_MIN_MOBS;
+    private int _minSpawnInterval = DEFAULT_MIN_SPAWN_INTERVAL; // ticks
+    private int _maxSpawnInterval = DEFAULT_MAX_SPAWN_INTERVAL; // ticks
+    private int _minTps = DEFAULT_MIN_TPS;
+    private int _targetTps = DEFAULT_TARGET_TPS;
 
     private final IDataNode _dataNode;
     private final SettingsManager _settingsManager;
@@ -81,10 +147,22 @@ public class ProximitySettings implements ISpawnerSettings {
             public void on(PropertyValue argument) {
                 _maxMobs = _dataNode.getInteger("max-mobs", _maxMobs);
                 _maxMobsPerSpawn = _dataNode.getInteger("max-per-spawn", _maxMobsPerSpawn);
+                _maxMobsPerChunk = _dataNode.getInteger("max-per-chunk", _maxMobsPerChunk);
                 _maxMobsPerPlayer = _dataNode.getInteger("max-mobs-per-player", _maxMobsPerPlayer);
                 _maxMobPathDistance = _dataNode.getInteger("max-path-distance", _maxMobPathDistance);
                 _maxMobDistance = _dataNode.getInteger("max-distance", _maxMobDistance);
                 _maxMobDistanceSquared = _maxMobDistance * _maxMobDistance;
+                _despawnBudget = _dataNode.getInteger("despawn-budget", _despawnBudget);
+                _spawnsPerTick = _dataNode.getInteger("spawns-per-tick", _spawnsPerTick);
+                _spawnBudget = _dataNode.getInteger("spawn-budget", _spawnBudget);
+                _lineOfSightCacheSize = _dataNode.getInteger("los-cache-size", _lineOfSightCacheSize);
+                _stuckSeconds = _dataNode.getInteger("stuck-seconds", _stuckSeconds);
+                _stuckDistance = _dataNode.getInteger("stuck-distance", _stuckDistance);
+                _minMobs = _dataNode.getInteger("min-mobs", _minMobs);
+                _minSpawnInterval = _dataNode.getInteger("min-spawn-interval", _minSpawnInterval);
+                _maxSpawnInterval = _dataNode.getInteger("max-spawn-interval", _maxSpawnInterval);
+                _minTps = _dataNode.getInteger("min-tps", _minTps);
+                _targetTps = _dataNode.getInteger("target-tps", _targetTps);
             }
         };
 
@@ -114,6 +192,14 @@ public class ProximitySettings implements ISpawnerSettings {
         _settingsManager.set("max-per-spawn", value);
     }
 
+    public int getMaxMobsPerChunk() {
+        return _maxMobsPerChunk;
+    }
+
+    public void setMaxMobsPerChunk(int value) {
+        _settingsManager.set("max-per-chunk", value);
+    }
+
     public int getMaxMobsPerPlayer() {
         return _maxMobsPerPlayer;
     }
@@ -141,4 +227,92 @@ public class ProximitySettings implements ISpawnerSettings {
     public int getMaxMobDistanceSquared() {
         return _maxMobDistanceSquared;
     }
+
+    public int getDespawnBudget() {
+        return _despawnBudget;
+    }
+
+    public void setDespawnBudget(int nanoseconds) {
+        _settingsManager.set("despawn-budget", nanoseconds);
+    }
+
+    public int getSpawnsPerTick() {
+        return _spawnsPerTick;
+    }
+
+    public void setSpawnsPerTick(int value) {
+        _settingsManager.set("spawns-per-tick", value);
+    }
+
+    public int getSpawnBudget() {
+        return _spawnBudget;
+    }
+
+    public void setSpawnBudget(int nanoseconds) {
+        _settingsManager.set("spawn-budget", nanoseconds);
+    }
+
+    public int getLineOfSightCacheSize() {
+        return _lineOfSightCacheSize;
+    }
+
+    public void setLineOfSightCacheSize(int size) {
+        _settingsManager.set("los-cache-size", size);
+    }
+
+    public int getStuckSeconds() {
+        return _stuckSeconds;
+    }
+
+    public void setStuckSeconds(int seconds) {
+        _settingsManager.set("stuck-seconds", seconds);
+    }
+
+    public int getStuckDistance() {
+        return _stuckDistance;
+    }
+
+    public void setStuckDistance(int distance) {
+        _settingsManager.set("stuck-distance", distance);
+    }
+
+    public int getMinMobs() {
+        return _minMobs;
+    }
+
+    public void setMinMobs(int value) {
+        _settingsManager.set("min-mobs", value);
+    }
+
+    public int getMinSpawnInterval() {
+        return _minSpawnInterval;
+    }
+
+    public void setMinSpawnInterval(int ticks) {
+        _settingsManager.set("min-spawn-interval", ticks);
+    }
+
+    public int getMaxSpawnInterval() {
+        return _maxSpawnInterval;
+    }
+
+    public void setMaxSpawnInterval(int ticks) {
+        _settingsManager.set("max-spawn-interval", ticks);
+    }
+
+    public int getMinTps() {
+        return _minTps;
+    }
+
+    public void setMinTps(int value) {
+        _settingsManager.set("min-tps", value);
+    }
+
+    public int getTargetTps() {
+        return _targetTps;
+    }
+
+    public void setTargetTps(int value) {
+        _settingsManager.set("target-tps", value);
+    }
 }
@@ -26,22 +26,19 @@
 package com.jcwhatever.pvs.modules.mobs.spawners.proximity;
 
 import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
-import com.jcwhatever.pvs.api.arena.IArenaPlayer;
 import com.jcwhatever.pvs.api.arena.collections.IArenaPlayerCollection;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.api.utils.ArenaScheduler;
-import com.jcwhatever.pvs.modules.mobs.DespawnMethod;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
 import com.jcwhatever.pvs.modules.mobs.spawners.ISpawnerSettings;
-import com.jcwhatever.pvs.modules.mobs.spawners.MobRemoveReason;
 import com.jcwhatever.pvs.modules.mobs.spawners.SpawnerInfo;
 import com.jcwhatever.pvs.modules.mobs.spawners.base.DespawnMobsTask;
 import com.jcwhatever.pvs.modules.mobs.spawners.base.SpawnMobsTask;
 import com.jcwhatever.pvs.modules.mobs.spawners.base.Spawner;
 import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
-import org.bukkit.entity.Creature;
+import com.jcwhatever.pvs.modules.mobs.utils.SpawnpointGrid;
+import com.jcwhatever.pvs.modules.mobs.utils.TickMonitor;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.PigZombie;
 
 import java.util.List;
 
@@ -55,10 +52,17 @@ import java.util.List;
 )
 public class ProximitySpawner extends Spawner {
 
+    /**
+     * The ticks between checking if mobs should be spawned.
+     */
+    public static final int SPAWN_CHECK_INTERVAL = 5;
+
     private ProximitySettings _settings;
     private List<Spawnpoint> _mobSpawns;
+    private SpawnpointGrid<Spawnpoint> _spawnGrid;
 
     private int _maxMobs;
+    private int _baseSpawnInterval;
 
     private IScheduledTask _spawnMobsTask;
     private IScheduledTask _despawnMobsTask;
@@ -74,9 +78,43 @@ public class ProximitySpawner extends Spawner {
         return _settings;
     }
 
+    @Override
+    protected int getMaxMobsPerChunk() {
+        return _settings.getMaxMobsPerChunk();
+    }
+
     @Override
     public int getSpawnLimit() {
-        return _maxMobs - getMobCount();
+        return getEffectiveMaxMobs() - getMobCount();
+    }
+
+    /**
+     * Get the max number of mobs adjusted for server load.
+     *
+     * <p>Scales down from the max mobs to the min mobs setting as the
+     * server TPS drops from the target TPS to the min TPS setting.</p>
+     */
+    public int getEffectiveMaxMobs() {
+
+        int minMobs = Math.min(Math.max(0, _settings.getMinMobs()), _maxMobs);
+        double scale = getLoadScale();
+
+        return minMobs + (int)Math.round((_maxMobs - minMobs) * scale);
+    }
+
+    /**
+     * Get the ticks between spawning mobs adjusted for server load.
+     *
+     * <p>Scales up from the normal interval to the max spawn interval
+     * setting as the server TPS drops from the target TPS to the min
+     * TPS setting.</p>
+     */
+    public int getSpawnInterval() {
+
+        int maxInterval = Math.max(_baseSpawnInterval, _settings.getMaxSpawnInterval());
+        double scale = getLoadScale();
+
+        return maxInterval - (int)Math.round((maxInterval - _baseSpawnInterval) * scale);
     }
 
     @Override
@@ -87,9 +125,12 @@ public class ProximitySpawner extends Spawner {
                 _settings.getMaxMobsPerPlayer() * totalPlayers);
 
         _mobSpawns = getExtension().getMobSpawns();
+        _spawnGrid = new SpawnpointGrid<>(_mobSpawns);
+
+        _baseSpawnInterval = Math.max(_settings.getMinSpawnInterval(), 20 + (3 * totalPlayers));
 
-        _spawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), 5, 20 + (3 * totalPlayers), new SpawnTask());
-        _despawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), 10, 10, new DespawnMobs());
+        _spawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), 5, SPAWN_CHECK_INTERVAL, new SpawnTask());
+        _despawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), 10, 1, setDespawnTask(new DespawnMobs()));
     }
 
     @Override
@@ -112,43 +153,33 @@ public class ProximitySpawner extends Spawner {
 
 
     /*
-     * Set mob targets
+     * Get the server load scale. 1.0 when the server is keeping up.
      */
-    private void setMobTargets(List<LivingEntity> mobs) {
-
-        for (LivingEntity entity : mobs) {
-
-            if (!(entity instanceof Creature))
-                continue;
-
-            Creature creature = (Creature)entity;
-
-            IArenaPlayer closest = DistanceUtils.getClosestPlayer(
-                    getArena().getGame().getPlayers(), creature.getLocation(), _settings.getMaxMobDistanceSquared());
-
-            if (closest == null) {
-                removeMob(entity, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
-                continue;
-            }
-
-            if (!(closest.getEntity() instanceof LivingEntity))
-                continue;
-
-            creature.setTarget((LivingEntity)closest.getEntity());
-
-            if (creature instanceof PigZombie) {
-                PigZombie pigZ = (PigZombie)creature;
-                pigZ.setAngry(true);
-            }
-        }
+    private double getLoadScale() {
+        return TickMonitor.getLoadScale(_settings.getMinTps(), _settings.getTargetTps());
     }
 
     class SpawnTask extends SpawnMobsTask {
 
+        private int _elapsed = Integer.MAX_VALUE / 2; // spawn on first run
+
         public SpawnTask() {
             super(getExtension(), ProximitySpawner.this);
         }
 
+        @Override
+        public void run() {
+
+            // the interval changes with server load so the task runs
+            // more often than the interval and waits it out.
+            _elapsed += SPAWN_CHECK_INTERVAL;
+            if (_elapsed < getSpawnInterval())
+                return;
+
+            _elapsed = 0;
+            super.run();
+        }
+
         @Override
         protected int getSpawnLimit() {
             return ProximitySpawner.this.getSpawnLimit();
@@ -159,15 +190,25 @@ public class ProximitySpawner extends Spawner {
             return _settings.getMaxMobsPerSpawn();
         }
 
+        @Override
+        protected int getMaxSpawnsPerTick() {
+            return _settings.getSpawnsPerTick();
+        }
+
+        @Override
+        protected long getSpawnBudgetNanos() {
+            return _settings.getSpawnBudget();
+        }
+
         @Override
         protected List<Spawnpoint> getMobSpawns(IArenaPlayerCollection players) {
             return DistanceUtils.getClosestSpawns(
-                    getArena(), players, _mobSpawns, _settings.getMaxPathDistance());
+                    getArena(), players, _spawnGrid, _settings.getMaxPathDistance());
         }
 
         @Override
         protected void setMobTargets(List<LivingEntity> mobs) {
-            ProximitySpawner.this.setMobTargets(mobs);
+            ProximitySpawner.this.setMobTargets(mobs, _settings.getMaxMobDistanceSquared());
         }
     }
 
@@ -191,5 +232,25 @@ public class ProximitySpawner extends Spawner {
         protected int getMaxPathDistance() {
             return _settings.getMaxPathDistance();
         }
+
+        @Override
+        protected long getBudgetNanos() {
+            return _settings.getDespawnBudget();
+        }
+
+        @Override
+        protected int getLineOfSightCacheSize() {
+            return _settings.getLineOfSightCacheSize();
+        }
+
+        @Override
+        protected int getStuckTicks() {
+            return _settings.getStuckSeconds() * 20;
+        }
+
+        @Override
+        protected int getStuckDistance() {
+            return _settings.getStuckDistance();
+        }
     }
 }
@@ -40,26 +40,61 @@ import java.util.Map;
  */
 public class WaveSettings implements ISpawnerSettings {
 
+    public static final int DEFAULT_MAX_MOBS = 45;
+    public static final int DEFAULT_MAX_PER_SPAWN = 2;
+    public static final int DEFAULT_MAX_PER_CHUNK = -1;
+    public static final int DEFAULT_MAX_MOBS_PER_PLAYER = 8;
+    public static final int DEFAULT_WAVE_MULTIPLIER = 1;
+    public static final int DEFAULT_MAX_DISTANCE = 24;
+    public static final int DEFAULT_DESPAWN_BUDGET = 250000;
+    public static final int DEFAULT_SPAWNS_PER_TICK = 4;
+    public static final int DEFAULT_SPAWN_BUDGET = 1000000;
+    public static final int DEFAULT_LOS_CACHE_SIZE = 512;
+    public static final int DEFAULT_STUCK_SECONDS = 20;
+    public static final int DEFAULT_STUCK_DISTANCE = 2;
+    public static final int DEFAULT_SECONDS_BETWEEN_WAVES = 10;
+
     private static Map<String, PropertyDefinition> _possibleSettings;
 
     static {
         _possibleSettings = new SettingsBuilder()
-                .set("max-mobs", PropertyValueType.INTEGER, 45,
+                .set("max-mobs", PropertyValueType.INTEGER, DEFAULT_MAX_MOBS,
                         "Maximum mobs spawned.")
 
-                .set("max-per-spawn", PropertyValueType.INTEGER, 2,
+                .set("max-per-spawn", PropertyValueType.INTEGER, DEFAULT_MAX_PER_SPAWN,
                         "Maximum mobs alive per spawnpoint.")
 
-                .set("max-mobs-per-player", PropertyValueType.INTEGER, 8,
+                .set("max-per-chunk", PropertyValueType.INTEGER, DEFAULT_MAX_PER_CHUNK,
+                        "Maximum mobs alive per chunk. Spawnpoints in full chunks are skipped. -1 for no limit.")
+
+                .set("max-mobs-per-player", PropertyValueType.INTEGER, DEFAULT_MAX_MOBS_PER_PLAYER,
                         "Maximum mobs spawned per player.")
 
-                .set("wave-multiplier", PropertyValueType.INTEGER, 1,
+                .set("wave-multiplier", PropertyValueType.INTEGER, DEFAULT_WAVE_MULTIPLIER,
                         "Sets multiplier used to determine how many mobs to spawn in current wave.")
 
-                .set("max-distance", PropertyValueType.INTEGER, 24,
+                .set("max-distance", PropertyValueType.INTEGER, DEFAULT_MAX_DISTANCE,
                         "Maximum distance when detecting proximity.")
 
-                .set("seconds-between-waves", PropertyValueType.INTEGER, 10,
+                .set("despawn-budget", PropertyValueType.INTEGER, DEFAULT_DESPAWN_BUDGET,
+                        "Maximum nanoseconds per tick spent checking if mobs should despawn.")
+
+                .set("spawns-per-tick", PropertyValueType.INTEGER, DEFAULT_SPAWNS_PER_TICK,
+                        "Maximum mobs spawned per tick. Remaining mobs are spawned in later ticks.")
+
+                .set("spawn-budget", PropertyValueType.INTEGER, DEFAULT_SPAWN_BUDGET,
+                        "Maximum nanoseconds per tick spent spawning mobs.")
+
+                .set("los-cache-size", PropertyValueType.INTEGER, DEFAULT_LOS_CACHE_SIZE,
+                        "Maximum mob to player line of sight results cached. 0 disables the cache.")
+
+                .set("stuck-seconds", PropertyValueType.INTEGER, DEFAULT_STUCK_SECONDS,
+                        "Seconds a mob chasing a player can stay in place before it is despawned as stuck. 0 disables.")
+
+                .set("stuck-distance", PropertyValueType.INTEGER, DEFAULT_STUCK_DISTANCE,
+                        "Blocks a mob must move within the stuck seconds to not be despawned as stuck.")
+
+                .set("seconds-between-waves", PropertyValueType.INTEGER, DEFAULT_SECONDS_BETWEEN_WAVES,
                         "The number of seconds before the next wave begins.")
 
                 .set("display-wave-title", PropertyValueType.BOOLEAN, true,
@@ -75,14 +110,21 @@ public class WaveSettings implements ISpawnerSettings {
         ;
     }
 
-    private int _maxMobs = 45;
-    private int _maxMobsPerSpawn = 2;
-    private int _maxMobsPerPlayer = 8;
-    private int _waveMultiplier = 1;
-    private int _maxMobDistance = 24;
-    private int _secondsBetweenWaves = 10;
+    private int _maxMobs = DEFAULT_MAX_MOBS;
+    private int _maxMobsPerSpawn = DEFAULT_MAX_PER_SPAWN;
+    private int _maxMobsPerChunk = DEFAULT_MAX_PER_CHUNK;
+    private int _maxMobsPerPlayer = DEFAULT_MAX_MOBS_PER_PLAYER;
+    private int _waveMultiplier = DEFAULT_WAVE_MULTIPLIER;
+    private int _maxMobDistance = DEFAULT_MAX_DISTANCE;
+    private int _secondsBetweenWaves = DEFAULT_SECONDS_BETWEEN_WAVES;
     private boolean _displayWaveTitle = true;
     private int _maxMobDistanceSquared; // max distance when getting closest mob (squared)
+    private int _despawnBudget = DEFAULT_DESPAWN_BUDGET; // nanoseconds per tick
+    private int _spawnsPerTick = DEFAULT_SPAWNS_PER_TICK;
+    private int _spawnBudget = DEFAULT_SPAWN_BUDGET; // nanoseconds per tick
+    private int _lineOfSightCacheSize = DEFAULT_LOS_CACHE_SIZE;
+    private int _stuckSeconds = DEFAULT_STUCK_SECONDS;
+    private int _stuckDistance = DEFAULT_STUCK_DISTANCE; // blocks
     private boolean _isWaveBasedHealth = true;
     private double _waveBasedHealthFactor = 2.0D;
 
@@ -98,6 +140,7 @@ public class WaveSettings implements ISpawnerSettings {
             public void on(SettingsManager.PropertyValue argument) {
                 _maxMobs = _dataNode.getInteger("max-mobs", _maxMobs);
                 _maxMobsPerSpawn = _dataNode.getInteger("max-per-spawn", _maxMobsPerSpawn);
+                _maxMobsPerChunk = _dataNode.getInteger("max-per-chunk", _maxMobsPerChunk);
                 _maxMobsPerPlayer = _dataNode.getInteger("max-mobs-per-player", _maxMobsPerPlayer);
                 _waveMultiplier = _dataNode.getInteger("wave-multiplier", _waveMultiplier);
                 _maxMobDistance = _dataNode.getInteger("max-distance", _maxMobDistance);
@@ -105,6 +148,12 @@ public class WaveSettings implements ISpawnerSettings {
                 _displayWaveTitle = _dataNode.getBoolean("display-wave-title", _displayWaveTitle);
                 _isWaveBasedHealth = _dataNode.getBoolean("wave-based-health", _isWaveBasedHealth);
                 _waveBasedHealthFactor = _dataNode.getDouble("wave-based-health-factor", _waveBasedHealthFactor);
+                _despawnBudget = _dataNode.getInteger("despawn-budget", _despawnBudget);
+                _spawnsPerTick = _dataNode.getInteger("spawns-per-tick", _spawnsPerTick);
+                _spawnBudget = _dataNode.getInteger("spawn-budget", _spawnBudget);
+                _lineOfSightCacheSize = _dataNode.getInteger("los-cache-size", _lineOfSightCacheSize);
+                _stuckSeconds = _dataNode.getInteger("stuck-seconds", _stuckSeconds);
+                _stuckDistance = _dataNode.getInteger("stuck-distance", _stuckDistance);
 
                 _maxMobDistanceSquared = _maxMobDistance * _maxMobDistance;
             }
@@ -144,6 +193,14 @@ public class WaveSettings implements ISpawnerSettings {
         _settingsManager.set("max-per-spawn", value);
     }
 
+    public int getMaxMobsPerChunk() {
+        return _maxMobsPerChunk;
+    }
+
+    public void setMaxMobsPerChunk(int value) {
+        _settingsManager.set("max-per-chunk", value);
+    }
+
     public int getWaveMultiplier() {
         return _waveMultiplier;
     }
@@ -180,6 +237,54 @@ public class WaveSettings implements ISpawnerSettings {
         return _maxMobDistanceSquared;
     }
 
+    public int getDespawnBudget() {
+        return _despawnBudget;
+    }
+
+    public void setDespawnBudget(int nanoseconds) {
+        _settingsManager.set("despawn-budget", nanoseconds);
+    }
+
+    public int getSpawnsPerTick() {
+        return _spawnsPerTick;
+    }
+
+    public void setSpawnsPerTick(int value) {
+        _settingsManager.set("spawns-per-tick", value);
+    }
+
+    public int getSpawnBudget() {
+        return _spawnBudget;
+    }
+
+    public void setSpawnBudget(int nanoseconds) {
+        _settingsManager.set("spawn-budget", nanoseconds);
+    }
+
+    public int getLineOfSightCacheSize() {
+        return _lineOfSightCacheSize;
+    }
+
+    public void setLineOfSightCacheSize(int size) {
+        _settingsManager.set("los-cache-size", size);
+    }
+
+    public int getStuckSeconds() {
+        return _stuckSeconds;
+    }
+
+    public void setStuckSeconds(int seconds) {
+        _settingsManager.set("stuck-seconds", seconds);
+    }
+
+    public int getStuckDistance() {
+        return _stuckDistance;
+    }
+
+    public void setStuckDistance(int distance) {
+        _settingsManager.set("stuck-distance", distance);
+    }
+
     public int getSecondsBetweenWaves() {
         return _secondsBetweenWaves;
     }
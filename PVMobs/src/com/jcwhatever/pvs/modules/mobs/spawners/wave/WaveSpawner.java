@@ -29,11 +29,9 @@ import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
 import com.jcwhatever.nucleus.managed.titles.Titles;
 import com.jcwhatever.nucleus.utils.Rand;
 import com.jcwhatever.pvs.api.PVStarAPI;
-import com.jcwhatever.pvs.api.arena.IArenaPlayer;
 import com.jcwhatever.pvs.api.arena.collections.IArenaPlayerCollection;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.api.utils.ArenaScheduler;
-import com.jcwhatever.pvs.modules.mobs.DespawnMethod;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
 import com.jcwhatever.pvs.modules.mobs.spawners.ISpawnerSettings;
 import com.jcwhatever.pvs.modules.mobs.spawners.MobRemoveReason;
@@ -41,12 +39,13 @@ import com.jcwhatever.pvs.modules.mobs.spawners.SpawnerInfo;
 import com.jcwhatever.pvs.modules.mobs.spawners.base.DespawnMobsTask;
 import com.jcwhatever.pvs.modules.mobs.spawners.base.SpawnMobsTask;
 import com.jcwhatever.pvs.modules.mobs.spawners.base.Spawner;
+import com.jcwhatever.pvs.modules.mobs.spawners.base.SpawnpointInfo;
 import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
-import org.bukkit.entity.Creature;
+import com.jcwhatever.pvs.modules.mobs.utils.SpawnpointGrid;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.PigZombie;
 
 import java.util.List;
+import javax.annotation.Nullable;
 
 @SpawnerInfo(
         name="Wave",
@@ -54,8 +53,19 @@ import java.util.List;
 )
 public class WaveSpawner extends Spawner {
 
+    /**
+     * The ticks between spawning mobs.
+     */
+    public static final int SPAWN_INTERVAL = 19;
+
+    /**
+     * The max path distance from a spawn to a player.
+     */
+    public static final int MAX_PATH_DISTANCE = 34;
+
     private WaveSettings _settings;
     private List<Spawnpoint> _mobSpawns;
+    private SpawnpointGrid<Spawnpoint> _spawnGrid;
     private int _wave = 1;
     private int _totalSpawned = 0;
     private int _totalKilled = 0;
@@ -72,6 +82,11 @@ public class WaveSpawner extends Spawner {
         return _settings;
     }
 
+    @Override
+    protected int getMaxMobsPerChunk() {
+        return _settings.getMaxMobsPerChunk();
+    }
+
     @Override
     public int getSpawnLimit() {
         return Math.min(_settings.getMaxMobs(), Math.max(0, getWaveMobCount(_wave) - _totalSpawned));
@@ -86,9 +101,10 @@ public class WaveSpawner extends Spawner {
     protected void onRun() {
 
         _mobSpawns = getExtension().getMobSpawns();
+        _spawnGrid = new SpawnpointGrid<>(_mobSpawns);
 
-        _spawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), Rand.getInt(19), 19, new SpawnTask());
-        _despawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), Rand.getInt(12), 12, new DespawnMobs());
+        _spawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), Rand.getInt(SPAWN_INTERVAL), SPAWN_INTERVAL, new SpawnTask());
+        _despawnMobsTask = ArenaScheduler.runTaskRepeat(getArena(), Rand.getInt(12), 1, setDespawnTask(new DespawnMobs()));
     }
 
     @Override
@@ -153,38 +169,6 @@ public class WaveSpawner extends Spawner {
         }
     }
 
-    /*
-     * Set mob targets
-     */
-    private void setMobTargets(List<LivingEntity> mobs) {
-
-        for (LivingEntity entity : mobs) {
-
-            if (!(entity instanceof Creature))
-                continue;
-
-            Creature creature = (Creature)entity;
-
-            IArenaPlayer closest = DistanceUtils.getClosestPlayer(
-                    getArena().getGame().getPlayers(), creature.getLocation(), _settings.getMaxMobDistanceSquared());
-
-            if (closest == null) {
-                removeMob(entity, DespawnMethod.REMOVE, MobRemoveReason.OUT_OF_RANGE);
-                continue;
-            }
-
-            if (!(closest.getEntity() instanceof LivingEntity))
-                continue;
-
-            creature.setTarget((LivingEntity)closest.getEntity());
-
-            if (creature instanceof PigZombie) {
-                PigZombie pigZ = (PigZombie)creature;
-                pigZ.setAngry(true);
-            }
-        }
-    }
-
     private int getWaveMobCount(int wave) {
         return wave * _settings.getWaveMultiplier() * getArena().getGame().getPlayers().size();
     }
@@ -205,20 +189,30 @@ public class WaveSpawner extends Spawner {
             return _settings.getMaxMobsPerSpawn();
         }
 
+        @Override
+        protected int getMaxSpawnsPerTick() {
+            return _settings.getSpawnsPerTick();
+        }
+
+        @Override
+        protected long getSpawnBudgetNanos() {
+            return _settings.getSpawnBudget();
+        }
+
         @Override
         protected List<Spawnpoint> getMobSpawns(IArenaPlayerCollection players) {
             return DistanceUtils.getClosestSpawns(
-                    getArena(), players, _mobSpawns, 34);
+                    getArena(), players, _spawnGrid, MAX_PATH_DISTANCE);
         }
 
         @Override
         protected void setMobTargets(List<LivingEntity> mobs) {
-            WaveSpawner.this.setMobTargets(mobs);
+            WaveSpawner.this.setMobTargets(mobs, _settings.getMaxMobDistanceSquared());
         }
 
         @Override
-        protected int getSpawnCount(int maxMobsPerSpawn) {
-            return Math.min(1, super.getSpawnCount(maxMobsPerSpawn));
+        protected int getSpawnCount(int maxMobsPerSpawn, @Nullable SpawnpointInfo info) {
+            return Math.min(1, super.getSpawnCount(maxMobsPerSpawn, info));
         }
     }
 
@@ -240,7 +234,27 @@ public class WaveSpawner extends Spawner {
 
         @Override
         protected int getMaxPathDistance() {
-            return 34;
+            return MAX_PATH_DISTANCE;
+        }
+
+        @Override
+        protected long getBudgetNanos() {
+            return _settings.getDespawnBudget();
+        }
+
+        @Override
+        protected int getLineOfSightCacheSize() {
+            return _settings.getLineOfSightCacheSize();
+        }
+
+        @Override
+        protected int getStuckTicks() {
+            return _settings.getStuckSeconds() * 20;
+        }
+
+        @Override
+        protected int getStuckDistance() {
+            return _settings.getStuckDistance();
         }
     }
 }
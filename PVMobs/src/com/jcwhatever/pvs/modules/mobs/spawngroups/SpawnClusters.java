@@ -0,0 +1,269 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.spawngroups;
+
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Disjoint set of spawns used to cluster spawns into groups.
+ *
+ * Each cluster tracks the block bounds of its spawns. Two clusters are only
+ * joined if the joined bounds do not exceed the max size on any axis and
+ * every spawn in one cluster is connected to every spawn in the other, so
+ * any spawn chosen as the primary of a group reaches all other spawns in
+ * the group.
+ */
+class SpawnClusters {
+
+    private final List<Spawnpoint> _spawns;
+    private final int _maxSize;
+    private final Set<Long> _connected;
+
+    private final int[] _parents;
+    private final int[] _sizes;
+
+    // next spawn in the circular list of the spawns in each cluster
+    private final int[] _next;
+
+    // bounds of each cluster, only valid for cluster roots
+    private final int[] _xMin;
+    private final int[] _yMin;
+    private final int[] _zMin;
+    private final int[] _xMax;
+    private final int[] _yMax;
+    private final int[] _zMax;
+
+    /*
+     * Constructor. Each spawn starts in its own cluster.
+     *
+     * The connected set contains the pairs of spawns that reach each other
+     * keyed by (lower index * total spawns + higher index).
+     */
+    SpawnClusters(List<Spawnpoint> spawns, int maxSize, Set<Long> connected) {
+        _spawns = spawns;
+        _maxSize = maxSize;
+        _connected = connected;
+
+        int total = spawns.size();
+
+        _parents = new int[total];
+        _sizes = new int[total];
+        _next = new int[total];
+        _xMin = new int[total];
+        _yMin = new int[total];
+        _zMin = new int[total];
+        _xMax = new int[total];
+        _yMax = new int[total];
+        _zMax = new int[total];
+
+        for (int i = 0; i < total; i++) {
+            Spawnpoint spawn = spawns.get(i);
+
+            _parents[i] = i;
+            _sizes[i] = 1;
+            _next[i] = i;
+            _xMin[i] = _xMax[i] = spawn.getBlockX();
+            _yMin[i] = _yMax[i] = spawn.getBlockY();
+            _zMin[i] = _zMax[i] = spawn.getBlockZ();
+        }
+    }
+
+    /*
+     * Get the root index of the cluster a spawn is in.
+     */
+    int find(int index) {
+
+        int root = index;
+        while (_parents[root] != root)
+            root = _parents[root];
+
+        // compress path
+        while (_parents[index] != root) {
+            int next = _parents[index];
+            _parents[index] = root;
+            index = next;
+        }
+
+        return root;
+    }
+
+    /*
+     * Join the clusters of two spawns.
+     *
+     * Returns false if the spawns are already in the same cluster, if the
+     * joined cluster would be too large or if any spawn in one cluster is
+     * not connected to a spawn in the other.
+     */
+    boolean union(int index1, int index2) {
+
+        int root1 = find(index1);
+        int root2 = find(index2);
+
+        if (root1 == root2)
+            return false;
+
+        int xMin = Math.min(_xMin[root1], _xMin[root2]);
+        int yMin = Math.min(_yMin[root1], _yMin[root2]);
+        int zMin = Math.min(_zMin[root1], _zMin[root2]);
+        int xMax = Math.max(_xMax[root1], _xMax[root2]);
+        int yMax = Math.max(_yMax[root1], _yMax[root2]);
+        int zMax = Math.max(_zMax[root1], _zMax[root2]);
+
+        if (xMax - xMin > _maxSize || yMax - yMin > _maxSize || zMax - zMin > _maxSize)
+            return false;
+
+        if (!isConnected(root1, root2))
+            return false;
+
+        // attach smaller cluster to larger, lower index wins ties
+        if (_sizes[root1] < _sizes[root2] ||
+                (_sizes[root1] == _sizes[root2] && root2 < root1)) {
+            int swap = root1;
+            root1 = root2;
+            root2 = swap;
+        }
+
+        _parents[root2] = root1;
+        _sizes[root1] += _sizes[root2];
+
+        // splice the circular member lists
+        int next = _next[root1];
+        _next[root1] = _next[root2];
+        _next[root2] = next;
+
+        _xMin[root1] = xMin;
+        _yMin[root1] = yMin;
+        _zMin[root1] = zMin;
+        _xMax[root1] = xMax;
+        _yMax[root1] = yMax;
+        _zMax[root1] = zMax;
+
+        return true;
+    }
+
+    /*
+     * Determine if every spawn in one cluster is connected to every
+     * spawn in the other cluster.
+     */
+    private boolean isConnected(int root1, int root2) {
+
+        long total = _spawns.size();
+        int index1 = root1;
+
+        do {
+
+            int index2 = root2;
+
+            do {
+
+                long key = index1 < index2
+                        ? index1 * total + index2
+                        : index2 * total + index1;
+
+                if (!_connected.contains(key))
+                    return false;
+
+                index2 = _next[index2];
+
+            } while (index2 != root2);
+
+            index1 = _next[index1];
+
+        } while (index1 != root1);
+
+        return true;
+    }
+
+    /*
+     * Get the clusters as spawn groups. The primary spawn of each group is
+     * the spawn closest to the center of the cluster bounds and is first
+     * in the group. Groups are ordered by the index of their first spawn.
+     */
+    List<List<Spawnpoint>> getGroups() {
+
+        int total = _spawns.size();
+        List<List<Spawnpoint>> groups = new ArrayList<>(total);
+
+        // index of the group for each cluster root
+        int[] groupIndexes = new int[total];
+        Arrays.fill(groupIndexes, -1);
+
+        int[] primaries = new int[total];
+        long[] primaryDistances = new long[total];
+
+        for (int i = 0; i < total; i++) {
+
+            int root = find(i);
+            Spawnpoint spawn = _spawns.get(i);
+
+            // distance from cluster center, doubled to keep integer precision
+            long dx = 2L * spawn.getBlockX() - _xMin[root] - _xMax[root];
+            long dy = 2L * spawn.getBlockY() - _yMin[root] - _yMax[root];
+            long dz = 2L * spawn.getBlockZ() - _zMin[root] - _zMax[root];
+            long distance = dx * dx + dy * dy + dz * dz;
+
+            List<Spawnpoint> group;
+
+            if (groupIndexes[root] == -1) {
+                group = new ArrayList<>(_sizes[root]);
+                groupIndexes[root] = groups.size();
+                groups.add(group);
+                primaries[root] = 0;
+                primaryDistances[root] = distance;
+            }
+            else {
+                group = groups.get(groupIndexes[root]);
+
+                if (distance < primaryDistances[root]) {
+                    primaries[root] = group.size();
+                    primaryDistances[root] = distance;
+                }
+            }
+
+            group.add(spawn);
+        }
+
+        // move primaries to the front
+        for (int i = 0; i < total; i++) {
+
+            if (find(i) != i)
+                continue;
+
+            int primary = primaries[i];
+            if (primary == 0)
+                continue;
+
+            List<Spawnpoint> group = groups.get(groupIndexes[i]);
+            group.add(0, group.remove(primary));
+        }
+
+        return groups;
+    }
+}
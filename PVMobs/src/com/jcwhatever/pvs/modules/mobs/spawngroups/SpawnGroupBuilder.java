@@ -0,0 +1,246 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.spawngroups;
+
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.PVStarAPI;
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import com.jcwhatever.pvs.modules.mobs.MobsModule;
+import com.jcwhatever.pvs.modules.mobs.paths.IBlockAccessor;
+import com.jcwhatever.pvs.modules.mobs.paths.PathFlood;
+import com.jcwhatever.pvs.modules.mobs.paths.PathVolume;
+import com.jcwhatever.pvs.modules.mobs.paths.WorldSnapshot;
+import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import com.jcwhatever.pvs.modules.mobs.utils.SpawnpointGrid;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Groups spawnpoints that are within path distance of each other in
+ * the background.
+ *
+ * <p>The chunks around the spawns are captured as snapshots on the main thread,
+ * the path searches are run against the snapshots on a worker thread and the
+ * finish callback is invoked on the main thread.</p>
+ */
+public class SpawnGroupBuilder {
+
+    private final List<Spawnpoint> _spawns;
+    private final int _searchRadius;
+
+    private volatile List<List<Spawnpoint>> _groups;
+    private volatile boolean _isCancelled;
+    private boolean _isStarted;
+
+    /**
+     * Constructor.
+     *
+     * @param spawns        The spawns to group.
+     * @param searchRadius  The max radius and path distance between spawns in a group.
+     */
+    public SpawnGroupBuilder(Collection<? extends Spawnpoint> spawns, int searchRadius) {
+        PreCon.notNull(spawns);
+        PreCon.greaterThanZero(searchRadius);
+
+        _spawns = new ArrayList<>(spawns);
+        _searchRadius = searchRadius;
+    }
+
+    /**
+     * Get the generated groups. The first spawn in each group is
+     * the primary spawn.
+     *
+     * @return  The groups or null if not finished.
+     */
+    @Nullable
+    public List<List<Spawnpoint>> getGroups() {
+        return _groups;
+    }
+
+    /**
+     * Determine if the builder was cancelled.
+     */
+    public boolean isCancelled() {
+        return _isCancelled;
+    }
+
+    /**
+     * Cancel the builder. The finish callback is not invoked.
+     */
+    public void cancel() {
+        _isCancelled = true;
+    }
+
+    /**
+     * Capture snapshots and start grouping. Must be invoked
+     * from the main thread.
+     *
+     * @param world     The world the spawns are in.
+     * @param onFinish  Invoked on the main thread when the groups are ready.
+     */
+    public void start(World world, final Runnable onFinish) {
+        PreCon.notNull(world);
+        PreCon.notNull(onFinish);
+
+        if (_isStarted)
+            throw new IllegalStateException("Spawn group builder already started.");
+
+        _isStarted = true;
+
+        // chunk snapshots must be taken on the main thread
+        final WorldSnapshot snapshot = new WorldSnapshot(world, _spawns, _searchRadius + PathFlood.SEARCH_MARGIN);
+
+        MobsModule.getModule().getWorkers().execute(new Runnable() {
+            @Override
+            public void run() {
+
+                if (_isCancelled)
+                    return;
+
+                final List<List<Spawnpoint>> groups = createGroups(snapshot);
+
+                Scheduler.runTaskLater(PVStarAPI.getPlugin(), 1, new Runnable() {
+                    @Override
+                    public void run() {
+
+                        if (_isCancelled)
+                            return;
+
+                        _groups = groups;
+                        onFinish.run();
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+     * Group spawns. Invoked from the worker thread and by benchmarks.
+     *
+     * Each spawn is flooded once. Spawns that reach each other are joined,
+     * closest pairs first, as long as the group stays within the search
+     * radius and every spawn in the group reaches every other spawn. Spawns
+     * are sorted by name so the result does not depend on the order the
+     * spawns were provided in.
+     */
+    List<List<Spawnpoint>> createGroups(IBlockAccessor blocks) {
+
+        PathFlood flood = new PathFlood(blocks, DistanceUtils.MAX_DROP_HEIGHT);
+
+        List<Spawnpoint> spawns = new ArrayList<>(_spawns);
+        Collections.sort(spawns, new Comparator<Spawnpoint>() {
+            @Override
+            public int compare(Spawnpoint o1, Spawnpoint o2) {
+                return o1.getSearchName().compareTo(o2.getSearchName());
+            }
+        });
+
+        int total = spawns.size();
+        int[] surfaces = new int[total];
+        Map<Spawnpoint, Integer> indexes = new IdentityHashMap<>(total);
+
+        for (int i = 0; i < total; i++) {
+            Spawnpoint spawn = spawns.get(i);
+            surfaces[i] = flood.findSurfaceBelow(spawn.getBlockX(), spawn.getBlockY(), spawn.getBlockZ());
+            indexes.put(spawn, i);
+        }
+
+        SpawnpointGrid<Spawnpoint> grid = new SpawnpointGrid<>(spawns);
+        List<Spawnpoint> nearby = new ArrayList<>(10);
+
+        // path distance from one spawn to another keyed by from * total + to
+        Map<Long, Integer> reached = new HashMap<>(total * 4);
+
+        for (int i = 0; i < total && !_isCancelled; i++) {
+
+            if (surfaces[i] == -1)
+                continue;
+
+            Spawnpoint spawn = spawns.get(i);
+            PathVolume paths = flood.search(spawn, _searchRadius, _searchRadius);
+
+            nearby.clear();
+            grid.getNearby(spawn, _searchRadius, nearby);
+
+            for (Spawnpoint other : nearby) {
+
+                int j = indexes.get(other);
+                if (j == i || surfaces[j] == -1)
+                    continue;
+
+                int distance = paths.getDistance(other.getBlockX(), surfaces[j], other.getBlockZ());
+                if (distance != -1)
+                    reached.put((long)i * total + j, distance);
+            }
+        }
+
+        // pairs that reach each other sorted by distance, then by index
+        long[] pairs = new long[reached.size()];
+        int totalPairs = 0;
+
+        Set<Long> connected = new HashSet<>(reached.size());
+
+        for (Map.Entry<Long, Integer> entry : reached.entrySet()) {
+
+            long key = entry.getKey();
+            int i = (int)(key / total);
+            int j = (int)(key % total);
+
+            if (i > j)
+                continue;
+
+            Integer reverse = reached.get((long)j * total + i);
+            if (reverse == null)
+                continue;
+
+            long distance = Math.max(entry.getValue(), reverse);
+            pairs[totalPairs++] = (distance << 40) | ((long)i << 20) | j;
+            connected.add(key);
+        }
+
+        Arrays.sort(pairs, 0, totalPairs);
+
+        SpawnClusters clusters = new SpawnClusters(spawns, _searchRadius, connected);
+
+        for (int p = 0; p < totalPairs; p++) {
+            clusters.union((int)((pairs[p] >>> 20) & 0xFFFFF), (int)(pairs[p] & 0xFFFFF));
+        }
+
+        return clusters.getGroups();
+    }
+}
@@ -25,8 +25,6 @@
 
 package com.jcwhatever.pvs.modules.mobs.spawngroups;
 
-import com.jcwhatever.nucleus.managed.astar.AStar;
-import com.jcwhatever.nucleus.managed.astar.IAStarSettings;
 import com.jcwhatever.nucleus.storage.IDataNode;
 import com.jcwhatever.nucleus.utils.PreCon;
 import com.jcwhatever.nucleus.utils.text.TextUtils;
@@ -34,17 +32,18 @@ import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.api.utils.Msg;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
 import com.jcwhatever.pvs.modules.mobs.paths.PathCache;
+import com.jcwhatever.pvs.modules.mobs.paths.PathCacheGenerator.IProgressHandler;
 import com.jcwhatever.pvs.modules.mobs.utils.DistanceUtils;
+import org.bukkit.World;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 public class SpawnGroupGenerator {
 
@@ -53,11 +52,18 @@ public class SpawnGroupGenerator {
     private final IDataNode _groupsNode;
     private final IDataNode _dataNode;
     private PathCache _pathCache;
+    private SpawnGroupBuilder _builder;
 
     private List<Spawnpoint> _spawnGroups;
-    private boolean _groupsLoaded;
 
 
+    /**
+     * Constructor. Loads saved spawn groups if the spawns have not changed
+     * since they were generated.
+     *
+     * @param manager      The owning extension.
+     * @param spawnpoints  The spawns to group.
+     */
     public SpawnGroupGenerator(MobArenaExtension manager, Collection<Spawnpoint> spawnpoints) {
         PreCon.notNull(manager);
         PreCon.notNull(spawnpoints);
@@ -71,37 +77,44 @@ public class SpawnGroupGenerator {
             _mobSpawns.put(spawn.getSearchName(), spawn);
         }
 
-        loadSpawnGroups(false);
-
-        assert _spawnGroups != null;
-
-        if (_spawnGroups.size() == 0 && spawnpoints.size() > 0) {
+        if (_mobSpawns.isEmpty()) {
+            _spawnGroups = new ArrayList<>(0);
+        }
+        else if (!isSpawnsChanged() && !loadSpawnGroups()) {
             Msg.warning("PVMobs extension spawn group error. Groups are empty. " +
                             "Cache might be corrupted in arena '{0}'.",
                     manager.getArena().getName());
         }
+
+        if (_pathCache == null)
+            setPathCache(new PathCache(_manager, _spawnGroups != null ? _spawnGroups : new ArrayList<Spawnpoint>(0)));
     }
 
     public PathCache getPathCache() {
         return _pathCache;
     }
 
-    public void reloadSpawnGroups() {
-        if (!loadSpawnGroups(true)) {
-            new CreateSpawnGroups().run();
-        }
+    /**
+     * Determine if spawn groups are loaded or generated.
+     */
+    public boolean isLoaded() {
+        return _spawnGroups != null;
     }
 
-    public List<Spawnpoint> getSpawnGroups() {
-        if (_spawnGroups == null) {
+    /**
+     * Determine if spawn groups are being generated.
+     */
+    public boolean isGenerating() {
+        return _builder != null;
+    }
 
-            if (!_groupsLoaded && !loadSpawnGroups(false)) {
-                new CreateSpawnGroups().run();
-            }
-            else {
-                return new ArrayList<>(_mobSpawns.values());
-            }
-        }
+    /**
+     * Get the spawn groups. If the groups are not loaded, each
+     * spawn is returned individually.
+     */
+    public List<Spawnpoint> getSpawnGroups() {
+        if (_spawnGroups == null)
+            return new ArrayList<>(_mobSpawns.values());
 
         return new ArrayList<>(_spawnGroups);
     }
@@ -111,15 +124,69 @@ public class SpawnGroupGenerator {
         _groupsNode.save();
     }
 
-    public void clearGroups() {
-        _spawnGroups = null;
-        clearGroupCache();
+    /**
+     * Generate spawn groups in the background and cache paths for the new groups.
+     * The current groups remain in use until the new groups are ready.
+     *
+     * @param onFinish  Optional callback invoked on the main thread when the groups are ready.
+     * @param handler   Optional handler to receive path cache progress updates.
+     *
+     * @return  True if started, false if the arena world is not loaded.
+     */
+    public boolean generateGroups(@Nullable final Runnable onFinish, @Nullable final IProgressHandler handler) {
+
+        World world = _manager.getArena().getRegion().getWorld();
+        if (world == null)
+            return false;
+
+        cancelGenerateGroups();
+
+        final SpawnGroupBuilder builder = new SpawnGroupBuilder(_mobSpawns.values(), DistanceUtils.SEARCH_RADIUS);
+        _builder = builder;
+
+        builder.start(world, new Runnable() {
+            @Override
+            public void run() {
+
+                List<List<Spawnpoint>> result = builder.getGroups();
+                assert result != null;
+
+                _builder = null;
+
+                setSpawnGroups(result);
+
+                _pathCache.cachePaths(
+                        PathCache.DEFAULT_SEARCH_RADIUS, PathCache.DEFAULT_MAX_PATH_DISTANCE, handler);
+
+                if (onFinish != null)
+                    onFinish.run();
+            }
+        });
+
+        return true;
     }
 
-    public void generateGroups() {
-        new CreateSpawnGroups().run();
+    /**
+     * Cancel generating spawn groups. The current groups remain in use.
+     *
+     * @return  True if group generation was cancelled.
+     */
+    public boolean cancelGenerateGroups() {
+        if (_builder == null)
+            return false;
+
+        _builder.cancel();
+        _builder = null;
+        return true;
     }
 
+    /**
+     * Cancel group generation and path caching.
+     */
+    public void dispose() {
+        cancelGenerateGroups();
+        _pathCache.dispose();
+    }
 
     public boolean isSpawnsChanged() {
 
@@ -142,18 +209,12 @@ public class SpawnGroupGenerator {
     }
 
 
-    private boolean loadSpawnGroups(boolean force) {
-
-        if (force || isSpawnsChanged()) {
-            generateGroups();
-        }
+    private boolean loadSpawnGroups() {
 
         int groupSize = _groupsNode.size();
 
-        if (groupSize == 0) {
-            _pathCache = new PathCache(_manager, new ArrayList<Spawnpoint>(0));
+        if (groupSize == 0)
             return false;
-        }
 
         List<Spawnpoint> groups = new ArrayList<>(groupSize);
 
@@ -188,14 +249,43 @@ public class SpawnGroupGenerator {
             }
         }
 
+        if (groups.isEmpty())
+            return false;
+
         _spawnGroups = groups;
-        _groupsLoaded = true;
 
-        _pathCache = new PathCache(_manager, groups);
+        setPathCache(new PathCache(_manager, groups));
 
         return true;
     }
 
+    /*
+     * Replace the spawn groups with generated groups and save them.
+     */
+    private void setSpawnGroups(List<List<Spawnpoint>> generated) {
+
+        List<Spawnpoint> groups = new ArrayList<>(generated.size());
+
+        for (List<Spawnpoint> spawns : generated) {
+
+            // the first spawn is the primary
+            SpawnGroup group = new SpawnGroup(_manager, spawns.get(0));
+            group.addSpawns(spawns);
+            groups.add(group);
+        }
+
+        _spawnGroups = groups;
+
+        setPathCache(new PathCache(_manager, groups));
+
+        try {
+            _pathCache.clearCachePaths();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        saveSpawnGroups();
+    }
 
     private void saveSpawnGroups() {
 
@@ -220,75 +310,19 @@ public class SpawnGroupGenerator {
 
         // add spawn list to data node so changes to spawns can be detected
         List<String> currentSpawnList = new ArrayList<>(_mobSpawns.keySet());
-        _pathCache = new PathCache(_manager, groups);
         _dataNode.set("spawns", currentSpawnList);
         _dataNode.save();
     }
 
-    /**
-     * Generate spawn groups
+    /*
+     * Replace the current path cache, cancelling any path
+     * generation in the previous cache.
      */
-    private class CreateSpawnGroups implements Runnable {
-
-        final IAStarSettings settings = AStar.createSettings()
-                .setMaxDropHeight(DistanceUtils.MAX_DROP_HEIGHT)
-                .setMaxIterations(DistanceUtils.MAX_ITERATIONS)
-                .setRange(DistanceUtils.SEARCH_RADIUS);
-
-        @Override
-        public void run() {
-
-            List<Spawnpoint> groups = new ArrayList<>(_mobSpawns.size());
+    private void setPathCache(PathCache pathCache) {
 
-            Deque<Spawnpoint> spawnPool = new ArrayDeque<>(_mobSpawns.values());
-            int searchRadiusSquared = DistanceUtils.SEARCH_RADIUS * DistanceUtils.SEARCH_RADIUS;
+        if (_pathCache != null)
+            _pathCache.dispose();
 
-            while (!spawnPool.isEmpty()) {
-
-                // get a spawn and make it the primary of a new spawn group
-                Spawnpoint primary = spawnPool.remove();
-                SpawnGroup group = new SpawnGroup(_manager, primary);
-
-                // find candidates to add to the group
-                Deque<Spawnpoint> groupCandidates = new ArrayDeque<>(spawnPool);
-
-                while (!groupCandidates.isEmpty()) {
-
-                    Spawnpoint candidate = groupCandidates.remove();
-
-                    double distance = primary.distanceSquared(candidate);
-
-                    if (distance <= searchRadiusSquared) {
-
-                        int pathDistance = AStar.search(primary, candidate, settings)
-                                .getPathDistance();
-
-                        if (pathDistance > -1 && pathDistance <= DistanceUtils.SEARCH_RADIUS) {
-                            group.addSpawn(candidate);
-
-                            // remove candidate from spawn pool
-                            spawnPool.remove(candidate);
-                        }
-                    }
-                }
-
-                groups.add(group);
-            }
-
-
-            _spawnGroups = groups;
-
-            _pathCache = new PathCache(_manager, groups);
-
-            try {
-                _pathCache.clearCachePaths();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            _pathCache.cachePaths(16, 18);
-
-            saveSpawnGroups();
-        }
+        _pathCache = pathCache;
     }
-
 }
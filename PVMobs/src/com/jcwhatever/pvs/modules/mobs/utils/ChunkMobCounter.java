@@ -0,0 +1,178 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Counts tracked mobs per chunk.
+ *
+ * <p>Counts are maintained incrementally. Mobs are added when spawned,
+ * removed when untracked and moved to a new chunk when their location
+ * is updated, so reading the count of a chunk does not iterate mobs.</p>
+ */
+public class ChunkMobCounter {
+
+    private static final int KEY_BITS = 32;
+
+    private final Map<UUID, Long> _mobChunks = new HashMap<>(100);
+    private final Map<Long, Count> _counts = new HashMap<>(25);
+
+    /**
+     * Get the number of chunks that have mobs.
+     */
+    public int size() {
+        return _counts.size();
+    }
+
+    /**
+     * Get the number of mobs in the chunk that contains a location.
+     *
+     * @param location  The location.
+     */
+    public int getCount(Location location) {
+        PreCon.notNull(location);
+
+        return getCount(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Get the number of mobs in a chunk.
+     *
+     * @param chunkX  The chunk X coordinates.
+     * @param chunkZ  The chunk Z coordinates.
+     */
+    public int getCount(int chunkX, int chunkZ) {
+        Count count = _counts.get(getKey(chunkX, chunkZ));
+        return count != null ? count.value : 0;
+    }
+
+    /**
+     * Add a mob.
+     *
+     * @param mob       The mob entity.
+     * @param location  The current location of the mob.
+     *
+     * @return  True if added, false if the mob is already counted.
+     */
+    public boolean add(Entity mob, Location location) {
+        PreCon.notNull(mob);
+        PreCon.notNull(location);
+
+        UUID id = mob.getUniqueId();
+        if (_mobChunks.containsKey(id))
+            return false;
+
+        long key = getKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+
+        _mobChunks.put(id, key);
+        increment(key);
+        return true;
+    }
+
+    /**
+     * Remove a mob.
+     *
+     * @param mob  The mob entity.
+     *
+     * @return  True if removed, false if the mob is not counted.
+     */
+    public boolean remove(Entity mob) {
+        PreCon.notNull(mob);
+
+        Long key = _mobChunks.remove(mob.getUniqueId());
+        if (key == null)
+            return false;
+
+        decrement(key);
+        return true;
+    }
+
+    /**
+     * Update the chunk a mob is counted in.
+     *
+     * @param mob       The mob entity.
+     * @param location  The current location of the mob.
+     */
+    public void update(Entity mob, Location location) {
+        PreCon.notNull(mob);
+        PreCon.notNull(location);
+
+        UUID id = mob.getUniqueId();
+        Long current = _mobChunks.get(id);
+        if (current == null)
+            return;
+
+        long key = getKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        if (key == current)
+            return;
+
+        _mobChunks.put(id, key);
+        decrement(current);
+        increment(key);
+    }
+
+    /**
+     * Remove all mobs.
+     */
+    public void clear() {
+        _mobChunks.clear();
+        _counts.clear();
+    }
+
+    private void increment(long key) {
+        Count count = _counts.get(key);
+        if (count == null) {
+            count = new Count();
+            _counts.put(key, count);
+        }
+        count.value++;
+    }
+
+    private void decrement(long key) {
+        Count count = _counts.get(key);
+        if (count == null)
+            return;
+
+        count.value--;
+
+        if (count.value <= 0)
+            _counts.remove(key);
+    }
+
+    private static long getKey(int chunkX, int chunkZ) {
+        return ((long)chunkX << KEY_BITS) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static class Count {
+        int value;
+    }
+}
@@ -35,14 +35,20 @@ import com.jcwhatever.pvs.api.arena.IArenaPlayer;
 import com.jcwhatever.pvs.api.arena.extensions.ArenaExtension;
 import com.jcwhatever.pvs.api.spawns.Spawnpoint;
 import com.jcwhatever.pvs.modules.mobs.MobArenaExtension;
+import com.jcwhatever.pvs.modules.mobs.paths.HierarchicalPathfinder;
 import com.jcwhatever.pvs.modules.mobs.paths.PathCache;
 import com.jcwhatever.pvs.modules.mobs.paths.PathCacheEntry;
+import com.jcwhatever.pvs.modules.mobs.paths.PathDistanceMemo;
+import com.jcwhatever.pvs.modules.mobs.paths.PathVolume;
 import org.bukkit.Location;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
 
 public class DistanceUtils {
 
@@ -77,65 +83,169 @@ public class DistanceUtils {
         if (source.distanceSquared(destination) > searchRadius * searchRadius)
             return false;
 
+        MobArenaExtension extension = null;
+        PathDistanceMemo memo = null;
+
         // check for cached paths first
         ArenaExtension manager = arena.getExtensions().get(MobArenaExtension.NAME);
         if (manager instanceof MobArenaExtension) {
 
-            PathCache pathCache = ((MobArenaExtension) manager).getGroupGenerator().getPathCache();
+            extension = (MobArenaExtension) manager;
+
+            PathCache pathCache = extension.getGroupGenerator().getPathCache();
 
             PathCacheEntry entry = pathCache.getEntry(source);
 
-            if (entry != null && entry.hasPathCache()) {
+            if (entry != null && entry.hasPathCache(maxPathDistance)) {
+
+                PerformanceStats.getPathCacheHits().increment();
 
                 // return cached result
-                return entry.isValidDestination(destination);
+                return entry.isValidDestination(destination, maxPathDistance);
             }
+
+            // cached paths may not be loaded yet
+            if (entry != null && pathCache.isLoading())
+                pathCache.incrementLoadFallbacks();
+
+            memo = extension.getPathMemo();
         }
 
-        // Use real time path checking (slower)
-        IAStarSettings settings = AStar.createSettings()
-                .setRange(searchRadius)
-                .setMaxDropHeight(MAX_DROP_HEIGHT)
-                .setMaxIterations(MAX_ITERATIONS);
+        PerformanceStats.getPathCacheMisses().increment();
 
-        int distance = AStar.search(source, destination, settings)
-                .getPathDistance();
+        int x = destination.getBlockX();
+        int y = destination.getBlockY();
+        int z = destination.getBlockZ();
+
+        // check for a recent real time result
+        int distance = memo != null
+                ? memo.get(source, x, y, z, searchRadius)
+                : PathDistanceMemo.NOT_FOUND;
+
+        if (distance == PathDistanceMemo.NOT_FOUND) {
+
+            // Use real time path checking (slower)
+            IAStarSettings settings = AStar.createSettings()
+                    .setRange(searchRadius)
+                    .setMaxDropHeight(MAX_DROP_HEIGHT)
+                    .setMaxIterations(MAX_ITERATIONS);
+
+            distance = getPathDistance(extension, source, destination, settings, PathVolume.MAX_DISTANCE);
+
+            if (memo != null)
+                memo.put(source, x, y, z, searchRadius, distance);
+        }
+        else {
+            PerformanceStats.getPathMemoHits().increment();
+        }
 
         return distance > -1 && distance <= maxPathDistance;
     }
 
 
+    /**
+     * Get the path distance between two locations in real time. Uses the hierarchical
+     * path finder of the arena if it is enabled and ready, otherwise uses AStar path
+     * finding.
+     *
+     * @param extension    The arena extension or null to use AStar path finding.
+     * @param from         The location to search from.
+     * @param to           The location to find a path to.
+     * @param settings     The AStar settings.
+     * @param maxDistance  The max path distance searched by the hierarchical path finder.
+     *
+     * @return  The path distance or -1 if no path was found.
+     */
+    public static int getPathDistance(@Nullable MobArenaExtension extension,
+                                      Location from, Location to,
+                                      IAStarSettings settings, int maxDistance) {
+        PreCon.notNull(from);
+        PreCon.notNull(to);
+        PreCon.notNull(settings);
+
+        HierarchicalPathfinder pathfinder = extension != null
+                ? extension.getHierarchicalPathfinder()
+                : null;
+
+        if (pathfinder != null) {
+
+            long start = System.nanoTime();
+
+            int distance = pathfinder.getPathDistance(from, to, maxDistance);
+
+            if (distance != HierarchicalPathfinder.NOT_AVAILABLE) {
+                PerformanceStats.getHierarchicalSearches().add(System.nanoTime() - start);
+                return distance;
+            }
+        }
+
+        long start = System.nanoTime();
+
+        int distance = AStar.search(from, to, settings)
+                .getPathDistance();
+
+        PerformanceStats.getRealtimeSearches().add(System.nanoTime() - start);
+
+        return distance;
+    }
+
     public static <T extends Spawnpoint> ArrayList<T> getClosestSpawns(
             IArena arena, Collection<IArenaPlayer> players, Collection<T> spawnpoints, int maxPathDistance) {
 
+        PreCon.notNull(spawnpoints);
+
+        return getClosestSpawns(arena, players, new SpawnpointGrid<T>(spawnpoints), maxPathDistance);
+    }
+
+    /**
+     * Get spawns that have a valid path to at least one player.
+     *
+     * <p>Only spawns within {@link #SEARCH_RADIUS} of a player are retrieved from the
+     * grid and checked, so the cost grows with the number of nearby spawns instead of
+     * the total number of spawns.</p>
+     *
+     * @param arena            The arena.
+     * @param players          The players to check.
+     * @param spawnGrid        The grid of spawnpoints to check.
+     * @param maxPathDistance  The max path distance from a spawn to a player.
+     */
+    public static <T extends Spawnpoint> ArrayList<T> getClosestSpawns(
+            IArena arena, Collection<IArenaPlayer> players, SpawnpointGrid<T> spawnGrid, int maxPathDistance) {
+
         PreCon.notNull(arena);
         PreCon.notNull(players);
-        PreCon.notNull(spawnpoints);
+        PreCon.notNull(spawnGrid);
         PreCon.greaterThanZero(maxPathDistance);
 
-        ArrayList<T> result = new ArrayList<>(spawnpoints.size());
-        if (spawnpoints.isEmpty())
+        ArrayList<T> result = new ArrayList<>(Math.min(spawnGrid.size(), 10));
+        if (spawnGrid.isEmpty())
             return result;
 
-        List<T> spawns = new ArrayList<>(spawnpoints);
+        Set<T> found = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>(spawnGrid.size()));
+        List<T> nearby = new ArrayList<>(10);
 
         Location playerLocation = PLAYER_LOCATIONS.get();
         Location blockLocation = BLOCK_LOCATIONS.get();
 
         for (IArenaPlayer player : players) {
 
-            if (spawns.isEmpty())
+            if (result.size() == spawnGrid.size())
                 break;
 
             Location location  = LocationUtils.getBlockLocation(player.getLocation(playerLocation), blockLocation);
 
-            Iterator<T> iterator = spawns.iterator();
-            while (iterator.hasNext()) {
-                T spawn = iterator.next();
+            nearby.clear();
+            spawnGrid.getNearby(location, SEARCH_RADIUS, nearby);
+
+            for (T spawn : nearby) {
+
+                // already valid for another player
+                if (found.contains(spawn))
+                    continue;
 
                 if (isValidMobDestination(arena, spawn, location, SEARCH_RADIUS, maxPathDistance)) {
                     result.add(spawn);
-                    iterator.remove();
+                    found.add(spawn);
                 }
             }
         }
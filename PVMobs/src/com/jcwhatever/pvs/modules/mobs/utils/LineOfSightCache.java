@@ -0,0 +1,256 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used cache of line of sight results between
+ * mobs and players.
+ *
+ * <p>Results are keyed by the block each endpoint is in, so a result is not
+ * used once either endpoint moves to a new block. Results also expire after
+ * a time to live in ticks counted by the {@link TickMonitor}. The cache is
+ * not thread safe and should only be used from the main thread.</p>
+ */
+public class LineOfSightCache {
+
+    private final int _ttlTicks;
+    private final Map<Key, Value> _entries;
+
+    // reused for lookups to avoid allocation
+    private final Key _lookupKey = new Key();
+
+    private int _capacity;
+    private long _hits;
+    private long _misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity  The max number of results to store. 0 disables the cache.
+     * @param ttlTicks  The number of ticks a result is valid for.
+     */
+    public LineOfSightCache(int capacity, int ttlTicks) {
+        PreCon.positiveNumber(capacity);
+        PreCon.greaterThanZero(ttlTicks);
+
+        _capacity = capacity;
+        _ttlTicks = ttlTicks;
+        _entries = new LinkedHashMap<Key, Value>(Math.min(capacity, 256), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the max number of results stored.
+     */
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Set the max number of results stored. Least recently used
+     * results are removed if the cache is larger than the new capacity.
+     *
+     * @param capacity  The capacity. 0 disables the cache.
+     */
+    public void setCapacity(int capacity) {
+        PreCon.positiveNumber(capacity);
+
+        if (_capacity == capacity)
+            return;
+
+        _capacity = capacity;
+
+        Iterator<Key> iterator = _entries.keySet().iterator();
+        while (_entries.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Get the number of results stored, including expired results
+     * that have not been removed yet.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Get the number of checks answered from the cache.
+     */
+    public long getHits() {
+        return _hits;
+    }
+
+    /**
+     * Get the number of checks that had to ray trace.
+     */
+    public long getMisses() {
+        return _misses;
+    }
+
+    /**
+     * Determine if a mob has line of sight to a player, using a cached
+     * result if one is available.
+     *
+     * @param mob             The mob.
+     * @param mobLocation     The current location of the mob.
+     * @param player          The player entity.
+     * @param playerLocation  The current location of the player.
+     */
+    public boolean hasLineOfSight(LivingEntity mob, Location mobLocation,
+                                  Entity player, Location playerLocation) {
+        PreCon.notNull(mob);
+        PreCon.notNull(mobLocation);
+        PreCon.notNull(player);
+        PreCon.notNull(playerLocation);
+
+        if (_capacity == 0) {
+            _misses++;
+            PerformanceStats.getLineOfSightMisses().increment();
+            return mob.hasLineOfSight(player);
+        }
+
+        _lookupKey.set(mob, mobLocation, playerLocation);
+
+        Value value = _entries.get(_lookupKey);
+        long tick = TickMonitor.getTick();
+
+        if (value != null && tick < value.expires) {
+            _hits++;
+            PerformanceStats.getLineOfSightHits().increment();
+            return value.hasLineOfSight;
+        }
+
+        _misses++;
+        PerformanceStats.getLineOfSightMisses().increment();
+
+        boolean hasLineOfSight = mob.hasLineOfSight(player);
+
+        _entries.put(new Key().set(_lookupKey), new Value(hasLineOfSight, tick + _ttlTicks));
+
+        return hasLineOfSight;
+    }
+
+    /**
+     * Remove all results.
+     */
+    public void clear() {
+        _entries.clear();
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public void resetCounters() {
+        _hits = 0;
+        _misses = 0;
+    }
+
+    /*
+     * Identifies the mob and player blocks. The mob eye height is included
+     * since mobs of different types in the same block see from different
+     * heights.
+     */
+    private static class Key {
+
+        int mobX;
+        int mobY;
+        int mobZ;
+        int mobEye; // eighths of a block
+        int playerX;
+        int playerY;
+        int playerZ;
+
+        Key set(LivingEntity mob, Location mobLocation, Location playerLocation) {
+            mobX = mobLocation.getBlockX();
+            mobY = mobLocation.getBlockY();
+            mobZ = mobLocation.getBlockZ();
+            mobEye = (int)(mob.getEyeHeight() * 8);
+            playerX = playerLocation.getBlockX();
+            playerY = playerLocation.getBlockY();
+            playerZ = playerLocation.getBlockZ();
+            return this;
+        }
+
+        Key set(Key key) {
+            mobX = key.mobX;
+            mobY = key.mobY;
+            mobZ = key.mobZ;
+            mobEye = key.mobEye;
+            playerX = key.playerX;
+            playerY = key.playerY;
+            playerZ = key.playerZ;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mobX;
+            result = 31 * result + mobY;
+            result = 31 * result + mobZ;
+            result = 31 * result + mobEye;
+            result = 31 * result + playerX;
+            result = 31 * result + playerY;
+            return 31 * result + playerZ;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key)obj;
+
+            return other.mobX == mobX && other.mobY == mobY && other.mobZ == mobZ &&
+                    other.mobEye == mobEye &&
+                    other.playerX == playerX && other.playerY == playerY && other.playerZ == playerZ;
+        }
+    }
+
+    private static class Value {
+
+        final boolean hasLineOfSight;
+        final long expires; // tick
+
+        Value(boolean hasLineOfSight, long expires) {
+            this.hasLineOfSight = hasLineOfSight;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+/**
+ * Performance counters collected by the module for all arenas.
+ *
+ * <p>Counters are lock free and cheap to update. They are only
+ * summarized when read.</p>
+ */
+public class PerformanceStats {
+
+    private PerformanceStats() {}
+
+    private static final RollingCounter PATH_CACHE_HITS = new RollingCounter();
+    private static final RollingCounter PATH_CACHE_MISSES = new RollingCounter();
+    private static final RollingCounter PATH_MEMO_HITS = new RollingCounter();
+    private static final RollingCounter LINE_OF_SIGHT_HITS = new RollingCounter();
+    private static final RollingCounter LINE_OF_SIGHT_MISSES = new RollingCounter();
+    private static final RollingCounter REALTIME_SEARCHES = new RollingCounter();
+    private static final RollingCounter HIERARCHICAL_SEARCHES = new RollingCounter();
+    private static final RollingCounter SPAWN_TASK = new RollingCounter();
+    private static final RollingCounter SPAWN_QUEUE = new RollingCounter();
+    private static final RollingCounter DESPAWN_TASK = new RollingCounter();
+
+    /**
+     * Get destination checks answered by cached paths.
+     */
+    public static RollingCounter getPathCacheHits() {
+        return PATH_CACHE_HITS;
+    }
+
+    /**
+     * Get destination checks that could not use cached paths.
+     */
+    public static RollingCounter getPathCacheMisses() {
+        return PATH_CACHE_MISSES;
+    }
+
+    /**
+     * Get path cache misses answered by the memo of recent realtime searches.
+     */
+    public static RollingCounter getPathMemoHits() {
+        return PATH_MEMO_HITS;
+    }
+
+    /**
+     * Get mob line of sight checks answered by the line of sight cache.
+     */
+    public static RollingCounter getLineOfSightHits() {
+        return LINE_OF_SIGHT_HITS;
+    }
+
+    /**
+     * Get mob line of sight checks that had to ray trace.
+     */
+    public static RollingCounter getLineOfSightMisses() {
+        return LINE_OF_SIGHT_MISSES;
+    }
+
+    /**
+     * Get realtime AStar searches and their durations in nanoseconds.
+     */
+    public static RollingCounter getRealtimeSearches() {
+        return REALTIME_SEARCHES;
+    }
+
+    /**
+     * Get hierarchical path searches and their durations in nanoseconds.
+     */
+    public static RollingCounter getHierarchicalSearches() {
+        return HIERARCHICAL_SEARCHES;
+    }
+
+    /**
+     * Get runs of spawner spawn tasks and their durations in nanoseconds.
+     */
+    public static RollingCounter getSpawnTask() {
+        return SPAWN_TASK;
+    }
+
+    /**
+     * Get runs of spawner spawn queues and their durations in nanoseconds.
+     */
+    public static RollingCounter getSpawnQueue() {
+        return SPAWN_QUEUE;
+    }
+
+    /**
+     * Get runs of spawner despawn tasks and their durations in nanoseconds.
+     */
+    public static RollingCounter getDespawnTask() {
+        return DESPAWN_TASK;
+    }
+
+    /**
+     * Clear all counters.
+     */
+    public static void reset() {
+        PATH_CACHE_HITS.reset();
+        PATH_CACHE_MISSES.reset();
+        PATH_MEMO_HITS.reset();
+        LINE_OF_SIGHT_HITS.reset();
+        LINE_OF_SIGHT_MISSES.reset();
+        REALTIME_SEARCHES.reset();
+        HIERARCHICAL_SEARCHES.reset();
+        SPAWN_TASK.reset();
+        SPAWN_QUEUE.reset();
+        DESPAWN_TASK.reset();
+    }
+}
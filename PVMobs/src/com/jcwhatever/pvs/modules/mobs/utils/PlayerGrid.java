@@ -0,0 +1,252 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.arena.IArenaPlayer;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Player locations bucketed into horizontal cells.
+ *
+ * <p>The grid is a snapshot of player locations and is meant to be updated
+ * once per tick and then queried by every mob that needs the closest player.
+ * A lookup only visits the cells that intersect the search radius. With only
+ * a few players, all players are checked instead.</p>
+ *
+ * <p>The grid is not thread safe and should only be used from the main
+ * thread.</p>
+ */
+public class PlayerGrid {
+
+    private static final int CELL_SHIFT = 5; // 32 blocks
+    private static final int KEY_BITS = 32;
+
+    // below this number of players a linear scan is faster than cell lookups
+    private static final int MIN_GRID_PLAYERS = 8;
+
+    private final Map<Long, List<Entry>> _cells = new HashMap<>(16);
+    private final List<Entry> _entries = new ArrayList<>(10);
+    private final List<List<Entry>> _cellPool = new ArrayList<>(10);
+    private final Set<Entity> _entities = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>(10));
+
+    // reused for lookups to avoid allocation
+    private final Search _search = new Search();
+
+    private int _size;
+
+    /**
+     * Get the number of players in the grid.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Determine if the entity of a player is in the grid.
+     *
+     * @param entity  The entity to check.
+     */
+    public boolean contains(Entity entity) {
+        PreCon.notNull(entity);
+
+        return _entities.contains(entity);
+    }
+
+    /**
+     * Replace the player locations in the grid with the
+     * current locations of the specified players.
+     *
+     * @param players  The players.
+     */
+    public void update(Collection<? extends IArenaPlayer> players) {
+        PreCon.notNull(players);
+
+        for (List<Entry> cell : _cells.values()) {
+            cell.clear();
+            _cellPool.add(cell);
+        }
+
+        _cells.clear();
+        _entities.clear();
+        _size = 0;
+
+        for (IArenaPlayer player : players) {
+
+            Entry entry;
+
+            // reuse entries and their locations
+            if (_size < _entries.size()) {
+                entry = _entries.get(_size);
+            }
+            else {
+                entry = new Entry();
+                _entries.add(entry);
+            }
+
+            _size++;
+
+            entry.player = player;
+            player.getLocation(entry.location);
+            _entities.add(player.getEntity());
+
+            long key = getKey(entry.location.getBlockX() >> CELL_SHIFT,
+                    entry.location.getBlockZ() >> CELL_SHIFT);
+
+            List<Entry> cell = _cells.get(key);
+            if (cell == null) {
+                cell = _cellPool.isEmpty()
+                        ? new ArrayList<Entry>(4)
+                        : _cellPool.remove(_cellPool.size() - 1);
+                _cells.put(key, cell);
+            }
+
+            cell.add(entry);
+        }
+
+        // release references to players that left
+        for (int i = _size; i < _entries.size(); i++) {
+            _entries.get(i).player = null;
+        }
+    }
+
+    /**
+     * Get the closest player that is not immobilized.
+     *
+     * @param location            The location to check from.
+     * @param maxDistanceSquared  The max distance squared of the player.
+     *
+     * @return  The closest player or null if there are no players in range.
+     */
+    @Nullable
+    public IArenaPlayer getClosest(Location location, int maxDistanceSquared) {
+        PreCon.notNull(location);
+
+        if (_size == 0)
+            return null;
+
+        Search search = _search.reset(location, maxDistanceSquared);
+
+        if (_size < MIN_GRID_PLAYERS) {
+
+            for (int i = 0; i < _size; i++) {
+                search.check(_entries.get(i));
+            }
+
+            return search.finish();
+        }
+
+        int radius = (int) Math.ceil(Math.sqrt(maxDistanceSquared));
+
+        int xStart = (location.getBlockX() - radius) >> CELL_SHIFT;
+        int zStart = (location.getBlockZ() - radius) >> CELL_SHIFT;
+        int xEnd = (location.getBlockX() + radius) >> CELL_SHIFT;
+        int zEnd = (location.getBlockZ() + radius) >> CELL_SHIFT;
+
+        for (int x = xStart; x <= xEnd; x++) {
+            for (int z = zStart; z <= zEnd; z++) {
+
+                List<Entry> cell = _cells.get(getKey(x, z));
+                if (cell == null)
+                    continue;
+
+                for (int i = 0; i < cell.size(); i++) {
+                    search.check(cell.get(i));
+                }
+            }
+        }
+
+        return search.finish();
+    }
+
+    private static long getKey(int x, int z) {
+        return ((long) x << KEY_BITS) | (z & 0xFFFFFFFFL);
+    }
+
+    private static class Entry {
+        IArenaPlayer player;
+        final Location location = new Location(null, 0, 0, 0);
+    }
+
+    /*
+     * Closest player search, same rules as DistanceUtils#getClosestPlayer.
+     */
+    private static class Search {
+
+        Location location;
+        World world;
+        int maxDistanceSquared;
+        double current;
+        IArenaPlayer result;
+
+        Search reset(Location location, int maxDistanceSquared) {
+            this.location = location;
+            this.world = location.getWorld();
+            this.maxDistanceSquared = maxDistanceSquared;
+            this.current = maxDistanceSquared;
+            this.result = null;
+            return this;
+        }
+
+        /*
+         * Get the result and release references held by the search.
+         */
+        IArenaPlayer finish() {
+            IArenaPlayer player = result;
+            location = null;
+            world = null;
+            result = null;
+            return player;
+        }
+
+        void check(Entry entry) {
+
+            if (entry.player.isImmobilized())
+                return;
+
+            if (!entry.location.getWorld().equals(world))
+                return;
+
+            double distance = entry.location.distanceSquared(location);
+            if (distance >= current || distance >= maxDistanceSquared)
+                return;
+
+            current = distance;
+            result = entry.player;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free counter of events and their values, such as durations,
+ * over the last few seconds.
+ *
+ * <p>Events are counted in one second buckets. Rates and averages are
+ * calculated from the last {@link #WINDOW_SECONDS} complete seconds so
+ * the current partial second does not skew them. Adding an event from
+ * several threads at the moment a bucket is recycled may lose the event,
+ * which is acceptable for statistics.</p>
+ */
+public class RollingCounter {
+
+    /**
+     * The number of complete seconds rates and averages are calculated from.
+     */
+    public static final int WINDOW_SECONDS = 10;
+
+    // the current second plus the window
+    private static final int BUCKETS = WINDOW_SECONDS + 1;
+
+    private final AtomicLongArray _seconds = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray _values = new AtomicLongArray(BUCKETS);
+    private final AtomicLong _totalCount = new AtomicLong();
+
+    /**
+     * Count an event without a value.
+     */
+    public void increment() {
+        add(0);
+    }
+
+    /**
+     * Count an event.
+     *
+     * @param value  The value of the event, i.e. its duration in nanoseconds.
+     */
+    public void add(long value) {
+
+        long second = getSecond();
+        int index = (int)(second % BUCKETS);
+
+        long stamp = _seconds.get(index);
+        if (stamp != second && _seconds.compareAndSet(index, stamp, second)) {
+            _counts.set(index, 0);
+            _values.set(index, 0);
+        }
+
+        _counts.incrementAndGet(index);
+        _values.addAndGet(index, value);
+        _totalCount.incrementAndGet();
+    }
+
+    /**
+     * Get the total number of events counted.
+     */
+    public long getTotalCount() {
+        return _totalCount.get();
+    }
+
+    /**
+     * Get the average number of events per second.
+     */
+    public double getRate() {
+        return getWindowCount() / (double)WINDOW_SECONDS;
+    }
+
+    /**
+     * Get the average event value.
+     *
+     * @return  The average value or 0 if no events were counted.
+     */
+    public double getAverage() {
+
+        long second = getSecond();
+        long count = 0;
+        long values = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            if (isInWindow(_seconds.get(i), second)) {
+                count += _counts.get(i);
+                values += _values.get(i);
+            }
+        }
+
+        return count == 0 ? 0 : values / (double)count;
+    }
+
+    /**
+     * Get the total event value per second, i.e. nanoseconds
+     * spent per second.
+     */
+    public double getValueRate() {
+
+        long second = getSecond();
+        long values = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            if (isInWindow(_seconds.get(i), second))
+                values += _values.get(i);
+        }
+
+        return values / (double)WINDOW_SECONDS;
+    }
+
+    /**
+     * Clear all counts.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            _seconds.set(i, 0);
+            _counts.set(i, 0);
+            _values.set(i, 0);
+        }
+        _totalCount.set(0);
+    }
+
+    private long getWindowCount() {
+
+        long second = getSecond();
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            if (isInWindow(_seconds.get(i), second))
+                count += _counts.get(i);
+        }
+
+        return count;
+    }
+
+    private static boolean isInWindow(long stamp, long second) {
+        return stamp < second && stamp >= second - WINDOW_SECONDS;
+    }
+
+    private static long getSecond() {
+        // never 0, the stamp of unused buckets
+        return System.currentTimeMillis() / 1000L;
+    }
+}
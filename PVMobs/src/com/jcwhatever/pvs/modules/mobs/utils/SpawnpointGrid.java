@@ -0,0 +1,153 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import com.jcwhatever.pvs.api.spawns.Spawnpoint;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid of spawnpoints used to quickly find spawns near a location.
+ *
+ * <p>Spawns are bucketed into cells the size of a chunk section so a lookup
+ * only visits the cells that intersect the search radius, regardless of the
+ * total number of spawns.</p>
+ *
+ * <p>The grid is not modified after it is created.</p>
+ *
+ * @param <T>  The spawnpoint type.
+ */
+public class SpawnpointGrid<T extends Spawnpoint> {
+
+    private static final int CELL_SHIFT = 4; // 16 blocks
+    private static final int KEY_BITS = 21;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    private final Map<Long, List<T>> _cells;
+    private final int _size;
+
+    /**
+     * Constructor.
+     *
+     * @param spawnpoints  The spawnpoints to add to the grid.
+     */
+    public SpawnpointGrid(Collection<? extends T> spawnpoints) {
+        PreCon.notNull(spawnpoints);
+
+        _cells = new HashMap<>(Math.max(16, spawnpoints.size()));
+        _size = spawnpoints.size();
+
+        for (T spawn : spawnpoints) {
+
+            long key = getKey(spawn.getBlockX() >> CELL_SHIFT,
+                    spawn.getBlockY() >> CELL_SHIFT, spawn.getBlockZ() >> CELL_SHIFT);
+
+            List<T> cell = _cells.get(key);
+            if (cell == null) {
+                cell = new ArrayList<>(4);
+                _cells.put(key, cell);
+            }
+
+            cell.add(spawn);
+        }
+    }
+
+    /**
+     * Get the number of spawnpoints in the grid.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Determine if the grid is empty.
+     */
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Add spawnpoints in the same world and within the specified radius
+     * of a location to an output collection.
+     *
+     * @param location  The center location.
+     * @param radius    The search radius.
+     * @param output    The output collection.
+     *
+     * @return  The output collection.
+     */
+    public <C extends Collection<? super T>> C getNearby(Location location, int radius, C output) {
+        PreCon.notNull(location);
+        PreCon.positiveNumber(radius);
+        PreCon.notNull(output);
+
+        if (_cells.isEmpty())
+            return output;
+
+        World world = location.getWorld();
+        double radiusSquared = radius * radius;
+
+        int xStart = (location.getBlockX() - radius) >> CELL_SHIFT;
+        int yStart = (location.getBlockY() - radius) >> CELL_SHIFT;
+        int zStart = (location.getBlockZ() - radius) >> CELL_SHIFT;
+        int xEnd = (location.getBlockX() + radius) >> CELL_SHIFT;
+        int yEnd = (location.getBlockY() + radius) >> CELL_SHIFT;
+        int zEnd = (location.getBlockZ() + radius) >> CELL_SHIFT;
+
+        for (int x = xStart; x <= xEnd; x++) {
+            for (int y = yStart; y <= yEnd; y++) {
+                for (int z = zStart; z <= zEnd; z++) {
+
+                    List<T> cell = _cells.get(getKey(x, y, z));
+                    if (cell == null)
+                        continue;
+
+                    for (int i = 0; i < cell.size(); i++) {
+                        T spawn = cell.get(i);
+
+                        if (world != null && !world.equals(spawn.getWorld()))
+                            continue;
+
+                        if (spawn.distanceSquared(location) <= radiusSquared)
+                            output.add(spawn);
+                    }
+                }
+            }
+        }
+
+        return output;
+    }
+
+    private static long getKey(int x, int y, int z) {
+        return ((x & KEY_MASK) << (KEY_BITS * 2)) | ((y & KEY_MASK) << KEY_BITS) | (z & KEY_MASK);
+    }
+}
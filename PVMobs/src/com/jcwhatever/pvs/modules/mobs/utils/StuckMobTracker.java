@@ -0,0 +1,260 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.nucleus.utils.PreCon;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Detects tracked mobs that are stuck.
+ *
+ * <p>Each mob keeps an anchor position and the tick it was set. The anchor
+ * moves to the current position of the mob whenever the mob has moved beyond
+ * the threshold distance from it, or the mob is not chasing a target. A mob
+ * whose anchor is older than the window is stuck. Sampling a mob is constant
+ * time and no position history is kept.</p>
+ *
+ * <p>Detection is disabled until a window is set.</p>
+ *
+ * <p>The number of stuck mobs is counted per spawnpoint the mobs were
+ * spawned from so spawnpoints that place mobs in bad positions can be found.</p>
+ */
+public class StuckMobTracker {
+
+    private final Map<UUID, Sample> _samples = new HashMap<>(100);
+    private final Map<String, Count> _spawnCounts = new HashMap<>(25);
+
+    private int _windowTicks;
+    private double _distanceSquared;
+    private int _totalStuck;
+
+    /**
+     * Get the number of tracked mobs.
+     */
+    public int size() {
+        return _samples.size();
+    }
+
+    /**
+     * Get the ticks a chasing mob must stay in place to be stuck.
+     */
+    public int getWindow() {
+        return _windowTicks;
+    }
+
+    /**
+     * Set the ticks a chasing mob must stay in place to be stuck.
+     *
+     * @param ticks  The ticks. 0 or less disables detection.
+     */
+    public void setWindow(int ticks) {
+        _windowTicks = ticks;
+    }
+
+    /**
+     * Set the distance a mob must move from its anchor to not be stuck.
+     *
+     * @param distance  The distance in blocks.
+     */
+    public void setDistance(double distance) {
+        PreCon.positiveNumber(distance);
+
+        _distanceSquared = distance * distance;
+    }
+
+    /**
+     * Get the total number of mobs detected as stuck.
+     */
+    public int getTotalStuck() {
+        return _totalStuck;
+    }
+
+    /**
+     * Get the number of stuck mobs spawned from a spawnpoint.
+     *
+     * @param spawnName  The name of the spawnpoint.
+     */
+    public int getStuckCount(String spawnName) {
+        PreCon.notNull(spawnName);
+
+        Count count = _spawnCounts.get(spawnName);
+        return count != null ? count.value : 0;
+    }
+
+    /**
+     * Get the names of the spawnpoints with the most stuck mobs, most first.
+     *
+     * @param max  The max number of names to return.
+     */
+    public List<String> getWorstSpawns(int max) {
+        PreCon.positiveNumber(max);
+
+        List<Map.Entry<String, Count>> entries = new ArrayList<>(_spawnCounts.entrySet());
+
+        Collections.sort(entries, new Comparator<Map.Entry<String, Count>>() {
+            @Override
+            public int compare(Map.Entry<String, Count> o1, Map.Entry<String, Count> o2) {
+                int result = Integer.compare(o2.getValue().value, o1.getValue().value);
+                return result != 0 ? result : o1.getKey().compareTo(o2.getKey());
+            }
+        });
+
+        List<String> result = new ArrayList<>(Math.min(max, entries.size()));
+
+        for (int i = 0; i < max && i < entries.size(); i++) {
+            result.add(entries.get(i).getKey());
+        }
+
+        return result;
+    }
+
+    /**
+     * Add a mob.
+     *
+     * @param mob        The mob entity.
+     * @param location   The current location of the mob.
+     * @param spawnName  The name of the spawnpoint the mob was spawned from.
+     * @param tick       The current tick.
+     *
+     * @return  True if added, false if the mob is already tracked.
+     */
+    public boolean add(Entity mob, Location location, String spawnName, long tick) {
+        PreCon.notNull(mob);
+        PreCon.notNull(location);
+        PreCon.notNull(spawnName);
+
+        UUID id = mob.getUniqueId();
+        if (_samples.containsKey(id))
+            return false;
+
+        Sample sample = new Sample(spawnName);
+        sample.set(location, tick);
+
+        _samples.put(id, sample);
+        return true;
+    }
+
+    /**
+     * Remove a mob.
+     *
+     * @param mob  The mob entity.
+     *
+     * @return  True if removed, false if the mob is not tracked.
+     */
+    public boolean remove(Entity mob) {
+        PreCon.notNull(mob);
+
+        return _samples.remove(mob.getUniqueId()) != null;
+    }
+
+    /**
+     * Sample the position of a mob.
+     *
+     * <p>A mob detected as stuck is counted against its spawnpoint and
+     * should be removed by the caller.</p>
+     *
+     * @param mob         The mob entity.
+     * @param location    The current location of the mob.
+     * @param isChasing   True if the mob is expected to be moving.
+     * @param tick        The current tick.
+     *
+     * @return  True if the mob is stuck, otherwise false.
+     */
+    public boolean update(Entity mob, Location location, boolean isChasing, long tick) {
+        PreCon.notNull(mob);
+        PreCon.notNull(location);
+
+        Sample sample = _samples.get(mob.getUniqueId());
+        if (sample == null)
+            return false;
+
+        if (_windowTicks <= 0 || !isChasing || sample.distanceSquared(location) > _distanceSquared) {
+            sample.set(location, tick);
+            return false;
+        }
+
+        if (tick - sample.tick < _windowTicks)
+            return false;
+
+        // restart the window in case the caller does not remove the mob
+        sample.set(location, tick);
+
+        Count count = _spawnCounts.get(sample.spawnName);
+        if (count == null) {
+            count = new Count();
+            _spawnCounts.put(sample.spawnName, count);
+        }
+        count.value++;
+        _totalStuck++;
+
+        return true;
+    }
+
+    /**
+     * Remove all mobs. Stuck counts are kept.
+     */
+    public void clear() {
+        _samples.clear();
+    }
+
+    private static class Sample {
+        final String spawnName;
+        double x;
+        double y;
+        double z;
+        long tick;
+
+        Sample(String spawnName) {
+            this.spawnName = spawnName;
+        }
+
+        void set(Location location, long tick) {
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.tick = tick;
+        }
+
+        double distanceSquared(Location location) {
+            double dx = location.getX() - x;
+            double dy = location.getY() - y;
+            double dz = location.getZ() - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    private static class Count {
+        int value;
+    }
+}
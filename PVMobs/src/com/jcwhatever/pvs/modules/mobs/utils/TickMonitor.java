@@ -0,0 +1,150 @@
+/*
+ * This file is part of PV-StarModules for Bukkit, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) JCThePants (www.jcwhatever.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.jcwhatever.pvs.modules.mobs.utils;
+
+import com.jcwhatever.nucleus.managed.scheduler.IScheduledTask;
+import com.jcwhatever.nucleus.managed.scheduler.Scheduler;
+import com.jcwhatever.pvs.api.PVStarAPI;
+
+/**
+ * Samples server tick durations to estimate recent ticks per second.
+ *
+ * <p>The estimate is an exponential moving average of the time between
+ * ticks so that single slow ticks do not cause sudden changes.</p>
+ */
+public class TickMonitor {
+
+    private TickMonitor() {}
+
+    public static final double MAX_TPS = 20.0D;
+
+    private static final long NANOS_PER_TICK = 50000000L;
+
+    // longest sample recorded, prevents a single stall from dominating
+    private static final long MAX_SAMPLE_NANOS = 1000000000L;
+
+    // weight of each new sample, about one second of ticks
+    private static final double SAMPLE_WEIGHT = 0.05D;
+
+    private static IScheduledTask _task;
+    private static long _lastTick;
+    private static long _tick;
+    private static double _averageNanos = NANOS_PER_TICK;
+
+    /**
+     * Start sampling ticks. Does nothing if already started.
+     */
+    public static void start() {
+
+        if (_task != null)
+            return;
+
+        _lastTick = 0;
+        _averageNanos = NANOS_PER_TICK;
+
+        _task = Scheduler.runTaskRepeat(PVStarAPI.getPlugin(), 1, 1, new Runnable() {
+            @Override
+            public void run() {
+
+                long now = System.nanoTime();
+
+                _tick++;
+
+                if (_lastTick != 0) {
+                    long sample = Math.min(now - _lastTick, MAX_SAMPLE_NANOS);
+                    _averageNanos += (sample - _averageNanos) * SAMPLE_WEIGHT;
+                }
+
+                _lastTick = now;
+            }
+        });
+    }
+
+    /**
+     * Stop sampling ticks.
+     */
+    public static void stop() {
+
+        if (_task == null)
+            return;
+
+        _task.cancel();
+        _task = null;
+    }
+
+    /**
+     * Determine if the monitor is started.
+     */
+    public static boolean isRunning() {
+        return _task != null;
+    }
+
+    /**
+     * Get the number of ticks sampled since the monitor was first started.
+     * Can be used to detect when a new tick has started.
+     */
+    public static long getTick() {
+        return _tick;
+    }
+
+    /**
+     * Get the average nanoseconds between recent ticks.
+     */
+    public static double getAverageTickNanos() {
+        return _averageNanos;
+    }
+
+    /**
+     * Get the recent ticks per second. Returns {@link #MAX_TPS}
+     * if the monitor is not started.
+     */
+    public static double getTps() {
+
+        if (_task == null)
+            return MAX_TPS;
+
+        return Math.min(MAX_TPS, 1000000000.0D / _averageNanos);
+    }
+
+    /**
+     * Get a scale from 0.0 to 1.0 that indicates how close the
+     * server is to the target ticks per second.
+     *
+     * @param minTps     The ticks per second at or below which the scale is 0.0.
+     * @param targetTps  The ticks per second at or above which the scale is 1.0.
+     */
+    public static double getLoadScale(double minTps, double targetTps) {
+
+        double tps = getTps();
+
+        if (tps >= targetTps)
+            return 1.0D;
+
+        if (tps <= minTps)
+            return 0.0D;
+
+        return (tps - minTps) / (targetTps - minTps);
+    }
+}